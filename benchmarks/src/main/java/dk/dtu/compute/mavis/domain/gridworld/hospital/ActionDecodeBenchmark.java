@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes action names, from strings (as the GUI and older code paths do) and
+ * in place from the raw bytes of a client message.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ActionDecodeBenchmark {
+  private static final int NUM_ACTIONS = 1024;
+
+  private final String[] names = new String[NUM_ACTIONS];
+  private final byte[] message;
+  private final int[] starts = new int[NUM_ACTIONS + 1];
+  private int next = 0;
+
+  public ActionDecodeBenchmark() {
+    Action[] actions = BenchmarkLevels.randomJointActions(NUM_ACTIONS, 1,
+        BenchmarkLevels.ALL_ACTIONS)[0];
+    var message = new StringBuilder();
+    for (int i = 0; i < NUM_ACTIONS; ++i) {
+      this.names[i] = actions[i].name;
+      this.starts[i] = message.length();
+      message.append(actions[i].name);
+    }
+    this.starts[NUM_ACTIONS] = message.length();
+    this.message = message.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Benchmark
+  public Action parse() {
+    int i = this.next;
+    this.next = (i + 1) & (NUM_ACTIONS - 1);
+    return Action.parse(this.names[i]);
+  }
+
+  @Benchmark
+  public Action decode() {
+    int i = this.next;
+    this.next = (i + 1) & (NUM_ACTIONS - 1);
+    return Action.decode(this.message, this.starts[i], this.starts[i + 1]);
+  }
+}
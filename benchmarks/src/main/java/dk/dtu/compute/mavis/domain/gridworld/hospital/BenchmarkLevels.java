@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import dk.dtu.compute.cld.services.ConstraintReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Levels and joint actions shared by the benchmarks.
+ * <p>
+ * A level parameter is either the name of a level in levels/hospital, e.g.
+ * "MAAIMAS", or "synthetic-AGENTS-BOXES" for a generated level with the given
+ * number of agents (at most 10) and boxes, e.g. "synthetic-10-1000". Levels
+ * are read relative to the project's root folder, which is given by the system
+ * property mavis.root (default: the parent folder, i.e. running from
+ * benchmarks/).
+ */
+final class BenchmarkLevels {
+  private static final String SYNTHETIC_PREFIX = "synthetic-";
+  private static final String[] COLORS = {"blue", "red", "cyan", "purple", "green", "orange",
+      "pink", "grey", "lightblue", "brown"};
+
+  /**
+   * All actions, and the actions supported by the CLD validator.
+   */
+  static final Action[] ALL_ACTIONS = new Action[29];
+  static final Action[] MOVE_ACTIONS = {Action.NoOp, Action.MoveN, Action.MoveS, Action.MoveE,
+      Action.MoveW};
+
+  static {
+    for (int opcode = 0; opcode < ALL_ACTIONS.length; ++opcode) {
+      ALL_ACTIONS[opcode] = Action.fromOpcode(opcode);
+    }
+  }
+
+  private BenchmarkLevels() {
+  }
+
+  static Path root() {
+    return Path.of(System.getProperty("mavis.root", ".."));
+  }
+
+  /**
+   * Reads the level. The level info holds the object grid of a state
+   * sequence, so each state sequence needs its own level info.
+   */
+  static LevelInfo read(String level) throws Exception {
+    return new LevelReader(levelFile(level), false).getLevel();
+  }
+
+  static CldValidator cldValidator(LevelInfo levelInfo) throws Exception {
+    var constraints = new ConstraintReader(root().resolve("resources/hospital.cld")).read();
+    return new CldValidator(levelInfo, constraints);
+  }
+
+  private static Path levelFile(String level) throws IOException {
+    if (!level.startsWith(SYNTHETIC_PREFIX)) {
+      return root().resolve("levels/hospital").resolve(level + ".lvl");
+    }
+    String[] counts = level.substring(SYNTHETIC_PREFIX.length()).split("-");
+    Path file = Files.createTempFile(level, ".lvl");
+    file.toFile().deleteOnExit();
+    Files.writeString(file,
+        syntheticLevel(level, Integer.parseInt(counts[0]), Integer.parseInt(counts[1]), 1));
+    return file;
+  }
+
+  /**
+   * Generates a square level with scattered walls, where the agents and boxes
+   * take up about a third of the free cells. Box letters are spread over the
+   * agents' colors, and every box has a goal.
+   */
+  static String syntheticLevel(String name, int numAgents, int numBoxes, long seed) {
+    if (numAgents < 1 || numAgents > 10 || numBoxes < 0) {
+      throw new IllegalArgumentException("Synthetic levels have 1 to 10 agents.");
+    }
+    Random random = new Random(seed);
+    int size = Math.max(5, (int) Math.ceil(Math.sqrt(3.0 * (numAgents + numBoxes) / 0.9)) + 2);
+    char[][] initial = new char[size][size];
+    var freeCells = new ArrayList<Integer>();
+    for (int row = 0; row < size; ++row) {
+      for (int col = 0; col < size; ++col) {
+        boolean border = row == 0 || col == 0 || row == size - 1 || col == size - 1;
+        initial[row][col] = border || random.nextInt(10) == 0 ? '+' : ' ';
+        if (initial[row][col] == ' ') {
+          freeCells.add(row * size + col);
+        }
+      }
+    }
+    char[][] goal = new char[size][];
+    for (int row = 0; row < size; ++row) {
+      goal[row] = initial[row].clone();
+    }
+
+    Collections.shuffle(freeCells, random);
+    int cell = 0;
+    for (int agent = 0; agent < numAgents; ++agent, ++cell) {
+      initial[freeCells.get(cell) / size][freeCells.get(cell) % size] = (char) ('0' + agent);
+    }
+    for (int box = 0; box < numBoxes; ++box, ++cell) {
+      initial[freeCells.get(cell) / size][freeCells.get(cell) % size] = (char) ('A' + box % 26);
+    }
+    Collections.shuffle(freeCells, random);
+    for (int box = 0; box < numBoxes; ++box) {
+      goal[freeCells.get(box) / size][freeCells.get(box) % size] = (char) ('A' + box % 26);
+    }
+
+    var level = new StringBuilder();
+    level.append("#domain\nhospital\n#levelname\n").append(name).append("\n#colors\n");
+    for (int agent = 0; agent < numAgents; ++agent) {
+      level.append(COLORS[agent]).append(": ").append(agent);
+      for (int letter = agent; letter < Math.min(numBoxes, 26); letter += numAgents) {
+        level.append(", ").append((char) ('A' + letter));
+      }
+      level.append('\n');
+    }
+    level.append("#initial\n");
+    for (char[] row : initial) {
+      level.append(row).append('\n');
+    }
+    level.append("#goal\n");
+    for (char[] row : goal) {
+      level.append(row).append('\n');
+    }
+    level.append("#end\n");
+    return level.toString();
+  }
+
+  /**
+   * Random joint actions over the given actions, with a fixed seed.
+   */
+  static Action[][] randomJointActions(int numAgents, int numJointActions, Action[] actions) {
+    Random random = new Random(42);
+    Action[][] jointActions = new Action[numJointActions][numAgents];
+    for (Action[] jointAction : jointActions) {
+      for (int agent = 0; agent < numAgents; ++agent) {
+        jointAction[agent] = actions[random.nextInt(actions.length)];
+      }
+    }
+    return jointActions;
+  }
+}
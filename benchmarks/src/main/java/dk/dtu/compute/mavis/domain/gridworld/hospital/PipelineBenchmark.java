@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import dk.dtu.compute.mavis.domain.gridworld.Validator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-action work of the server's protocol thread: read and decode a
+ * client message, validate the joint action, apply it to the state sequence
+ * and write the response.
+ * <p>
+ * The client's messages are replayed from memory in a loop, and responses are
+ * written to a buffered stream which discards them. The state sequence does
+ * not keep its history, as when the server runs without a GUI, so it can run
+ * for a whole iteration without growing.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineBenchmark {
+  private static final int NUM_JOINT_ACTIONS = 1024;
+
+  @Param({"MAPF00", "MAAIMAS", "MASubpoena", "synthetic-2-10", "synthetic-10-100",
+      "synthetic-10-1000"})
+  public String level;
+
+  @Param({"text", "binary"})
+  public String protocol;
+
+  private boolean binaryProtocol;
+  private ClientMessageReader clientReader;
+  private OutputStream clientOut;
+  private StateSequence stateSequence;
+  private Validator<Action, State> validator;
+  private Action[] jointAction;
+  private boolean[] applicable;
+  private byte[] applicableMask;
+
+  @Setup(Level.Iteration)
+  public void setup() throws Exception {
+    LevelInfo levelInfo = BenchmarkLevels.read(this.level);
+    int numAgents = levelInfo.numAgents;
+    this.binaryProtocol = this.protocol.equals("binary");
+    Action[][] jointActions = BenchmarkLevels.randomJointActions(numAgents, NUM_JOINT_ACTIONS,
+        BenchmarkLevels.ALL_ACTIONS);
+    this.clientReader = new ClientMessageReader(
+        new CyclicInputStream(encode(jointActions, this.binaryProtocol)), numAgents);
+    this.clientOut = new BufferedOutputStream(OutputStream.nullOutputStream());
+    this.stateSequence = new StateSequence(levelInfo);
+    this.stateSequence.allowDiscardingPastStates();
+    this.validator = new HospitalValidator(levelInfo);
+    this.jointAction = new Action[numAgents];
+    this.applicable = new boolean[numAgents];
+    this.applicableMask = new byte[(numAgents + 7) / 8];
+  }
+
+  @Benchmark
+  public State handleMessage() throws IOException {
+    var messageType = this.binaryProtocol ? this.clientReader.readBinaryMessage(this.jointAction)
+        : this.clientReader.readMessage(this.jointAction);
+    if (messageType != ClientMessageReader.MessageType.JointAction) {
+      throw new IllegalStateException("Unexpected message: " + messageType);
+    }
+    State state = this.stateSequence.getLatestState();
+    this.validator.isApplicable(this.jointAction, state, this.applicable);
+    this.stateSequence.apply(this.jointAction, this.applicable, 0);
+    HospitalDomain.writeResponse(this.applicable, this.binaryProtocol, this.applicableMask,
+        this.clientOut);
+    return state;
+  }
+
+  private static byte[] encode(Action[][] jointActions, boolean binaryProtocol) {
+    var messages = new ByteArrayOutputStream();
+    for (Action[] jointAction : jointActions) {
+      for (int agent = 0; agent < jointAction.length; ++agent) {
+        if (binaryProtocol) {
+          messages.write(jointAction[agent].opcode);
+        } else {
+          if (agent > 0) {
+            messages.write('|');
+          }
+          messages.writeBytes(jointAction[agent].name.getBytes(StandardCharsets.US_ASCII));
+        }
+      }
+      if (!binaryProtocol) {
+        messages.write('\n');
+      }
+    }
+    return messages.toByteArray();
+  }
+
+  /**
+   * Endlessly repeats the given bytes.
+   */
+  private static class CyclicInputStream extends InputStream {
+    private final byte[] bytes;
+    private int position = 0;
+
+    CyclicInputStream(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read() {
+      int b = this.bytes[this.position] & 0xFF;
+      this.position = (this.position + 1) % this.bytes.length;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      int numRead = Math.min(length, this.bytes.length - this.position);
+      System.arraycopy(this.bytes, this.position, buffer, offset, numRead);
+      this.position = (this.position + numRead) % this.bytes.length;
+      return numRead;
+    }
+
+    @Override
+    public int available() {
+      return this.bytes.length - this.position;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Applies validated joint actions to a state sequence, and reconstructs past
+ * states from its history.
+ * <p>
+ * The state sequence grows with every applied joint action, so it is rebuilt
+ * from the level before each iteration. With history "discard", the sequence
+ * only keeps the latest state, as it does when the server runs without a GUI.
+ * Past states are read from a separate sequence, which keeps its history.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StateSequenceBenchmark {
+  private static final int NUM_JOINT_ACTIONS = 1024;
+  private static final int NUM_HISTORY_STATES = 16 * StateSequence.KEYFRAME_INTERVAL;
+
+  @Param({"MAPF00", "MAAIMAS", "MASubpoena", "synthetic-2-10", "synthetic-10-100",
+      "synthetic-10-1000"})
+  public String level;
+
+  @Param({"keep", "discard"})
+  public String history;
+
+  private StateSequence stateSequence;
+  private HospitalValidator validator;
+  private Action[][] jointActions;
+  private boolean[] applicable;
+  private int next = 0;
+
+  private StateSequence pastSequence;
+  private int[] pastStates;
+  private int nextPast = 0;
+
+  @Setup(Level.Trial)
+  public void setupHistory() throws Exception {
+    // A sequence with a long history, which is always kept.
+    this.setupSequence(true);
+    for (int state = 1; state < NUM_HISTORY_STATES; ++state) {
+      this.validateAndApply();
+    }
+    this.pastSequence = this.stateSequence;
+
+    Random random = new Random(42);
+    this.pastStates = new int[NUM_JOINT_ACTIONS];
+    for (int i = 0; i < this.pastStates.length; ++i) {
+      this.pastStates[i] = random.nextInt(NUM_HISTORY_STATES);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setupSequence() throws Exception {
+    this.setupSequence(this.history.equals("keep"));
+  }
+
+  private void setupSequence(boolean keepHistory) throws Exception {
+    LevelInfo levelInfo = BenchmarkLevels.read(this.level);
+    this.stateSequence = new StateSequence(levelInfo);
+    if (!keepHistory) {
+      this.stateSequence.allowDiscardingPastStates();
+    }
+    this.validator = new HospitalValidator(levelInfo);
+    this.jointActions = BenchmarkLevels.randomJointActions(levelInfo.numAgents, NUM_JOINT_ACTIONS,
+        BenchmarkLevels.ALL_ACTIONS);
+    this.applicable = new boolean[levelInfo.numAgents];
+    this.next = 0;
+  }
+
+  @Benchmark
+  public State validateAndApply() {
+    Action[] jointAction = this.jointActions[this.next];
+    this.next = (this.next + 1) & (NUM_JOINT_ACTIONS - 1);
+    State state = this.stateSequence.getLatestState();
+    this.validator.isApplicable(jointAction, state, this.applicable);
+    this.stateSequence.apply(jointAction, this.applicable, 0);
+    return state;
+  }
+
+  @Benchmark
+  public State getPastState() {
+    int state = this.pastStates[this.nextPast];
+    this.nextPast = (this.nextPast + 1) & (NUM_JOINT_ACTIONS - 1);
+    return this.pastSequence.getState(state);
+  }
+}
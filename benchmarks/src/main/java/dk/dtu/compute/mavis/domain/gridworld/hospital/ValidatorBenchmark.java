@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import dk.dtu.compute.mavis.domain.gridworld.Validator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validates random joint actions against the initial state of a level. The
+ * state is not modified, so every invocation sees the same state.
+ * <p>
+ * The CLD validator only supports moves, so it is given random moves and
+ * NoOps, while the hospital validator is given all actions.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ValidatorBenchmark {
+  private static final int NUM_JOINT_ACTIONS = 1024;
+
+  @Param({"MAPF00", "MAAIMAS", "MASubpoena", "MAthomasAppartment", "synthetic-2-10",
+      "synthetic-10-100", "synthetic-10-1000"})
+  public String level;
+
+  @Param({"hospital", "cld"})
+  public String validator;
+
+  private Validator<Action, State> sut;
+  private State state;
+  private Action[][] jointActions;
+  private boolean[] applicable;
+  private int next = 0;
+
+  @Setup
+  public void setup() throws Exception {
+    LevelInfo levelInfo = BenchmarkLevels.read(this.level);
+    boolean cld = this.validator.equals("cld");
+    this.sut = cld ? BenchmarkLevels.cldValidator(levelInfo) : new HospitalValidator(levelInfo);
+    this.state = levelInfo.initialState;
+    this.jointActions = BenchmarkLevels.randomJointActions(levelInfo.numAgents, NUM_JOINT_ACTIONS,
+        cld ? BenchmarkLevels.MOVE_ACTIONS : BenchmarkLevels.ALL_ACTIONS);
+    this.applicable = new boolean[levelInfo.numAgents];
+  }
+
+  @Benchmark
+  public boolean[] isApplicable() {
+    Action[] jointAction = this.jointActions[this.next];
+    this.next = (this.next + 1) & (NUM_JOINT_ACTIONS - 1);
+    this.sut.isApplicable(jointAction, this.state, this.applicable);
+    return this.applicable;
+  }
+}
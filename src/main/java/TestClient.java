@@ -13,11 +13,11 @@
  * License for the specific language governing permissions and limitations under
  * the License.
  */
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Random;
@@ -34,22 +34,50 @@ public class TestClient {
       "Pull(N,N)", "Pull(N,E)", "Pull(N,W)", "Pull(S,S)", "Pull(S,E)", "Pull(S,W)", "Pull(E,N)",
       "Pull(E,S)", "Pull(E,E)", "Pull(W,N)", "Pull(W,S)", "Pull(W,W)"};
 
+  /**
+   * Reads an ASCII line terminated by '\n' or "\r\n", or returns null at the end
+   * of the stream.
+   */
+  static String readLine(InputStream in) throws IOException {
+    var line = new StringBuilder();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b == -1) {
+        return line.length() == 0 ? null : line.toString();
+      }
+      line.append((char) b);
+    }
+    int length = line.length();
+    if (length > 0 && line.charAt(length - 1) == '\r') {
+      line.setLength(length - 1);
+    }
+    return line.toString();
+  }
+
   public static void main(String[] args) throws IOException {
     System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out), false,
         StandardCharsets.US_ASCII));
-    var stdin = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+    var stdin = new BufferedInputStream(System.in);
 
-    // Client name.
-    System.out.println("TestClient");
+    // Client name. With the -binary argument the client requests the binary
+    // protocol, which the server acknowledges before sending the level.
+    boolean binary = args.length > 0 && args[0].equals("-binary");
+    System.out.println(binary ? "TestClient #binary" : "TestClient");
     System.out.flush();
 
+    String levelLine = readLine(stdin);
+    if (binary && levelLine.equals("#binary")) {
+      levelLine = readLine(stdin);
+    } else {
+      binary = false;
+    }
+
     // Read level.
-    String levelLine;
     int numAgents = 0;
     boolean countAgents = false;
     // String levelName = "";
     boolean readLevelName = false;
-    while (!(levelLine = stdin.readLine()).equals("#end")) {
+    for (; !levelLine.equals("#end"); levelLine = readLine(stdin)) {
       if (levelLine.startsWith("#levelname")) {
         readLevelName = true;
         continue;
@@ -77,6 +105,8 @@ public class TestClient {
     }
 
     String[] jointAction = new String[numAgents];
+    byte[] binaryJointAction = new byte[numAgents];
+    byte[] binaryResponse = new byte[(numAgents + 7) / 8];
     Random random = new Random(0);
 
     long numMessages = 0;
@@ -87,21 +117,36 @@ public class TestClient {
         if (++numMessages > 20000) {
           break messageLoop;
         }
+        // In the binary protocol an action is sent as its index in ACTIONS.
         for (int agent = 0; agent < numAgents; ++agent) {
-          jointAction[agent] = ACTIONS[random.nextInt(ACTIONS.length)];
+          int action = random.nextInt(ACTIONS.length);
+          jointAction[agent] = ACTIONS[action];
+          binaryJointAction[agent] = (byte) action;
+        }
+        if (binary) {
+          System.out.write(binaryJointAction);
+        } else {
+          System.out.println(String.join("|", jointAction));
         }
-        System.out.println(String.join("|", jointAction));
-        System.out.flush();
       }
+      System.out.flush();
 
       for (int i = 0; i < batchSize; ++i) {
-        String serverMsg = stdin.readLine();
-        if (serverMsg == null) {
-          break messageLoop;
+        if (binary) {
+          if (stdin.readNBytes(binaryResponse, 0, binaryResponse.length) < binaryResponse.length) {
+            break messageLoop;
+          }
+        } else {
+          String serverMsg = readLine(stdin);
+          if (serverMsg == null) {
+            break messageLoop;
+          }
         }
       }
     }
 
+    System.out.flush();
+
     System.err.println("Client finished.");
     System.err.flush();
   }
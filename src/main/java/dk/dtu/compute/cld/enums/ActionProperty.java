@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.enums;
+
+/**
+ * Properties of an action which operands can refer to, e.g. a.dest.
+ */
+public enum ActionProperty {
+  Origin(OperandValueType.Vertex), Destination(OperandValueType.Vertex), Edge(
+      OperandValueType.Edge), Time(
+          OperandValueType.Number), Name(OperandValueType.String), Agent(OperandValueType.Number);
+
+  public final OperandValueType valueType;
+
+  ActionProperty(OperandValueType valueType) {
+    this.valueType = valueType;
+  }
+
+  public static ActionProperty fromString(String propertyString) {
+    switch (propertyString) {
+      case "orig":
+      case "origin":
+        return Origin;
+      case "dest":
+      case "destination":
+        return Destination;
+      case "edge":
+        return Edge;
+      case "time":
+        return Time;
+      case "name":
+        return Name;
+      case "agent":
+        return Agent;
+      default:
+        throw new IllegalArgumentException("Invalid string: " + propertyString);
+    }
+  }
+}
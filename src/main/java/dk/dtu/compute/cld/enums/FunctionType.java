@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.enums;
+
+/**
+ * Functions which operands can apply to vertices, e.g. DISTANCE(a.orig,
+ * b.orig). All functions are evaluated on the level by a DistanceOracle and
+ * return a number.
+ */
+public enum FunctionType {
+  /**
+   * Length of the shortest path between two vertices, avoiding walls.
+   */
+  DISTANCE(2),
+  /**
+   * Label of the connected area of free cells containing a vertex.
+   */
+  AREA(1),
+  /**
+   * Label of the room (or corridor) containing a vertex.
+   */
+  ROOM(1);
+
+  public final int arity;
+
+  FunctionType(int arity) {
+    this.arity = arity;
+  }
+
+  public static FunctionType fromString(String functionString) {
+    try {
+      return FunctionType.valueOf(functionString);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Unknown function: '%s'", functionString));
+    }
+  }
+}
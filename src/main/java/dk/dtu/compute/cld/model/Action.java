@@ -42,6 +42,37 @@ public class Action {
    */
   public final Integer agent;
 
+  /**
+   * Packs the cell (row, col) into an int. Rows and columns must be in 0 ..
+   * 65535.
+   */
+  public static int cell(int row, int col) {
+    return row << 16 | col;
+  }
+
+  public static int cellRow(int cell) {
+    return cell >>> 16;
+  }
+
+  public static int cellCol(int cell) {
+    return cell & 0xFFFF;
+  }
+
+  /**
+   * Packs the edge between two packed cells into a long.
+   */
+  public static long edge(int origin, int destination) {
+    return (long) origin << 32 | (destination & 0xFFFFFFFFL);
+  }
+
+  public static int edgeOrigin(long edge) {
+    return (int) (edge >>> 32);
+  }
+
+  public static int edgeDestination(long edge) {
+    return (int) edge;
+  }
+
   /**
    * Action model used as context for constraint validation
    * 
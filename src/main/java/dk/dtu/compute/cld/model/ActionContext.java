@@ -16,49 +16,109 @@
 package dk.dtu.compute.cld.model;
 
 import java.util.AbstractMap.SimpleEntry;
-import java.util.HashMap;
+import java.util.Arrays;
 import org.javatuples.Pair;
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.services.DistanceOracle;
 
-
+/**
+ * Context of the actions a constraint is evaluated for. Each mapped action is
+ * stored in a slot, numbered in the order the actions were mapped, so operands
+ * bound to a slot read the action's properties directly.
+ */
 public class ActionContext implements ValidationContext {
 
-  private final HashMap<String, Object> map;
+  private String[] keys;
+  private Action[] actions;
+  private Pair<?, ?>[] edges;
+  private int numSlots;
+  private DistanceOracle oracle;
 
   public ActionContext() {
-    this.map = new HashMap<>();
+    this.keys = new String[2];
+    this.actions = new Action[2];
+    this.edges = new Pair<?, ?>[2];
+    this.numSlots = 0;
   }
 
   @SafeVarargs
   public ActionContext(SimpleEntry<String, Action>... entries) {
-    this.map = new HashMap<>();
+    this();
     for (var entry : entries) {
       this.mapContext(entry);
     }
   }
 
   public ActionContext mapContext(SimpleEntry<String, Action> entry) {
-    var actionRef = entry.getKey();
-    var action = entry.getValue();
+    if (this.numSlots == this.actions.length) {
+      this.keys = Arrays.copyOf(this.keys, this.numSlots * 2);
+      this.actions = Arrays.copyOf(this.actions, this.numSlots * 2);
+      this.edges = Arrays.copyOf(this.edges, this.numSlots * 2);
+    }
+    this.keys[this.numSlots] = entry.getKey();
+    this.actions[this.numSlots] = entry.getValue();
+    this.edges[this.numSlots] = null;
+    ++this.numSlots;
+    return this;
+  }
 
-    this.map.put(actionRef, action);
-    this.map.put(String.format("%s.dest", actionRef), action.destination);
-    this.map.put(String.format("%s.destination", actionRef), action.destination);
-    this.map.put(String.format("%s.orig", actionRef), action.origin);
-    this.map.put(String.format("%s.origin", actionRef), action.origin);
-    this.map.put(String.format("%s.time", actionRef), action.time);
-    this.map.put(String.format("%s.name", actionRef), action.name);
-    this.map.put(String.format("%s.agent", actionRef), action.agent);
-    this.map.put(String.format("%s.edge", actionRef),
-        new Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>(action.origin,
-            action.destination));
+  /**
+   * Binds the action in the given slot, keeping the key of the slot.
+   */
+  public ActionContext set(int slot, Action action) {
+    this.actions[slot] = action;
+    this.edges[slot] = null;
+    return this;
+  }
 
+  public ActionContext withOracle(DistanceOracle oracle) {
+    this.oracle = oracle;
     return this;
   }
 
+  @Override
+  public DistanceOracle getOracle() {
+    return this.oracle;
+  }
+
+  @Override
   public Object get(String key) {
-    if (this.map.containsKey(key)) {
-      return this.map.get(key);
+    var separator = key.indexOf('.');
+    var actionRef = separator == -1 ? key : key.substring(0, separator);
+
+    // A later mapping of the same key takes precedence.
+    for (var slot = this.numSlots - 1; slot >= 0; --slot) {
+      if (this.keys[slot].equals(actionRef)) {
+        if (separator == -1) {
+          return this.actions[slot];
+        }
+        return this.get(slot, ActionProperty.fromString(key.substring(separator + 1)));
+      }
     }
     throw new IllegalArgumentException();
   }
+
+  @Override
+  public Object get(int slot, ActionProperty property) {
+    var action = this.actions[slot];
+    switch (property) {
+      case Origin:
+        return action.origin;
+      case Destination:
+        return action.destination;
+      case Edge:
+        if (this.edges[slot] == null) {
+          this.edges[slot] = new Pair<>(action.origin, action.destination);
+        }
+        return this.edges[slot];
+      case Time:
+        return action.time;
+      case Name:
+        return action.name;
+      case Agent:
+        return action.agent;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
 }
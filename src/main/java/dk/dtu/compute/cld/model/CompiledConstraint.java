@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.model;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.function.Predicate;
+
+/**
+ * Immutable form of a constraint, compiled once and evaluated for any actions
+ * bound into a context from newContext(). Compiled constraints can be shared
+ * between threads, while each thread binds actions into its own context.
+ */
+public final class CompiledConstraint {
+  public final String requestingKey;
+  public final String restrictingKey;
+  private final Predicate<ValidationContext> predicate;
+  private final Predicate<JointActionContext> packedPredicate;
+
+  /**
+   * Equi-join equivalent to the predicate, or null if the constraint is not one
+   * (see ExpressionAnalyzer.findEquiJoin()).
+   */
+  public final EquiJoin equiJoin;
+
+  public CompiledConstraint(String requestingKey, String restrictingKey,
+      Predicate<ValidationContext> predicate, Predicate<JointActionContext> packedPredicate,
+      EquiJoin equiJoin) {
+    this.requestingKey = requestingKey;
+    this.restrictingKey = restrictingKey;
+    this.predicate = predicate;
+    this.packedPredicate = packedPredicate;
+    this.equiJoin = equiJoin;
+  }
+
+  public boolean isSingleContextConstraint() {
+    return this.restrictingKey == null;
+  }
+
+  /**
+   * Creates a context with a slot for the requesting action (slot 0) and, unless
+   * this is a single context constraint, the restricting action (slot 1). Bind
+   * actions with ActionContext.set() before evaluating.
+   */
+  public ActionContext newContext() {
+    var context = new ActionContext().mapContext(new SimpleEntry<>(this.requestingKey, null));
+    if (this.restrictingKey != null) {
+      context.mapContext(new SimpleEntry<>(this.restrictingKey, null));
+    }
+    return context;
+  }
+
+  public boolean evaluate(ValidationContext context) {
+    return this.predicate.test(context);
+  }
+
+  /**
+   * Evaluates the constraint for the actions bound to slot 0 (requesting) and
+   * slot 1 (restricting) of the joint action context.
+   */
+  public boolean evaluate(JointActionContext context) {
+    return this.packedPredicate.test(context);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.model;
+
+import java.util.List;
+import dk.dtu.compute.cld.enums.ActionProperty;
+
+/**
+ * Multi-context constraint which holds if and only if, for one of its terms, a
+ * property of the requesting action equals a property of the restricting
+ * action, e.g. a.dest IS b.dest OR a.dest IS b.origin.
+ * <p>
+ * Instead of evaluating the constraint for each pair of actions, the keys of
+ * each term are hashed in two linear passes over the joint action.
+ */
+public final class EquiJoin {
+  private final ActionProperty[] requestingProperties;
+  private final ActionProperty[] restrictingProperties;
+
+  /**
+   * @param requestingProperties property of the requesting action per term
+   * @param restrictingProperties property of the restricting action per term
+   */
+  public EquiJoin(List<ActionProperty> requestingProperties,
+      List<ActionProperty> restrictingProperties) {
+    this.requestingProperties = requestingProperties.toArray(new ActionProperty[0]);
+    this.restrictingProperties = restrictingProperties.toArray(new ActionProperty[0]);
+  }
+
+  /**
+   * Marks both actions of every pair i > j as conflicting for which the
+   * constraint holds with action i requesting and action j restricting. Same as
+   * evaluating the constraint for each pair, but in O(n) time.
+   *
+   * @param context joint action context holding the actions
+   * @param numActions number of actions in the joint action
+   * @param index scratch index with capacity for numActions keys
+   * @param conflicting set to true for the actions found in a conflict
+   */
+  public void markConflicts(JointActionContext context, int numActions, KeyIndex index,
+      boolean[] conflicting) {
+    for (var term = 0; term < this.requestingProperties.length; term++) {
+      var requesting = this.requestingProperties[term];
+      var restricting = this.restrictingProperties[term];
+
+      // Action i conflicts if an earlier action restricts it.
+      index.clear();
+      for (var i = 0; i < numActions; i++) {
+        if (index.contains(context.getKey(i, requesting))) {
+          conflicting[i] = true;
+        }
+        index.add(context.getKey(i, restricting));
+      }
+
+      // Action j conflicts if it restricts a later action.
+      index.clear();
+      for (var j = numActions - 1; j >= 0; j--) {
+        if (index.contains(context.getKey(j, restricting))) {
+          conflicting[j] = true;
+        }
+        index.add(context.getKey(j, requesting));
+      }
+    }
+  }
+}
@@ -17,6 +17,11 @@ package dk.dtu.compute.cld.model;
 
 import java.util.Iterator;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import dk.dtu.compute.cld.enums.OperandType;
+import dk.dtu.compute.cld.enums.OperandValueType;
+import dk.dtu.compute.cld.errors.PredicateExecutionFailedException;
+import dk.dtu.compute.cld.services.DistanceOracle;
 
 public final class Expression implements Iterator<Expression> {
   public Operand operand1;
@@ -56,11 +61,136 @@ public final class Expression implements Iterator<Expression> {
   }
 
   private Predicate<ValidationContext> toSinglePredicate() {
-    return context -> operator.predicate.test(operand1.getValue(context),
-        operand2.getValue(context));
+    // Literal operands are resolved once here rather than on every test.
+    var predicate = operator.predicate;
+    var literal1 = operand1.type == OperandType.Literal;
+    var literal2 = operand2.type == OperandType.Literal;
+    if (literal1 && literal2) {
+      var value1 = operand1.value;
+      var value2 = operand2.value;
+      return context -> predicate.test(value1, value2);
+    } else if (literal1) {
+      var value1 = operand1.value;
+      var reference2 = operand2;
+      return context -> predicate.test(value1, reference2.getValue(context));
+    } else if (literal2) {
+      var reference1 = operand1;
+      var value2 = operand2.value;
+      return context -> predicate.test(reference1.getValue(context), value2);
+    }
+    var reference1 = operand1;
+    var reference2 = operand2;
+    return context -> predicate.test(reference1.getValue(context), reference2.getValue(context));
+  }
+
+  /**
+   * Whether the operand can be read as an int from a JointActionContext.
+   */
+  private static boolean isPackedInt(Operand operand) {
+    if (operand.type == OperandType.Literal) {
+      return operand.valueType == OperandValueType.Number;
+    }
+    if (operand.type == OperandType.Function) {
+      for (var argument : operand.arguments) {
+        if (!isPackedInt(argument)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return operand.slot != Operand.UNBOUND && (operand.valueType == OperandValueType.Number
+        || operand.valueType == OperandValueType.Vertex);
+  }
+
+  /**
+   * Reads a non-literal operand for which isPackedInt() holds.
+   */
+  private static ToIntFunction<JointActionContext> toPackedReader(Operand operand) {
+    if (operand.type == OperandType.Function) {
+      var argument1 = toPackedReader(operand.arguments[0]);
+      switch (operand.function) {
+        case DISTANCE:
+          var argument2 = toPackedReader(operand.arguments[1]);
+          return context -> oracle(context, operand).distance(argument1.applyAsInt(context),
+              argument2.applyAsInt(context));
+        case AREA:
+          return context -> oracle(context, operand).area(argument1.applyAsInt(context));
+        case ROOM:
+          return context -> oracle(context, operand).room(argument1.applyAsInt(context));
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    var slot = operand.slot;
+    var property = operand.property;
+    return context -> context.getInt(slot, property);
+  }
+
+  private static DistanceOracle oracle(JointActionContext context, Operand function) {
+    var oracle = context.getOracle();
+    if (oracle == null) {
+      throw new PredicateExecutionFailedException(
+          String.format("Function %s requires a level.", function.function));
+    }
+    return oracle;
+  }
+
+  private Predicate<JointActionContext> toSinglePackedPredicate() {
+    var intPredicate = operator.intPredicate;
+    if (intPredicate != null && isPackedInt(operand1) && isPackedInt(operand2)) {
+      var literal1 = operand1.type == OperandType.Literal;
+      var literal2 = operand2.type == OperandType.Literal;
+      if (literal1 && literal2) {
+        var result = intPredicate.test((Integer) operand1.value, (Integer) operand2.value);
+        return context -> result;
+      } else if (literal1) {
+        int value1 = (Integer) operand1.value;
+        var reader2 = toPackedReader(operand2);
+        return context -> intPredicate.test(value1, reader2.applyAsInt(context));
+      } else if (literal2) {
+        var reader1 = toPackedReader(operand1);
+        int value2 = (Integer) operand2.value;
+        return context -> intPredicate.test(reader1.applyAsInt(context), value2);
+      }
+      var reader1 = toPackedReader(operand1);
+      var reader2 = toPackedReader(operand2);
+      return context -> intPredicate.test(reader1.applyAsInt(context), reader2.applyAsInt(context));
+    }
+
+    var longPredicate = operator.longPredicate;
+    if (longPredicate != null && operand1.slot != Operand.UNBOUND
+        && operand2.slot != Operand.UNBOUND) {
+      var slot1 = operand1.slot;
+      var property1 = operand1.property;
+      var slot2 = operand2.slot;
+      var property2 = operand2.property;
+      return context -> longPredicate.test(context.getLong(slot1, property1),
+          context.getLong(slot2, property2));
+    }
+
+    Predicate<ValidationContext> predicate = toSinglePredicate();
+    return predicate::test;
   }
 
+  /**
+   * Predicate of the expression chain, optimized by ExpressionOptimizer.
+   */
   public Predicate<ValidationContext> toPredicate() {
+    return ExpressionOptimizer.optimize(this, Expression::toSinglePredicate);
+  }
+
+  /**
+   * Predicate for contexts with packed actions, which compares packed operands
+   * without boxing when the operator supports it.
+   */
+  public Predicate<JointActionContext> toPackedPredicate() {
+    return ExpressionOptimizer.optimize(this, Expression::toSinglePackedPredicate);
+  }
+
+  /**
+   * Predicate evaluating the expression chain as declared, without optimizations.
+   */
+  Predicate<ValidationContext> toDeclaredOrderPredicate() {
     var curr = this;
     var predicate = curr.toSinglePredicate();
     Predicate<ValidationContext> nextPredicate;
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import dk.dtu.compute.cld.enums.ConnectorType;
+import dk.dtu.compute.cld.enums.OperandType;
+import dk.dtu.compute.cld.enums.OperatorType;
+
+/**
+ * Turns an expression chain into a predicate which is equivalent to evaluating
+ * the chain in declaration order, but cheaper to evaluate:
+ * <ul>
+ * <li>Expressions comparing two literals are folded into constants, which are
+ * then eliminated from the conjunctions and disjunctions they are part of.</li>
+ * <li>The operands of each conjunction and disjunction are ordered by their
+ * estimated cost, so cheap tests short-circuit expensive ones.</li>
+ * <li>While evaluating, each conjunction and disjunction counts how often its
+ * operands short-circuit it, and periodically reorders them by cost per
+ * short-circuit.</li>
+ * </ul>
+ * The chain is folded from left to right without precedence, i.e. a AND b OR c
+ * is (a AND b) OR c, and NOT negates the expression following it. Reordering
+ * relies on expressions having no side effects.
+ */
+final class ExpressionOptimizer {
+
+  /**
+   * Number of evaluations between reorderings of adaptive junctions.
+   */
+  static final int REORDER_INTERVAL = 4096;
+
+  private ExpressionOptimizer() {}
+
+  private static abstract class Node {
+    abstract double cost();
+  }
+
+  private static final class Term extends Node {
+    final Expression expression;
+    final boolean negated;
+
+    Term(Expression expression, boolean negated) {
+      this.expression = expression;
+      this.negated = negated;
+    }
+
+    @Override
+    double cost() {
+      return estimateCost(this.expression);
+    }
+  }
+
+  private static final class Constant extends Node {
+    static final Constant TRUE = new Constant(true);
+    static final Constant FALSE = new Constant(false);
+
+    final boolean value;
+
+    private Constant(boolean value) {
+      this.value = value;
+    }
+
+    static Constant of(boolean value) {
+      return value ? TRUE : FALSE;
+    }
+
+    @Override
+    double cost() {
+      return 0;
+    }
+  }
+
+  private static final class Junction extends Node {
+    final ConnectorType type;
+    final List<Node> operands = new ArrayList<>();
+
+    Junction(ConnectorType type) {
+      this.type = type;
+    }
+
+    @Override
+    double cost() {
+      return this.operands.stream().mapToDouble(Node::cost).sum();
+    }
+  }
+
+  static <C> Predicate<C> optimize(Expression expression,
+      Function<Expression, Predicate<C>> toSinglePredicate) {
+    return toPredicate(simplify(parse(expression)), toSinglePredicate);
+  }
+
+  /**
+   * Groups the left fold of the chain into junctions, e.g. a AND b AND c OR d
+   * into OR(AND(a, b, c), d).
+   */
+  private static Node parse(Expression expression) {
+    Node root = new Term(expression, false);
+    var curr = expression;
+    while (curr.hasNext()) {
+      curr = curr.next();
+      var term = new Term(curr, curr.connector.negated);
+      if (!(root instanceof Junction) || ((Junction) root).type != curr.connector.type) {
+        var junction = new Junction(curr.connector.type);
+        junction.operands.add(root);
+        root = junction;
+      }
+      ((Junction) root).operands.add(term);
+    }
+    return root;
+  }
+
+  /**
+   * Folds constants and orders the operands of junctions by estimated cost.
+   */
+  private static Node simplify(Node node) {
+    if (node instanceof Term) {
+      var term = (Term) node;
+      var expression = term.expression;
+      if (expression.operand1.type == OperandType.Literal
+          && expression.operand2.type == OperandType.Literal) {
+        var value = expression.operator.predicate.test(expression.operand1.value,
+            expression.operand2.value);
+        return Constant.of(value != term.negated);
+      }
+      return term;
+    }
+    if (!(node instanceof Junction)) {
+      return node;
+    }
+
+    // AND is false if any operand is false, and OR is true if any is true.
+    var junction = (Junction) node;
+    var absorbing = junction.type == ConnectorType.OR;
+    var simplified = new Junction(junction.type);
+    for (var operand : junction.operands) {
+      var simplifiedOperand = simplify(operand);
+      if (simplifiedOperand instanceof Constant) {
+        if (((Constant) simplifiedOperand).value == absorbing) {
+          return simplifiedOperand;
+        }
+      } else if (simplifiedOperand instanceof Junction
+          && ((Junction) simplifiedOperand).type == junction.type) {
+        simplified.operands.addAll(((Junction) simplifiedOperand).operands);
+      } else {
+        simplified.operands.add(simplifiedOperand);
+      }
+    }
+    if (simplified.operands.isEmpty()) {
+      return Constant.of(!absorbing);
+    }
+    if (simplified.operands.size() == 1) {
+      return simplified.operands.get(0);
+    }
+    simplified.operands.sort(Comparator.comparingDouble(Node::cost));
+    return simplified;
+  }
+
+  private static <C> Predicate<C> toPredicate(Node node,
+      Function<Expression, Predicate<C>> toSinglePredicate) {
+    if (node instanceof Constant) {
+      var value = ((Constant) node).value;
+      return context -> value;
+    }
+    if (node instanceof Term) {
+      var term = (Term) node;
+      var predicate = toSinglePredicate.apply(term.expression);
+      return term.negated ? predicate.negate() : predicate;
+    }
+    var junction = (Junction) node;
+    Predicate<C>[] operands = newPredicateArray(junction.operands.size());
+    var costs = new double[operands.length];
+    for (var i = 0; i < operands.length; i++) {
+      operands[i] = toPredicate(junction.operands.get(i), toSinglePredicate);
+      costs[i] = junction.operands.get(i).cost();
+    }
+    return new AdaptiveJunction<C>(junction.type == ConnectorType.AND, operands, costs);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <C> Predicate<C>[] newPredicateArray(int length) {
+    return new Predicate[length];
+  }
+
+  /**
+   * Estimated relative cost of evaluating a single expression.
+   */
+  static double estimateCost(Expression expression) {
+    var cost = operandCost(expression.operand1) + operandCost(expression.operand2);
+    switch (expression.operand1.valueType) {
+      case Edge:
+        return cost + (expression.operator.type == OperatorType.OVERLAPS ? 4 : 2);
+      case String:
+        return cost + 4;
+      default:
+        return cost + 1;
+    }
+  }
+
+  private static double operandCost(Operand operand) {
+    if (operand.type != OperandType.Function) {
+      return 0;
+    }
+    switch (operand.function) {
+      case DISTANCE:
+        return 16;
+      default:
+        return 4;
+    }
+  }
+
+  /**
+   * Conjunction (or disjunction) which evaluates its operands in the order with
+   * the least expected cost observed so far. An operand short-circuits a
+   * conjunction when it is false, and a disjunction when it is true.
+   * <p>
+   * The order is replaced, never modified, so a junction can be evaluated by
+   * several threads at a time. The counters are then approximate, which only
+   * affects the order.
+   */
+  static final class AdaptiveJunction<C> implements Predicate<C> {
+    private final boolean isConjunction;
+    private final Predicate<C>[] operands;
+    private final double[] costs;
+    private final int[] evaluations;
+    private final int[] shortCircuits;
+    private volatile int[] order;
+    private int untilReorder = REORDER_INTERVAL;
+
+    AdaptiveJunction(boolean isConjunction, Predicate<C>[] operands, double[] costs) {
+      this.isConjunction = isConjunction;
+      this.operands = operands;
+      this.costs = costs;
+      this.evaluations = new int[operands.length];
+      this.shortCircuits = new int[operands.length];
+      this.order = new int[operands.length];
+      for (var i = 0; i < operands.length; i++) {
+        this.order[i] = i;
+      }
+    }
+
+    @Override
+    public boolean test(C context) {
+      var result = this.isConjunction;
+      for (var i : this.order) {
+        ++this.evaluations[i];
+        if (this.operands[i].test(context) != this.isConjunction) {
+          ++this.shortCircuits[i];
+          result = !this.isConjunction;
+          break;
+        }
+      }
+      if (--this.untilReorder <= 0) {
+        this.reorder();
+      }
+      return result;
+    }
+
+    int[] getOrder() {
+      return this.order;
+    }
+
+    /**
+     * Orders the operands by cost per short-circuit, which minimises the expected
+     * cost of independent operands. The counters are halved so the order follows
+     * changes in the evaluated actions.
+     */
+    private void reorder() {
+      this.untilReorder = REORDER_INTERVAL;
+      var ranks = new double[this.operands.length];
+      for (var i = 0; i < ranks.length; i++) {
+        var probability = (this.shortCircuits[i] + 1.0) / (this.evaluations[i] + 2.0);
+        ranks[i] = this.costs[i] / probability;
+        this.evaluations[i] /= 2;
+        this.shortCircuits[i] /= 2;
+      }
+      var order = this.order.clone();
+      for (var i = 1; i < order.length; i++) {
+        var operand = order[i];
+        var j = i;
+        for (; j > 0 && ranks[order[j - 1]] > ranks[operand]; j--) {
+          order[j] = order[j - 1];
+        }
+        order[j] = operand;
+      }
+      this.order = order;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.model;
+
+import org.javatuples.Pair;
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.services.DistanceOracle;
+
+/**
+ * Context holding all actions of a joint action in primitive arrays, with cells
+ * packed as ints and edges as longs (see Action.cell() and Action.edge()).
+ * Constraint slots are bound to actions by index, so the actions are set once
+ * per joint action and evaluating constraints for any pair of actions allocates
+ * nothing.
+ * <p>
+ * Only supports operands bound to a slot, as compiled constraints have.
+ */
+public final class JointActionContext implements ValidationContext {
+  private final int[] origins;
+  private final int[] destinations;
+  private final int[] times;
+  private final String[] names;
+  private final int[] agents;
+  private final int[] slotActions = new int[2];
+  private final DistanceOracle oracle;
+
+  public JointActionContext(int numActions) {
+    this(numActions, null);
+  }
+
+  public JointActionContext(int numActions, DistanceOracle oracle) {
+    this.oracle = oracle;
+    this.origins = new int[numActions];
+    this.destinations = new int[numActions];
+    this.times = new int[numActions];
+    this.names = new String[numActions];
+    this.agents = new int[numActions];
+  }
+
+  /**
+   * Sets the action with the given index.
+   * 
+   * @param action index of the action in the joint action
+   * @param origin packed origin cell
+   * @param destination packed destination cell
+   * @param time time when action is being executed/requested
+   * @param name name of the action
+   * @param agent agent id attempting the action
+   */
+  public void setAction(int action, int origin, int destination, int time, String name, int agent) {
+    this.origins[action] = origin;
+    this.destinations[action] = destination;
+    this.times[action] = time;
+    this.names[action] = name;
+    this.agents[action] = agent;
+  }
+
+  public int getOrigin(int action) {
+    return this.origins[action];
+  }
+
+  public int getDestination(int action) {
+    return this.destinations[action];
+  }
+
+  /**
+   * Binds the action with the given index to the slot.
+   */
+  public JointActionContext bind(int slot, int action) {
+    this.slotActions[slot] = action;
+    return this;
+  }
+
+  /**
+   * Gets a number, or a vertex as a packed cell, of the action in the slot.
+   */
+  public int getInt(int slot, ActionProperty property) {
+    var action = this.slotActions[slot];
+    switch (property) {
+      case Origin:
+        return this.origins[action];
+      case Destination:
+        return this.destinations[action];
+      case Time:
+        return this.times[action];
+      case Agent:
+        return this.agents[action];
+      default:
+        throw new IllegalArgumentException(String.format("Not an int property: %s", property));
+    }
+  }
+
+  /**
+   * Gets an edge as a packed long of the action in the slot.
+   */
+  public long getLong(int slot, ActionProperty property) {
+    if (property != ActionProperty.Edge) {
+      throw new IllegalArgumentException(String.format("Not a long property: %s", property));
+    }
+    var action = this.slotActions[slot];
+    return Action.edge(this.origins[action], this.destinations[action]);
+  }
+
+  /**
+   * Gets a key of the action with the given index, which equals the key of
+   * another action if and only if the property is equal. Names have no key.
+   */
+  public long getKey(int action, ActionProperty property) {
+    switch (property) {
+      case Origin:
+        return this.origins[action];
+      case Destination:
+        return this.destinations[action];
+      case Edge:
+        return Action.edge(this.origins[action], this.destinations[action]);
+      case Time:
+        return this.times[action];
+      case Agent:
+        return this.agents[action];
+      default:
+        throw new IllegalArgumentException(String.format("Property has no key: %s", property));
+    }
+  }
+
+  @Override
+  public DistanceOracle getOracle() {
+    return this.oracle;
+  }
+
+  @Override
+  public Object get(String key) {
+    throw new IllegalArgumentException(
+        String.format("Action references must be bound to a slot: %s", key));
+  }
+
+  @Override
+  public Object get(int slot, ActionProperty property) {
+    var action = this.slotActions[slot];
+    switch (property) {
+      case Origin:
+        return toPair(this.origins[action]);
+      case Destination:
+        return toPair(this.destinations[action]);
+      case Edge:
+        return new Pair<>(toPair(this.origins[action]), toPair(this.destinations[action]));
+      case Time:
+        return this.times[action];
+      case Name:
+        return this.names[action];
+      case Agent:
+        return this.agents[action];
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  private static Pair<Integer, Integer> toPair(int cell) {
+    return new Pair<>(Action.cellRow(cell), Action.cellCol(cell));
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.model;
+
+import java.util.Arrays;
+
+/**
+ * Set of long keys with open addressing, which is cleared in constant time so
+ * it can be reused for every joint action without allocating.
+ */
+public final class KeyIndex {
+  private final long[] keys;
+  private final int[] stamps;
+  private final int mask;
+  private int stamp = 1;
+
+  /**
+   * Index holding up to the given number of keys.
+   */
+  public KeyIndex(int capacity) {
+    var size = Integer.highestOneBit(Math.max(capacity, 1)) << 2;
+    this.keys = new long[size];
+    this.stamps = new int[size];
+    this.mask = size - 1;
+  }
+
+  public void clear() {
+    if (++this.stamp == 0) {
+      Arrays.fill(this.stamps, 0);
+      this.stamp = 1;
+    }
+  }
+
+  public void add(long key) {
+    var i = this.indexOf(key);
+    this.keys[i] = key;
+    this.stamps[i] = this.stamp;
+  }
+
+  public boolean contains(long key) {
+    return this.stamps[this.indexOf(key)] == this.stamp;
+  }
+
+  /**
+   * Index of the slot holding the key, or of the free slot where it belongs.
+   */
+  private int indexOf(long key) {
+    var i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & this.mask;
+    while (this.stamps[i] == this.stamp && this.keys[i] != key) {
+      i = (i + 1) & this.mask;
+    }
+    return i;
+  }
+}
@@ -17,8 +17,12 @@ package dk.dtu.compute.cld.model;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.javatuples.Pair;
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.enums.FunctionType;
 import dk.dtu.compute.cld.enums.OperandType;
 import dk.dtu.compute.cld.enums.OperandValueType;
+import dk.dtu.compute.cld.errors.PredicateExecutionFailedException;
 
 public class Operand {
   private final static Pattern numberPattern = Pattern.compile("^\\d+$");
@@ -26,46 +30,136 @@ public class Operand {
   private final static Pattern actionPropPattern = Pattern.compile(
       "^(?<actionkey>[a-z]+)\\.((?<orig>orig(?:in)?)|(?<dest>dest(?:ination)?)|(?<edge>edge)|(?<time>time)|(?<name>name)|(?<agent>agent))$");
 
+  private final static Pattern functionPattern =
+      Pattern.compile("^(?<function>[A-Z]+)\\((?<arguments>[a-z.,\\h]+)\\)$");
+
+  /**
+   * Slot of operands which are not bound to a context slot.
+   */
+  public static final int UNBOUND = -1;
+
   protected final Object value;
 
   public final OperandValueType valueType;
   public final OperandType type;
   public final String actionKey;
 
+  /**
+   * The referenced action property and the context slot of the action, if the
+   * operand is an action reference. Operands bound to a slot are evaluated
+   * without looking up the reference by name.
+   */
+  public final ActionProperty property;
+  public final int slot;
+
+  /**
+   * The applied function and its vertex arguments, if the operand is a function,
+   * e.g. DISTANCE(a.orig, b.orig).
+   */
+  public final FunctionType function;
+  public final Operand[] arguments;
+
   public Operand(String valueString) {
     Matcher matcher;
-    if ((matcher = stringPattern.matcher(valueString)).matches()) {
+    if ((matcher = functionPattern.matcher(valueString)).matches()) {
+      this.function = FunctionType.fromString(matcher.group("function"));
+      this.arguments = parseArguments(this.function, matcher.group("arguments"));
+    } else {
+      this.function = null;
+      this.arguments = null;
+    }
+
+    if (this.function != null) {
+      this.valueType = OperandValueType.Number;
+      this.value = valueString;
+      this.type = OperandType.Function;
+      this.actionKey = null;
+      this.property = null;
+    } else if ((matcher = stringPattern.matcher(valueString)).matches()) {
       this.valueType = OperandValueType.String;
       this.value = matcher.group("value");
       this.type = OperandType.Literal;
       this.actionKey = null;
+      this.property = null;
     } else if ((matcher = numberPattern.matcher(valueString)).matches()) {
       this.valueType = OperandValueType.Number;
       this.value = (Integer) Integer.parseInt(valueString);
       this.type = OperandType.Literal;
       this.actionKey = null;
+      this.property = null;
     } else if ((matcher = actionPropPattern.matcher(valueString)).matches()) {
       this.value = valueString;
       this.type = OperandType.ActionReference;
       this.actionKey = matcher.group("actionkey");
       if (matcher.group("orig") != null) {
-        this.valueType = OperandValueType.Vertex;
+        this.property = ActionProperty.Origin;
       } else if (matcher.group("dest") != null) {
-        this.valueType = OperandValueType.Vertex;
+        this.property = ActionProperty.Destination;
       } else if (matcher.group("edge") != null) {
-        this.valueType = OperandValueType.Edge;
+        this.property = ActionProperty.Edge;
       } else if (matcher.group("time") != null) {
-        this.valueType = OperandValueType.Number;
+        this.property = ActionProperty.Time;
       } else if (matcher.group("name") != null) {
-        this.valueType = OperandValueType.String;
+        this.property = ActionProperty.Name;
       } else if (matcher.group("agent") != null) {
-        this.valueType = OperandValueType.Number;
+        this.property = ActionProperty.Agent;
       } else {
         throw new IllegalArgumentException(String.format("Not a valid operand: %s", valueString));
       }
+      this.valueType = this.property.valueType;
     } else {
       throw new IllegalArgumentException(String.format("Not a valid operand: %s", valueString));
     }
+    this.slot = UNBOUND;
+  }
+
+  private Operand(Operand operand, int slot, Operand[] arguments) {
+    this.value = operand.value;
+    this.valueType = operand.valueType;
+    this.type = operand.type;
+    this.actionKey = operand.actionKey;
+    this.property = operand.property;
+    this.slot = slot;
+    this.function = operand.function;
+    this.arguments = arguments;
+  }
+
+  private static Operand[] parseArguments(FunctionType function, String argumentsString) {
+    var arguments = argumentsString.split(",\\h*");
+    if (arguments.length != function.arity) {
+      throw new IllegalArgumentException(String.format("Function %s takes %d argument(s): %s",
+          function, function.arity, argumentsString));
+    }
+    var operands = new Operand[arguments.length];
+    for (var i = 0; i < arguments.length; i++) {
+      operands[i] = new Operand(arguments[i]);
+      if (operands[i].type != OperandType.ActionReference
+          || operands[i].valueType != OperandValueType.Vertex) {
+        throw new IllegalArgumentException(
+            String.format("Function %s only takes vertices: %s", function, arguments[i]));
+      }
+    }
+    return operands;
+  }
+
+  /**
+   * Returns this action reference bound to the given context slot.
+   */
+  public Operand bind(int slot) {
+    if (this.type != OperandType.ActionReference) {
+      throw new IllegalStateException("Only action references can be bound to a slot.");
+    }
+    return new Operand(this, slot, null);
+  }
+
+  /**
+   * Returns this function with the given (bound) arguments.
+   */
+  public Operand withArguments(Operand[] arguments) {
+    if (this.type != OperandType.Function || arguments.length != this.arguments.length) {
+      throw new IllegalStateException("Only the arguments of functions can be replaced.");
+    }
+    return new Operand(this, UNBOUND, arguments);
   }
 
   public boolean compatibleWith(Operand other) {
@@ -73,6 +167,40 @@ public class Operand {
   }
 
   public Object getValue(ValidationContext context) {
-    return this.type == OperandType.Literal ? this.value : context.get((String) this.value);
+    if (this.type == OperandType.Literal) {
+      return this.value;
+    }
+    if (this.type == OperandType.Function) {
+      return this.apply(context);
+    }
+    if (this.slot != UNBOUND) {
+      return context.get(this.slot, this.property);
+    }
+    return context.get((String) this.value);
+  }
+
+  private Integer apply(ValidationContext context) {
+    var oracle = context.getOracle();
+    if (oracle == null) {
+      throw new PredicateExecutionFailedException(
+          String.format("Function %s requires a level.", this.function));
+    }
+    var vertex1 = toCell(this.arguments[0].getValue(context));
+    switch (this.function) {
+      case DISTANCE:
+        return oracle.distance(vertex1, toCell(this.arguments[1].getValue(context)));
+      case AREA:
+        return oracle.area(vertex1);
+      case ROOM:
+        return oracle.room(vertex1);
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int toCell(Object vertex) {
+    var pair = (Pair<Integer, Integer>) vertex;
+    return Action.cell(pair.getValue0(), pair.getValue1());
   }
 }
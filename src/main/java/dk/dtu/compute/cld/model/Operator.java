@@ -21,6 +21,7 @@ import org.javatuples.Pair;
 import dk.dtu.compute.cld.enums.OperandValueType;
 import dk.dtu.compute.cld.enums.OperatorType;
 import dk.dtu.compute.cld.errors.PredicateExecutionFailedException;
+import dk.dtu.compute.cld.services.OperatorCompiler;
 import dk.dtu.compute.cld.services.OperatorProvider;
 import java.lang.reflect.Method;
 import java.util.Map;
@@ -37,23 +38,51 @@ public class Operator {
   private final String string;
 
   public final OperatorType type;
+  public final boolean negated;
   public BiPredicate<Object, Object> predicate;
 
+  /**
+   * Predicates on packed operands (see Action.cell() and Action.edge()), or null
+   * if the operator is not compiled or has no predicate for packed operands.
+   */
+  public final OperatorCompiler.IntBiPredicate intPredicate;
+  public final OperatorCompiler.LongBiPredicate longPredicate;
+
   public Operator(String operatorString, OperandValueType argType) {
+    this(operatorString, argType, true);
+  }
+
+  /**
+   * Operator comparing two operands of the given type.
+   * 
+   * @param operatorString operator, e.g. IS NOT
+   * @param argType type of the operands
+   * @param compiled whether to use a predicate compiled by OperatorCompiler, if
+   *        there is one, instead of invoking OperatorProvider reflectively
+   */
+  public Operator(String operatorString, OperandValueType argType, boolean compiled) {
     try {
       this.string = operatorString;
       this.type = OperatorType.fromString(operatorString);
       this.method = getMethod(type, argType);
 
-      this.predicate = (operand1, operand2) -> {
-        try {
-          return (boolean) this.method.invoke(null, operand1, operand2);
-        } catch (Exception e) {
-          throw new PredicateExecutionFailedException(e.getMessage());
+      this.negated = operatorString.contains("NOT");
+      this.predicate = compiled ? OperatorCompiler.compile(this.type, argType, this.negated) : null;
+      this.intPredicate =
+          compiled ? OperatorCompiler.compileInt(this.type, argType, this.negated) : null;
+      this.longPredicate =
+          compiled ? OperatorCompiler.compileLong(this.type, argType, this.negated) : null;
+      if (this.predicate == null) {
+        this.predicate = (operand1, operand2) -> {
+          try {
+            return (boolean) this.method.invoke(null, operand1, operand2);
+          } catch (Exception e) {
+            throw new PredicateExecutionFailedException(e.getMessage());
+          }
+        };
+        if (this.negated) {
+          this.predicate = this.predicate.negate();
         }
-      };
-      if (operatorString.contains("NOT")) {
-        this.predicate = this.predicate.negate();
       }
     } catch (NoSuchMethodException e) {
       throw new IllegalArgumentException(String
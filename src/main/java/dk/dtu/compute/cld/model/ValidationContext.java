@@ -15,6 +15,23 @@
  */
 package dk.dtu.compute.cld.model;
 
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.services.DistanceOracle;
+
 public interface ValidationContext {
   Object get(String key);
+
+  /**
+   * Gets a property of the action in the given slot, where slots are numbered in
+   * the order the actions were mapped into the context.
+   */
+  Object get(int slot, ActionProperty property);
+
+  /**
+   * Gets the oracle of the level the actions are performed in, which evaluates
+   * function operands, or null if there is none.
+   */
+  default DistanceOracle getOracle() {
+    return null;
+  }
 }
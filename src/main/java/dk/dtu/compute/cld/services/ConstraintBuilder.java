@@ -20,6 +20,7 @@ import dk.dtu.compute.cld.enums.OperandType;
 import dk.dtu.compute.cld.enums.PredicateParsingStateMachine;
 import dk.dtu.compute.cld.model.Action;
 import dk.dtu.compute.cld.model.ActionContext;
+import dk.dtu.compute.cld.model.CompiledConstraint;
 import dk.dtu.compute.cld.model.Connector;
 import dk.dtu.compute.cld.model.Constraint;
 import dk.dtu.compute.cld.model.Expression;
@@ -74,6 +75,26 @@ public class ConstraintBuilder {
     return new Constraint(context, predicate);
   }
 
+  /**
+   * Compiles the constraint into an immutable form, which does not depend on the
+   * action contexts of this builder. Actions are instead bound into a context per
+   * evaluation, see CompiledConstraint.newContext().
+   */
+  public CompiledConstraint compile() throws IllegalStateException {
+    if (!predicateSM.isEndingState()) {
+      throw new IllegalStateException("Incomplete predicate");
+    }
+    if (this.requestingContext.key == null) {
+      throw new IllegalStateException("Must provide context mapping first.");
+    }
+    validateReferences();
+
+    var equiJoin =
+        this.restrictingContext.key != null ? ExpressionAnalyzer.findEquiJoin(expression) : null;
+    return new CompiledConstraint(this.requestingContext.key, this.restrictingContext.key,
+        expression.toPredicate(), expression.toPackedPredicate(), equiJoin);
+  }
+
   public ConstraintBuilder withRequestingContext(Action context) {
     if (context == null) {
       throw new IllegalArgumentException("Action context may not be null.");
@@ -123,38 +144,81 @@ public class ConstraintBuilder {
     if (restrictingContext.key != null && !restrictingContext.isValid()) {
       throw new IllegalStateException("Missing required restricting context");
     }
+    validateReferences();
+  }
 
-    // contextual variables
+  /**
+   * Validates that all action references refer to a context
+   * 
+   * @throws IllegalStateException
+   */
+  private void validateReferences() throws IllegalStateException {
     var curr = expression;
     while (curr != null) {
       for (var operand : new Operand[] {curr.operand1, curr.operand2}) {
-        if (operand.type != OperandType.ActionReference) {
-          continue;
-        }
-
-        if (!operand.actionKey.equals(requestingContext.key)
-            && !operand.actionKey.equals(restrictingContext.key)) {
-          throw new IllegalStateException(
-              String.format("Missing required action context entry: %s", operand.actionKey));
-        }
+        validateReference(operand);
       }
       curr = curr.next();
     }
   }
 
+  private void validateReference(Operand operand) throws IllegalStateException {
+    if (operand.type == OperandType.Function) {
+      for (var argument : operand.arguments) {
+        validateReference(argument);
+      }
+    }
+    if (operand.type != OperandType.ActionReference) {
+      return;
+    }
+
+    if (!operand.actionKey.equals(requestingContext.key)
+        && !operand.actionKey.equals(restrictingContext.key)) {
+      throw new IllegalStateException(
+          String.format("Missing required action context entry: %s", operand.actionKey));
+    }
+  }
+
+  /**
+   * Binds action references to the context slot of their action, matching the
+   * order in which build() maps the contexts: the requesting context is slot 0
+   * and the restricting context is slot 1. References to unknown contexts are
+   * left unbound and reported by validate(). The arguments of functions are bound
+   * the same way.
+   */
+  private Operand bind(Operand operand) {
+    if (operand.type == OperandType.Function) {
+      var arguments = new Operand[operand.arguments.length];
+      for (var i = 0; i < arguments.length; i++) {
+        arguments[i] = this.bind(operand.arguments[i]);
+      }
+      return operand.withArguments(arguments);
+    }
+    if (operand.type != OperandType.ActionReference) {
+      return operand;
+    }
+    if (operand.actionKey.equals(this.requestingContext.key)) {
+      return operand.bind(0);
+    }
+    if (operand.actionKey.equals(this.restrictingContext.key)) {
+      return operand.bind(1);
+    }
+    return operand;
+  }
+
   protected ConstraintBuilder withPredicateToken(String token) throws IllegalArgumentException {
     if (token == null || token.isEmpty()) {
       throw new IllegalArgumentException("Predicate token may not be null or empty.");
     }
     switch (predicateSM) {
       case OPERAND1:
-        current.operand1 = new Operand(token);
+        current.operand1 = this.bind(new Operand(token));
         break;
       case OPERATOR:
         current.operator = new Operator(token, current.operand1.valueType);
         break;
       case OPERAND2:
-        current.operand2 = new Operand(token);
+        current.operand2 = this.bind(new Operand(token));
 
         if (!current.operand2.compatibleWith(current.operand1))
           throw new IllegalArgumentException(
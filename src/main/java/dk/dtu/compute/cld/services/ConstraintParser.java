@@ -28,6 +28,12 @@ public class ConstraintParser {
   public String contextString;
   public String predicateString;
 
+  /**
+   * Function operand, e.g. DISTANCE(a.orig, b.orig).
+   */
+  private final static String functionPattern =
+      "[A-Z]+\\([a-z]+\\.[a-z]+(?:,\\h?[a-z]+\\.[a-z]+)*\\)";
+
   private final static Pattern constraintPattern = Pattern.compile(
       // start
       "^"
@@ -58,11 +64,11 @@ public class ConstraintParser {
           // predicate connector
           + "(?:\\h(?:(?:AND|OR)(?:\\hNOT)?)\\h|^)"
           // operand1
-          + "(?:[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
+          + "(?:" + functionPattern + "|[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
           // operator
           + "\\h(?:[A-Z]+(?:\\h[A-Z]+)*)\\h"
           // operand2
-          + "(?:[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
+          + "(?:" + functionPattern + "|[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
           // repeat until end
           + ")+$");
 
@@ -70,9 +76,9 @@ public class ConstraintParser {
       // predicate connector
       "(?:\\h(?<connector>(?:AND|OR)(?:\\hNOT)?)\\h|^)"
           // predicate operands and operator
-          + "(?<operand1>[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
-          + "\\h(?<operator>[A-Z]+(?:\\h[A-Z]+)*)\\h"
-          + "(?<operand2>[a-z]+\\.[a-z]+|\\'[\\w()\\h.,*]+\\'|[0-9]+)");
+          + "(?<operand1>" + functionPattern + "|[a-z]+\\.[a-z]+|\\'[\\w\\h().,*]+\\'|[0-9]+)"
+          + "\\h(?<operator>[A-Z]+(?:\\h[A-Z]+)*)\\h" + "(?<operand2>" + functionPattern
+          + "|[a-z]+\\.[a-z]+|\\'[\\w()\\h.,*]+\\'|[0-9]+)");
 
 
 
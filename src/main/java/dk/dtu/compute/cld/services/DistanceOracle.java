@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import dk.dtu.compute.cld.model.Action;
+
+/**
+ * Answers spatial queries about the static walls of a level, for the DISTANCE,
+ * AREA and ROOM functions of constraints. Vertices are packed cells (see
+ * Action.cell()).
+ * <p>
+ * Distances are looked up in breadth-first search tables, one per source cell,
+ * which are computed on first use and kept in a bounded LRU cache. Area and
+ * room labels are computed for the whole level on first use. After that, all
+ * queries are O(1) lookups. An oracle is not thread safe.
+ */
+public final class DistanceOracle {
+  /**
+   * Distance between vertices with no path between them.
+   */
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  /**
+   * Label of vertices which are walls or outside the level.
+   */
+  public static final int NO_LABEL = -1;
+
+  /**
+   * Bound on the total number of cached distances.
+   */
+  private static final int MAX_CACHED_DISTANCES = 1 << 24;
+
+  private final int numRows;
+  private final int numCols;
+  private final BitSet walls;
+
+  private final Map<Integer, int[]> distanceTables;
+  private int lastSource = -1;
+  private int[] lastTable;
+
+  private int[] areas;
+  private int[] rooms;
+
+  private final int[] neighbours = new int[4];
+
+  /**
+   * @param numRows number of rows of the level
+   * @param numCols number of columns of the level
+   * @param walls walls, indexed by (row * numCols + col)
+   */
+  public DistanceOracle(int numRows, int numCols, BitSet walls) {
+    this.numRows = numRows;
+    this.numCols = numCols;
+    this.walls = walls;
+
+    var maxTables = Math.max(1, MAX_CACHED_DISTANCES / Math.max(1, numRows * numCols));
+    this.distanceTables = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return this.size() > maxTables;
+      }
+    };
+  }
+
+  /**
+   * Length of the shortest path between the vertices, moving between horizontally
+   * or vertically adjacent cells without walls, or UNREACHABLE.
+   */
+  public int distance(int from, int to) {
+    var fromIndex = this.indexOf(from);
+    var toIndex = this.indexOf(to);
+    if (fromIndex == -1 || toIndex == -1) {
+      return UNREACHABLE;
+    }
+    if (fromIndex == toIndex) {
+      return 0;
+    }
+    var areas = this.areas();
+    if (areas[fromIndex] != areas[toIndex]) {
+      return UNREACHABLE;
+    }
+
+    // Distances are symmetric, so a table of either vertex will do.
+    if (fromIndex == this.lastSource) {
+      return this.lastTable[toIndex];
+    }
+    if (toIndex == this.lastSource) {
+      return this.lastTable[fromIndex];
+    }
+    var table = this.distanceTables.get(fromIndex);
+    if (table == null) {
+      table = this.distanceTables.get(toIndex);
+      if (table != null) {
+        this.lastSource = toIndex;
+        this.lastTable = table;
+        return table[fromIndex];
+      }
+      table = this.search(fromIndex);
+      this.distanceTables.put(fromIndex, table);
+    }
+    this.lastSource = fromIndex;
+    this.lastTable = table;
+    return table[toIndex];
+  }
+
+  /**
+   * Label of the connected area of cells without walls containing the vertex, or
+   * NO_LABEL. Vertices are in the same area if and only if there is a path
+   * between them.
+   */
+  public int area(int vertex) {
+    var index = this.indexOf(vertex);
+    return index == -1 ? NO_LABEL : this.areas()[index];
+  }
+
+  /**
+   * Label of the room containing the vertex, or NO_LABEL. Cells which are part of
+   * a 2x2 block of cells without walls belong to rooms, and the remaining cells
+   * to corridors (including doorways). Adjacent room cells are in the same room
+   * and adjacent corridor cells in the same corridor, so doorways separate rooms.
+   * Corridors are labelled like rooms.
+   */
+  public int room(int vertex) {
+    var index = this.indexOf(vertex);
+    return index == -1 ? NO_LABEL : this.rooms()[index];
+  }
+
+  /**
+   * Index of the vertex cell, or -1 if it is a wall or outside the level.
+   */
+  private int indexOf(int vertex) {
+    var row = Action.cellRow(vertex);
+    var col = Action.cellCol(vertex);
+    if (row >= this.numRows || col >= this.numCols) {
+      return -1;
+    }
+    var index = row * this.numCols + col;
+    return this.walls.get(index) ? -1 : index;
+  }
+
+  private boolean isFree(int row, int col) {
+    return row >= 0 && row < this.numRows && col >= 0 && col < this.numCols
+        && !this.walls.get(row * this.numCols + col);
+  }
+
+  private int[] search(int source) {
+    var distances = new int[this.numRows * this.numCols];
+    Arrays.fill(distances, UNREACHABLE);
+    var queue = new int[distances.length];
+    var head = 0;
+    var tail = 0;
+    distances[source] = 0;
+    queue[tail++] = source;
+    while (head < tail) {
+      var index = queue[head++];
+      var row = index / this.numCols;
+      var col = index % this.numCols;
+      for (var neighbour : this.neighbours(row, col)) {
+        if (neighbour != -1 && distances[neighbour] == UNREACHABLE) {
+          distances[neighbour] = distances[index] + 1;
+          queue[tail++] = neighbour;
+        }
+      }
+    }
+    return distances;
+  }
+
+  private int[] areas() {
+    if (this.areas == null) {
+      this.areas = this.label(new boolean[this.numRows * this.numCols]);
+    }
+    return this.areas;
+  }
+
+  private int[] rooms() {
+    if (this.rooms == null) {
+      var isRoom = new boolean[this.numRows * this.numCols];
+      for (var row = 0; row + 1 < this.numRows; ++row) {
+        for (var col = 0; col + 1 < this.numCols; ++col) {
+          if (this.isFree(row, col) && this.isFree(row, col + 1) && this.isFree(row + 1, col)
+              && this.isFree(row + 1, col + 1)) {
+            var index = row * this.numCols + col;
+            isRoom[index] = true;
+            isRoom[index + 1] = true;
+            isRoom[index + this.numCols] = true;
+            isRoom[index + this.numCols + 1] = true;
+          }
+        }
+      }
+      this.rooms = this.label(isRoom);
+    }
+    return this.rooms;
+  }
+
+  /**
+   * Labels the connected components of cells without walls, where adjacent cells
+   * are connected if they have the same kind.
+   */
+  private int[] label(boolean[] kinds) {
+    var labels = new int[kinds.length];
+    Arrays.fill(labels, NO_LABEL);
+    var queue = new int[kinds.length];
+    var nextLabel = 0;
+    for (var start = 0; start < kinds.length; ++start) {
+      if (labels[start] != NO_LABEL || this.walls.get(start)) {
+        continue;
+      }
+      var head = 0;
+      var tail = 0;
+      labels[start] = nextLabel;
+      queue[tail++] = start;
+      while (head < tail) {
+        var index = queue[head++];
+        for (var neighbour : this.neighbours(index / this.numCols, index % this.numCols)) {
+          if (neighbour != -1 && labels[neighbour] == NO_LABEL
+              && kinds[neighbour] == kinds[start]) {
+            labels[neighbour] = nextLabel;
+            queue[tail++] = neighbour;
+          }
+        }
+      }
+      ++nextLabel;
+    }
+    return labels;
+  }
+
+  /**
+   * Indices of the cells adjacent to the cell, or -1 for walls and cells outside
+   * the level.
+   */
+  private int[] neighbours(int row, int col) {
+    var neighbours = this.neighbours;
+    neighbours[0] = this.isFree(row - 1, col) ? (row - 1) * this.numCols + col : -1;
+    neighbours[1] = this.isFree(row + 1, col) ? (row + 1) * this.numCols + col : -1;
+    neighbours[2] = this.isFree(row, col - 1) ? row * this.numCols + col - 1 : -1;
+    neighbours[3] = this.isFree(row, col + 1) ? row * this.numCols + col + 1 : -1;
+    return neighbours;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.enums.ConnectorType;
+import dk.dtu.compute.cld.enums.OperandType;
+import dk.dtu.compute.cld.enums.OperandValueType;
+import dk.dtu.compute.cld.model.EquiJoin;
+import dk.dtu.compute.cld.model.Expression;
+import dk.dtu.compute.cld.model.Operand;
+
+/**
+ * Analysis of parsed expressions, used to pick a faster way of evaluating a
+ * constraint than testing its predicate.
+ */
+public final class ExpressionAnalyzer {
+
+  private ExpressionAnalyzer() {}
+
+  /**
+   * Finds whether the expression, with operands bound to the requesting (slot 0)
+   * and restricting (slot 1) actions, is a disjunction of equality tests between
+   * a property of each action. An edge which OVERLAPS WITH another edge is
+   * expanded into equality tests between their endpoints.
+   * 
+   * @return the equi-join, or null if the expression is anything else
+   */
+  public static EquiJoin findEquiJoin(Expression expression) {
+    var requestingProperties = new ArrayList<ActionProperty>();
+    var restrictingProperties = new ArrayList<ActionProperty>();
+    var curr = expression;
+    while (true) {
+      if (curr != expression
+          && (curr.connector.type != ConnectorType.OR || curr.connector.negated)) {
+        return null;
+      }
+      if (!addTerms(curr, requestingProperties, restrictingProperties)) {
+        return null;
+      }
+      if (!curr.hasNext()) {
+        break;
+      }
+      curr = curr.next();
+    }
+    return new EquiJoin(requestingProperties, restrictingProperties);
+  }
+
+  private static boolean addTerms(Expression expression, List<ActionProperty> requesting,
+      List<ActionProperty> restricting) {
+    var operand1 = expression.operand1;
+    var operand2 = expression.operand2;
+    if (expression.operator.negated || !isJoinable(operand1) || !isJoinable(operand2)
+        || operand1.slot == operand2.slot || operand1.valueType != operand2.valueType) {
+      return false;
+    }
+    var requestingOperand = operand1.slot == 0 ? operand1 : operand2;
+    var restrictingOperand = operand1.slot == 0 ? operand2 : operand1;
+
+    switch (expression.operator.type) {
+      case IS:
+        requesting.add(requestingOperand.property);
+        restricting.add(restrictingOperand.property);
+        return true;
+      case OVERLAPS:
+        if (operand1.valueType != OperandValueType.Edge) {
+          return false;
+        }
+        for (var requestingEndpoint : List.of(ActionProperty.Origin, ActionProperty.Destination)) {
+          for (var restrictingEndpoint : List.of(ActionProperty.Origin,
+              ActionProperty.Destination)) {
+            requesting.add(requestingEndpoint);
+            restricting.add(restrictingEndpoint);
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Whether the operand is a bound reference to a property with a key (see
+   * JointActionContext.getKey()).
+   */
+  private static boolean isJoinable(Operand operand) {
+    return operand.type == OperandType.ActionReference && operand.slot != Operand.UNBOUND
+        && operand.property != ActionProperty.Name;
+  }
+}
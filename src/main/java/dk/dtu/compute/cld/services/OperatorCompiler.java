@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.cld.services;
+
+import java.util.function.BiPredicate;
+import org.javatuples.Pair;
+import dk.dtu.compute.cld.enums.OperandValueType;
+import dk.dtu.compute.cld.enums.OperatorType;
+import dk.dtu.compute.cld.errors.PredicateExecutionFailedException;
+import dk.dtu.compute.cld.model.Action;
+
+/**
+ * Compiles operators to predicates specialised for their operand type, which
+ * call the OperatorProvider methods directly instead of through reflection. The
+ * JIT can then inline the comparison into the constraint predicate.
+ * <p>
+ * The compiled predicates have the same semantics as invoking the
+ * OperatorProvider method reflectively, including failing with a
+ * PredicateExecutionFailedException if an operand has the wrong type.
+ */
+public final class OperatorCompiler {
+
+  /**
+   * Operator on numbers, or on vertices packed as cells (see Action.cell()).
+   */
+  @FunctionalInterface
+  public interface IntBiPredicate {
+    boolean test(int one, int other);
+  }
+
+  /**
+   * Operator on edges packed as longs (see Action.edge()).
+   */
+  @FunctionalInterface
+  public interface LongBiPredicate {
+    boolean test(long one, long other);
+  }
+
+  private OperatorCompiler() {}
+
+  /**
+   * Returns a predicate for the operator on packed operands of the given type
+   * (numbers and vertices), or null if the operator has no such predicate.
+   * Equivalent to compile() on the unpacked operands.
+   */
+  public static IntBiPredicate compileInt(OperatorType type, OperandValueType argType,
+      boolean negated) {
+    if (argType != OperandValueType.Number && argType != OperandValueType.Vertex) {
+      return null;
+    }
+    switch (type) {
+      case IS:
+        return negated ? (one, other) -> one != other : (one, other) -> one == other;
+      case LESS:
+        if (argType != OperandValueType.Number) {
+          return null;
+        }
+        return negated ? (one, other) -> !(one < other) : (one, other) -> one < other;
+      case MORE:
+        if (argType != OperandValueType.Number) {
+          return null;
+        }
+        return negated ? (one, other) -> !(one > other) : (one, other) -> one > other;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns a predicate for the operator on packed edges, or null if the operator
+   * has no such predicate. Equivalent to compile() on the unpacked operands.
+   */
+  public static LongBiPredicate compileLong(OperatorType type, OperandValueType argType,
+      boolean negated) {
+    if (argType != OperandValueType.Edge) {
+      return null;
+    }
+    switch (type) {
+      case IS:
+        return negated ? (one, other) -> one != other : (one, other) -> one == other;
+      case OVERLAPS:
+        return negated ? (one, other) -> !overlaps(one, other) : OperatorCompiler::overlaps;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean overlaps(long one, long other) {
+    var oneOrigin = Action.edgeOrigin(one);
+    var oneDestination = Action.edgeDestination(one);
+    var otherOrigin = Action.edgeOrigin(other);
+    var otherDestination = Action.edgeDestination(other);
+    return oneOrigin == otherOrigin || oneDestination == otherOrigin
+        || oneOrigin == otherDestination || oneDestination == otherDestination;
+  }
+
+  /**
+   * Returns a predicate for the operator on operands of the given type, or null
+   * if the operator can not be compiled for that type.
+   *
+   * @param type operator type
+   * @param argType type of both operands
+   * @param negated whether the operator is negated (e.g. IS NOT)
+   */
+  public static BiPredicate<Object, Object> compile(OperatorType type, OperandValueType argType,
+      boolean negated) {
+    switch (type) {
+      case IS:
+        switch (argType) {
+          case Number:
+            return negated ? (one, other) -> !isNumber(one, other) : OperatorCompiler::isNumber;
+          case String:
+            return negated ? (one, other) -> !isString(one, other) : OperatorCompiler::isString;
+          case Vertex:
+          case Edge:
+            return negated ? (one, other) -> !isPair(one, other) : OperatorCompiler::isPair;
+          default:
+            return null;
+        }
+      case LESS:
+        if (argType != OperandValueType.Number) {
+          return null;
+        }
+        return negated ? (one, other) -> !less(one, other) : OperatorCompiler::less;
+      case MORE:
+        if (argType != OperandValueType.Number) {
+          return null;
+        }
+        return negated ? (one, other) -> !more(one, other) : OperatorCompiler::more;
+      case OVERLAPS:
+        if (argType != OperandValueType.Vertex && argType != OperandValueType.Edge) {
+          return null;
+        }
+        return negated ? (one, other) -> !overlaps(one, other) : OperatorCompiler::overlaps;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isNumber(Object one, Object other) {
+    try {
+      return OperatorProvider.is((Integer) one, (Integer) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+
+  private static boolean isString(Object one, Object other) {
+    try {
+      return OperatorProvider.is((String) one, (String) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean isPair(Object one, Object other) {
+    try {
+      return OperatorProvider.is((Pair<Integer, Integer>) one, (Pair<Integer, Integer>) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+
+  private static boolean less(Object one, Object other) {
+    try {
+      return OperatorProvider.less((Integer) one, (Integer) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+
+  private static boolean more(Object one, Object other) {
+    try {
+      return OperatorProvider.more((Integer) one, (Integer) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean overlaps(Object one, Object other) {
+    try {
+      return OperatorProvider.overlaps((Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>) one,
+          (Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>) other);
+    } catch (RuntimeException e) {
+      throw new PredicateExecutionFailedException(e.getMessage());
+    }
+  }
+}
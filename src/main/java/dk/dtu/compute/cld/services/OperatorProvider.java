@@ -15,13 +15,14 @@
  */
 package dk.dtu.compute.cld.services;
 
+import java.util.Objects;
 import org.javatuples.*;
 
 
 public final class OperatorProvider {
 
   public static boolean is(Integer one, Integer other) {
-    return one == other;
+    return Objects.equals(one, other);
   }
 
   public static boolean is(String one, String other) {
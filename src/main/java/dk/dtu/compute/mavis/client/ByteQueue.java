@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-memory pipe: a bounded ring buffer of bytes written through
+ * getOutputStream() and read through getInputStream().
+ * <p>
+ * The ring buffer is single-producer single-consumer and lock-free: the reader
+ * only advances the head and the writer only advances the tail. A side which
+ * can not proceed spins briefly, and then parks until the other side unparks
+ * it. Each stream is synchronized on itself, so several threads may share a
+ * side, e.g. the threads of a client writing to System.out.
+ * <p>
+ * Closing the output stream is the end of the stream for the reader, once it
+ * has read the remaining bytes. Closing the input stream makes further writes
+ * fail, like a broken pipe.
+ */
+class ByteQueue {
+  private static final int SPIN_ITERATIONS = 100;
+
+  private final byte[] buffer;
+  private final int mask;
+
+  /**
+   * The total number of bytes read and written. The buffer holds the bytes from
+   * head to tail, modulo the capacity.
+   */
+  private volatile long head = 0;
+  private volatile long tail = 0;
+
+  private volatile boolean readerClosed = false;
+  private volatile boolean writerClosed = false;
+
+  /**
+   * The thread of each side which is parked, waiting for the other side.
+   */
+  private volatile Thread parkedReader = null;
+  private volatile Thread parkedWriter = null;
+
+  private final InputStream inputStream = new QueueInputStream();
+  private final OutputStream outputStream = new QueueOutputStream();
+
+  /**
+   * The capacity is rounded up to a power of two.
+   */
+  ByteQueue(int capacity) {
+    int powerOfTwo = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    this.buffer = new byte[powerOfTwo];
+    this.mask = powerOfTwo - 1;
+  }
+
+  InputStream getInputStream() {
+    return this.inputStream;
+  }
+
+  OutputStream getOutputStream() {
+    return this.outputStream;
+  }
+
+  /**
+   * Closes both sides, so the reader reads the remaining bytes and then the end
+   * of the stream, and the writer fails.
+   */
+  void close() {
+    this.readerClosed = true;
+    this.writerClosed = true;
+    LockSupport.unpark(this.parkedReader);
+    LockSupport.unpark(this.parkedWriter);
+  }
+
+  /**
+   * Spins for the first iterations, and then parks until the other side makes
+   * progress. The caller has published itself as the parked thread of its side
+   * before checking whether it can proceed, so the other side unparks it after
+   * making progress.
+   */
+  private static void await(int spin) throws InterruptedIOException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException("Interrupted while waiting for the pipe.");
+    }
+    if (spin < SPIN_ITERATIONS) {
+      Thread.onSpinWait();
+    } else {
+      LockSupport.park();
+    }
+  }
+
+  private class QueueInputStream extends InputStream {
+    private final byte[] single = new byte[1];
+
+    @Override
+    public synchronized int read() throws IOException {
+      return this.read(this.single, 0, 1) == -1 ? -1 : this.single[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return 0;
+      }
+
+      long head = ByteQueue.this.head;
+      long tail;
+      try {
+        for (int spin = 0;; ++spin) {
+          if (spin >= SPIN_ITERATIONS) {
+            ByteQueue.this.parkedReader = Thread.currentThread();
+          }
+          // The writer closes after its last write, so the end of the stream is
+          // only reached if the tail is unchanged after the writer closed.
+          boolean writerClosed = ByteQueue.this.writerClosed;
+          if (ByteQueue.this.readerClosed && !writerClosed) {
+            throw new IOException("Pipe closed.");
+          }
+          tail = ByteQueue.this.tail;
+          if (tail != head) {
+            break;
+          }
+          if (writerClosed) {
+            return -1;
+          }
+          await(spin);
+        }
+      } finally {
+        ByteQueue.this.parkedReader = null;
+      }
+
+      int n = (int) Math.min(len, tail - head);
+      int start = (int) head & ByteQueue.this.mask;
+      int first = Math.min(n, ByteQueue.this.buffer.length - start);
+      System.arraycopy(ByteQueue.this.buffer, start, b, off, first);
+      System.arraycopy(ByteQueue.this.buffer, 0, b, off + first, n - first);
+      ByteQueue.this.head = head + n;
+      LockSupport.unpark(ByteQueue.this.parkedWriter);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return (int) (ByteQueue.this.tail - ByteQueue.this.head);
+    }
+
+    @Override
+    public void close() {
+      ByteQueue.this.readerClosed = true;
+      LockSupport.unpark(ByteQueue.this.parkedReader);
+      LockSupport.unpark(ByteQueue.this.parkedWriter);
+    }
+  }
+
+  private class QueueOutputStream extends OutputStream {
+    private final byte[] single = new byte[1];
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+      this.single[0] = (byte) b;
+      this.write(this.single, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+
+      int capacity = ByteQueue.this.buffer.length;
+      long tail = ByteQueue.this.tail;
+      while (len > 0) {
+        long head;
+        try {
+          for (int spin = 0;; ++spin) {
+            if (spin >= SPIN_ITERATIONS) {
+              ByteQueue.this.parkedWriter = Thread.currentThread();
+            }
+            if (ByteQueue.this.readerClosed || ByteQueue.this.writerClosed) {
+              throw new IOException("Pipe closed.");
+            }
+            head = ByteQueue.this.head;
+            if (tail - head < capacity) {
+              break;
+            }
+            await(spin);
+          }
+        } finally {
+          ByteQueue.this.parkedWriter = null;
+        }
+
+        int n = (int) Math.min(len, capacity - (tail - head));
+        int start = (int) tail & ByteQueue.this.mask;
+        int first = Math.min(n, capacity - start);
+        System.arraycopy(b, off, ByteQueue.this.buffer, start, first);
+        System.arraycopy(b, off + first, ByteQueue.this.buffer, 0, n - first);
+        tail += n;
+        ByteQueue.this.tail = tail;
+        LockSupport.unpark(ByteQueue.this.parkedReader);
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void close() {
+      ByteQueue.this.writerClosed = true;
+      LockSupport.unpark(ByteQueue.this.parkedReader);
+      LockSupport.unpark(ByteQueue.this.parkedWriter);
+    }
+  }
+}
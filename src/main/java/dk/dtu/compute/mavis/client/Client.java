@@ -33,6 +33,7 @@ public class Client {
 
   private final Timeout timeout;
   private long timeoutNS;
+  private final ClientTelemetry telemetry;
 
   private Domain domain;
 
@@ -63,21 +64,34 @@ public class Client {
    * <p>
    * The Client Thread will finally wait for the Protocol Thread to exit and then
    * itself exit.
+   * <p>
+   * While the protocol runs, the resource usage of the client process is sampled
+   * every sampleIntervalMS milliseconds by the Telemetry Thread.
+   * <p>
+   * If inProcess is true, then the client command must be a java command, and the
+   * client is run as an InProcessClient in the server process instead.
    */
   public Client(Domain domain, String clientCommand, OutputStream logOut, boolean closeLogOnExit,
-      Timeout timeout, long timeoutNS) throws IOException {
+      Timeout timeout, long timeoutNS, long sampleIntervalMS, boolean inProcess)
+      throws IOException {
     this.domain = domain;
     this.logOut = logOut;
     this.closeLogOnExit = closeLogOnExit;
     this.timeout = timeout;
     this.timeoutNS = timeoutNS;
 
-    // Naïvely tokenize client command.
-    ProcessBuilder processBuilder = new ProcessBuilder();
-    processBuilder.command(Arrays.asList(clientCommand.strip().split("\\s++")));
-    processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    if (inProcess) {
+      this.clientProcess = new InProcessClient(clientCommand);
+    } else {
+      // Naïvely tokenize client command.
+      ProcessBuilder processBuilder = new ProcessBuilder();
+      processBuilder.command(Arrays.asList(clientCommand.strip().split("\\s++")));
+      processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
 
-    this.clientProcess = processBuilder.start();
+      this.clientProcess = processBuilder.start();
+    }
+    this.telemetry = new ClientTelemetry(this.clientProcess, sampleIntervalMS);
+    this.timeout.setClientCpuTime(this.telemetry);
 
     InputStream clientIn = this.clientProcess.getInputStream();
     this.clientIn = clientIn instanceof BufferedInputStream ? (BufferedInputStream) clientIn
@@ -130,7 +144,8 @@ public class Client {
     Client.printDebug(String.format("Client process supports normal termination: %s.",
         this.clientProcess.supportsNormalTermination()));
 
-    // Start Protocol Thread.
+    // Start Telemetry Thread and Protocol Thread.
+    this.telemetry.start();
     Thread protocolThread = new Thread(this::runProtocol, "ProtocolThread");
     protocolThread.start();
 
@@ -185,6 +200,8 @@ public class Client {
       }
     }
 
+    this.telemetry.stop();
+
     if (this.closeLogOnExit) {
       try {
         this.logOut.flush();
@@ -214,8 +231,8 @@ public class Client {
   private void runProtocol() {
     Client.printDebug("Thread started.");
 
-    this.domain.runProtocol(this.timeout, this.timeoutNS, this.clientIn, this.clientOut,
-        this.logOut);
+    this.domain.runProtocol(this.timeout, this.timeoutNS, this.telemetry, this.clientIn,
+        this.clientOut, this.logOut);
 
     // If Domain.runProtocol() forgot to call Timeout.stop(), we call it here (does
     // nothing if
@@ -227,6 +244,11 @@ public class Client {
   }
 
   private void terminateClient() {
+    if (this.clientProcess instanceof InProcessClient) {
+      this.terminateInProcessClient();
+      return;
+    }
+
     if (this.clientProcess.isAlive() && this.clientProcess.supportsNormalTermination()) {
       Client.printInfo(
           "Sending termination signal to client process (PID = " + this.clientProcess.pid() + ").");
@@ -268,6 +290,40 @@ public class Client {
     }
   }
 
+  private void terminateInProcessClient() {
+    var client = (InProcessClient) this.clientProcess;
+    if (client.isAlive()) {
+      Client.printInfo("Interrupting threads of in-process client.");
+      client.destroy();
+      try {
+        boolean terminated = client.waitFor(1000, TimeUnit.MILLISECONDS);
+        if (terminated) {
+          return;
+        }
+      } catch (InterruptedException ignored) {
+      }
+    }
+
+    if (client.isAlive()) {
+      Client.printInfo("Forcibly stopping threads of in-process client.");
+      client.destroyForcibly();
+      try {
+        boolean terminated = client.waitFor(200, TimeUnit.MILLISECONDS);
+        if (terminated) {
+          return;
+        }
+      } catch (InterruptedException ignored) {
+      }
+    }
+
+    if (client.isAlive()) {
+      Client.printWarning("Threads of in-process client not terminated: "
+          + String.join(", ", client.getThreadNames()) + ".");
+    } else {
+      Client.printInfo("Client terminated.");
+    }
+  }
+
   private void closeClientStreams() {
     try {
       this.clientIn.close();
@@ -283,6 +339,13 @@ public class Client {
     }
   }
 
+  /**
+   * Why in-process clients are not supported by this JVM, or null if they are.
+   */
+  public static String getInProcessUnsupportedReason() {
+    return InProcessClient.getUnsupportedReason();
+  }
+
   public static void printDebug(String msg) {
     if (!Server.PRINT_DEBUG) {
       return;
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.client;
+
+import dk.dtu.compute.mavis.server.Server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples the resource usage of the client process and its subprocesses: the
+ * CPU time (user + system), the resident memory and the number of threads.
+ * <p>
+ * On Linux, the usage is read from /proc/[pid]/stat and /proc/[pid]/status. The
+ * CPU time in /proc/[pid]/stat also counts the subprocesses that have
+ * terminated and been waited for. Elsewhere, only the CPU time of the live
+ * processes is available, through ProcessHandle.Info, and the memory and number
+ * of threads are -1.
+ * <p>
+ * For an InProcessClient, the CPU time is the sum of the CPU times of its
+ * threads, and the memory is -1, since the heap is shared with the server.
+ * <p>
+ * The Telemetry Thread records a sample at a fixed interval until stop() is
+ * called. Since the usage can not be read once the client process has
+ * terminated, the samples also keep the CPU time up to date for getAsLong().
+ */
+public class ClientTelemetry implements LongSupplier {
+  private static final boolean HAS_PROC = Files.isReadable(Path.of("/proc/self/stat"));
+
+  /**
+   * The times in /proc/[pid]/stat are in clock ticks of USER_HZ, which is 100 Hz
+   * on all common Linux platforms.
+   */
+  private static final long NS_PER_CLOCK_TICK = 10_000_000L;
+
+  /**
+   * A sample of the resource usage of the client processes. The memory and number
+   * of threads are -1 if they are not available.
+   */
+  public static class Sample {
+    public final long timeNS;
+    public final long cpuTimeNS;
+    public final long memoryBytes;
+    public final int numThreads;
+
+    public Sample(long timeNS, long cpuTimeNS, long memoryBytes, int numThreads) {
+      this.timeNS = timeNS;
+      this.cpuTimeNS = cpuTimeNS;
+      this.memoryBytes = memoryBytes;
+      this.numThreads = numThreads;
+    }
+  }
+
+  private final Process clientProcess;
+  private final long intervalMS;
+  private final ArrayList<Sample> samples = new ArrayList<>();
+  private long cpuTimeNS = 0;
+  private Thread telemetryThread = null;
+  private boolean stopped = false;
+
+  ClientTelemetry(Process clientProcess, long intervalMS) {
+    this.clientProcess = clientProcess;
+    this.intervalMS = intervalMS;
+  }
+
+  /**
+   * Starts the Telemetry Thread.
+   */
+  synchronized void start() {
+    this.telemetryThread = new Thread(this::runTelemetry, "TelemetryThread");
+    this.telemetryThread.setDaemon(true);
+    this.telemetryThread.start();
+  }
+
+  /**
+   * Stops the Telemetry Thread, and waits for it to exit.
+   */
+  void stop() {
+    synchronized (this) {
+      this.stopped = true;
+      this.notifyAll();
+    }
+    if (this.telemetryThread == null) {
+      return;
+    }
+    while (true) {
+      try {
+        this.telemetryThread.join();
+        return;
+      } catch (InterruptedException ignored) {
+      }
+    }
+  }
+
+  private synchronized void runTelemetry() {
+    Client.printDebug("Thread started.");
+    while (!this.stopped && this.clientProcess.isAlive()) {
+      this.recordSample();
+      try {
+        this.wait(this.intervalMS);
+      } catch (InterruptedException ignored) {
+      }
+    }
+    Client.printDebug("Thread shut down.");
+  }
+
+  /**
+   * Records a sample now, unless the client process has terminated.
+   */
+  public synchronized void recordSample() {
+    Sample sample = this.sample();
+    if (sample != null) {
+      this.samples.add(sample);
+    }
+  }
+
+  /**
+   * The samples recorded so far, in the order they were recorded.
+   */
+  public synchronized List<Sample> getSamples() {
+    return new ArrayList<>(this.samples);
+  }
+
+  /**
+   * Returns the CPU time in nanoseconds the client processes have used so far.
+   */
+  @Override
+  public synchronized long getAsLong() {
+    this.sample();
+    return this.cpuTimeNS;
+  }
+
+  /**
+   * Samples the client processes, or returns null if the client process has
+   * terminated. Processes which terminate while sampling may be missed, so the
+   * CPU time is only updated if it increases.
+   */
+  private Sample sample() {
+    if (!this.clientProcess.isAlive()) {
+      return null;
+    }
+    long timeNS = System.nanoTime();
+    if (this.clientProcess instanceof InProcessClient) {
+      var client = (InProcessClient) this.clientProcess;
+      this.cpuTimeNS = Math.max(this.cpuTimeNS, client.getCpuTime());
+      return new Sample(timeNS, this.cpuTimeNS, -1, client.getNumThreads());
+    }
+
+    long[] usage = new long[3];
+    ProcessHandle clientProcess = this.clientProcess.toHandle();
+    addUsage(clientProcess, usage);
+    clientProcess.descendants().forEach(process -> addUsage(process, usage));
+    this.cpuTimeNS = Math.max(this.cpuTimeNS, usage[0]);
+    return HAS_PROC ? new Sample(timeNS, this.cpuTimeNS, usage[1], (int) usage[2])
+        : new Sample(timeNS, this.cpuTimeNS, -1, -1);
+  }
+
+  /**
+   * Adds the CPU time, memory and number of threads of the process to usage.
+   */
+  private static void addUsage(ProcessHandle process, long[] usage) {
+    if (!HAS_PROC) {
+      usage[0] += process.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+      return;
+    }
+
+    Path processDirectory = Path.of("/proc", Long.toString(process.pid()));
+    String stat;
+    List<String> status;
+    try {
+      stat = Files.readString(processDirectory.resolve("stat"), StandardCharsets.US_ASCII);
+      status = Files.readAllLines(processDirectory.resolve("status"), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      // The process terminated.
+      return;
+    }
+
+    try {
+      // The fields after the parenthesized command name start with the state
+      // (field 3), followed by utime, stime, cutime and cstime (fields 14-17).
+      String[] fields = stat.substring(stat.lastIndexOf(')') + 1).strip().split(" ");
+      for (int field = 14; field <= 17; ++field) {
+        usage[0] += Long.parseLong(fields[field - 3]) * NS_PER_CLOCK_TICK;
+      }
+
+      // E.g. "VmRSS: 1234 kB" and "Threads: 12". A zombie process has no
+      // resident memory line.
+      for (String line : status) {
+        if (line.startsWith("VmRSS:")) {
+          String kB = line.substring(6).strip();
+          usage[1] += Long.parseLong(kB.substring(0, kB.indexOf(' '))) * 1024;
+        } else if (line.startsWith("Threads:")) {
+          usage[2] += Long.parseLong(line.substring(8).strip());
+        }
+      }
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      Server.printDebug("Could not parse the usage of process " + process.pid() + ".");
+    }
+  }
+
+  /**
+   * The highest memory in bytes of the samples, or -1 if not available.
+   */
+  public static long getPeakMemory(List<Sample> samples) {
+    long peakMemory = -1;
+    for (Sample sample : samples) {
+      peakMemory = Math.max(peakMemory, sample.memoryBytes);
+    }
+    return peakMemory;
+  }
+
+  /**
+   * The highest number of threads of the samples, or -1 if not available.
+   */
+  public static int getPeakThreads(List<Sample> samples) {
+    int peakThreads = -1;
+    for (Sample sample : samples) {
+      peakThreads = Math.max(peakThreads, sample.numThreads);
+    }
+    return peakThreads;
+  }
+
+  /**
+   * The highest CPU usage between two consecutive samples, where 1.0 is one core
+   * fully used, or -1 if there are less than two samples.
+   */
+  public static double getPeakCpuUsage(List<Sample> samples) {
+    double peakCpuUsage = -1;
+    for (int i = 1; i < samples.size(); ++i) {
+      long elapsedNS = samples.get(i).timeNS - samples.get(i - 1).timeNS;
+      if (elapsedNS > 0) {
+        long cpuNS = samples.get(i).cpuTimeNS - samples.get(i - 1).cpuTimeNS;
+        peakCpuUsage = Math.max(peakCpuUsage, (double) cpuNS / elapsedNS);
+      }
+    }
+    return peakCpuUsage;
+  }
+}
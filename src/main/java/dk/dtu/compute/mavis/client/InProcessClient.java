@@ -0,0 +1,806 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.client;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * A Java client run in a thread group of the server process, instead of as a
+ * separate process. This saves the startup of a JVM for every run, and the
+ * system calls of the pipes for every message.
+ * <p>
+ * The client command must be a java command, e.g. "java -cp alice Client arg"
+ * or "java -jar alice.jar arg". The main class is loaded in its own class
+ * loader, so the static state of the client is not shared between runs, and the
+ * classes of the server are not visible to the client. JVM options, e.g. -Xmx,
+ * are ignored, except -ea and -da.
+ * <p>
+ * System.in and System.out are replaced by streams which route the threads of
+ * each client to its own ByteQueue pipes, and all other threads to the original
+ * streams. System.err is shared, as for a client process. A security manager
+ * turns System.exit() of a client into the exit of the client, and prevents the
+ * client from replacing System.in or System.out.
+ * <p>
+ * Like a JVM, the client exits when its non-daemon threads have exited, and
+ * then closes its pipes. Threads can not be killed, so destroy() interrupts the
+ * threads of the client and closes its pipes, and destroyForcibly() stops the
+ * threads with Thread.stop(). Threads which are not in the thread group of the
+ * client, e.g. of the common ForkJoinPool, are not part of the client.
+ * <p>
+ * Since a client can only be contained by the security manager and stopped by
+ * Thread.stop(), in-process clients are only supported on JVMs which provide
+ * both, see getUnsupportedReason().
+ */
+class InProcessClient extends Process {
+  private static final int PIPE_CAPACITY = 1 << 16;
+
+  /**
+   * The exit value of a client terminated by destroy(), as for SIGTERM.
+   */
+  private static final int DESTROY_EXIT_VALUE = 143;
+
+  private static final Map<ThreadGroup, InProcessClient> clients = new ConcurrentHashMap<>();
+  private static InputStream serverIn = null;
+  private static PrintStream serverOut = null;
+
+  private final URLClassLoader classLoader;
+  private final ThreadGroup threadGroup;
+
+  /**
+   * The pipes from the server to the client, and from the client to the server.
+   */
+  private final ByteQueue clientIn = new ByteQueue(PIPE_CAPACITY);
+  private final ByteQueue clientOut = new ByteQueue(PIPE_CAPACITY);
+  private final PrintStream clientPrintStream =
+      new PrintStream(new BufferedOutputStream(this.clientOut.getOutputStream(), 8192), true,
+          Charset.defaultCharset());
+
+  /**
+   * The last CPU time of each thread of the client, which is kept after the
+   * thread exits.
+   */
+  private final Map<Long, Long> threadCpuTimes = new HashMap<>();
+
+  private boolean exited = false;
+  private int exitValue = 0;
+
+  /**
+   * Loads the main class of the client and starts its main method in the
+   * ClientMainThread. Throws an IOException if in-process clients are not
+   * supported by the JVM, the client command is not a supported java command, or
+   * its main method can not be found.
+   */
+  InProcessClient(String clientCommand) throws IOException {
+    install();
+
+    // Naïvely tokenize client command, as for a client process.
+    List<String> tokens = Arrays.asList(clientCommand.strip().split("\\s++"));
+    String executable = Path.of(tokens.get(0)).getFileName().toString();
+    if (!executable.equals("java") && !executable.equals("java.exe")) {
+      throw new IOException("In-process clients must be started with a java command.");
+    }
+
+    String classPath = System.getenv("CLASSPATH") == null ? "." : System.getenv("CLASSPATH");
+    String mainClassName = null;
+    boolean assertions = false;
+    int i = 1;
+    for (; i < tokens.size() && mainClassName == null; ++i) {
+      String token = tokens.get(i);
+      switch (token) {
+        case "-cp":
+        case "-classpath":
+        case "--class-path":
+          ++i;
+          if (i == tokens.size()) {
+            throw new IOException("Expected another argument after " + token + ".");
+          }
+          classPath = tokens.get(i);
+          break;
+
+        case "-jar":
+          ++i;
+          if (i == tokens.size()) {
+            throw new IOException("Expected another argument after -jar.");
+          }
+          classPath = tokens.get(i);
+          try (var jarFile = new JarFile(classPath)) {
+            var manifest = jarFile.getManifest();
+            mainClassName =
+                manifest == null ? null : manifest.getMainAttributes().getValue("Main-Class");
+          }
+          if (mainClassName == null) {
+            throw new IOException("No Main-Class in the manifest of " + classPath + ".");
+          }
+          break;
+
+        case "-ea":
+        case "-enableassertions":
+          assertions = true;
+          break;
+
+        case "-da":
+        case "-disableassertions":
+          assertions = false;
+          break;
+
+        default:
+          if (!token.startsWith("-")) {
+            mainClassName = token;
+          } else if (token.startsWith("-X") || token.startsWith("-D") || token.equals("-server")) {
+            Client.printWarning("Ignoring java option of in-process client: " + token);
+          } else {
+            throw new IOException("Unsupported java option for in-process client: " + token);
+          }
+          break;
+      }
+    }
+    if (mainClassName == null) {
+      throw new IOException("Expected a main class or -jar in the java command.");
+    }
+    String[] args = tokens.subList(i, tokens.size()).toArray(new String[0]);
+
+    this.classLoader =
+        new URLClassLoader(getClassPathURLs(classPath), ClassLoader.getPlatformClassLoader());
+    this.classLoader.setDefaultAssertionStatus(assertions);
+    Method mainMethod;
+    try {
+      mainMethod = this.classLoader.loadClass(mainClassName).getMethod("main", String[].class);
+    } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+      this.classLoader.close();
+      throw new IOException("Could not load the main method of " + mainClassName + ": " + e);
+    }
+    if (!Modifier.isStatic(mainMethod.getModifiers())) {
+      this.classLoader.close();
+      throw new IOException("The main method of " + mainClassName + " is not static.");
+    }
+
+    this.threadGroup = new ClientThreadGroup();
+    clients.put(this.threadGroup, this);
+    Thread mainThread =
+        new Thread(this.threadGroup, () -> this.runMain(mainMethod, args), "ClientMainThread");
+    mainThread.setContextClassLoader(this.classLoader);
+    mainThread.start();
+  }
+
+  /**
+   * The URLs of a class path, where an entry ending in "*" is all the jar files
+   * in a directory, as for the java command.
+   */
+  private static URL[] getClassPathURLs(String classPath) throws IOException {
+    var urls = new ArrayList<URL>();
+    for (String entry : classPath.split(File.pathSeparator)) {
+      if (entry.isEmpty()) {
+        entry = ".";
+      }
+      if (entry.equals("*") || entry.endsWith("/*") || entry.endsWith(File.separator + "*")) {
+        String directory = entry.length() == 1 ? "." : entry.substring(0, entry.length() - 1);
+        try (var jars = Files.newDirectoryStream(Path.of(directory), "*.{jar,JAR}")) {
+          for (Path jar : jars) {
+            urls.add(jar.toUri().toURL());
+          }
+        }
+      } else {
+        urls.add(Path.of(entry).toUri().toURL());
+      }
+    }
+    return urls.toArray(new URL[0]);
+  }
+
+  /**
+   * Runs the main method of the client in the ClientMainThread, and exits the
+   * client when its non-daemon threads have exited.
+   */
+  private void runMain(Method mainMethod, String[] args) {
+    int status = 0;
+    try {
+      mainMethod.invoke(null, (Object) args);
+    } catch (InvocationTargetException e) {
+      this.threadGroup.uncaughtException(Thread.currentThread(), e.getCause());
+      status = 1;
+    } catch (IllegalAccessException e) {
+      this.threadGroup.uncaughtException(Thread.currentThread(), e);
+      status = 1;
+    }
+
+    Thread currentThread = Thread.currentThread();
+    while (true) {
+      Thread nonDaemonThread = null;
+      for (Thread thread : this.getThreads()) {
+        if (thread != currentThread && !thread.isDaemon()) {
+          nonDaemonThread = thread;
+          break;
+        }
+      }
+      if (nonDaemonThread == null) {
+        break;
+      }
+      try {
+        nonDaemonThread.join();
+      } catch (InterruptedException e) {
+        // The client is being destroyed.
+        break;
+      }
+    }
+
+    this.exit(status);
+  }
+
+  /**
+   * Exits the client with the given status, unless it already exited: flushes and
+   * closes its pipes, and interrupts its remaining threads. The CPU times of the
+   * threads are recorded first, since the exiting thread is about to exit.
+   */
+  private void exit(int status) {
+    synchronized (this) {
+      if (this.exited) {
+        return;
+      }
+      this.getCpuTime();
+      this.exited = true;
+      this.exitValue = status;
+      this.notifyAll();
+    }
+
+    this.clientPrintStream.flush();
+    try {
+      this.clientOut.getOutputStream().close();
+      this.clientIn.getInputStream().close();
+    } catch (IOException ignored) {
+    }
+
+    Thread currentThread = Thread.currentThread();
+    for (Thread thread : this.getThreads()) {
+      if (thread != currentThread) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  /**
+   * The live threads of the client.
+   */
+  private Thread[] getThreads() {
+    Thread[] threads = new Thread[this.threadGroup.activeCount() + 8];
+    int numThreads;
+    while ((numThreads = this.threadGroup.enumerate(threads, true)) == threads.length) {
+      threads = new Thread[threads.length * 2];
+    }
+    return Arrays.copyOf(threads, numThreads);
+  }
+
+  List<String> getThreadNames() {
+    var threadNames = new ArrayList<String>();
+    for (Thread thread : this.getThreads()) {
+      threadNames.add(thread.getName());
+    }
+    return threadNames;
+  }
+
+  int getNumThreads() {
+    return this.getThreads().length;
+  }
+
+  /**
+   * The CPU time in nanoseconds used by the threads of the client so far. The CPU
+   * time of a thread is only counted up to the last call before it exited.
+   */
+  synchronized long getCpuTime() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    for (Thread thread : this.getThreads()) {
+      long cpuTimeNS = threadMXBean.getThreadCpuTime(thread.getId());
+      if (cpuTimeNS >= 0) {
+        this.threadCpuTimes.put(thread.getId(), cpuTimeNS);
+      }
+    }
+    long cpuTimeNS = 0;
+    for (long threadCpuTimeNS : this.threadCpuTimes.values()) {
+      cpuTimeNS += threadCpuTimeNS;
+    }
+    return cpuTimeNS;
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return this.clientIn.getOutputStream();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return this.clientOut.getInputStream();
+  }
+
+  /**
+   * System.err is shared with the server, as for a client process which inherits
+   * it.
+   */
+  @Override
+  public InputStream getErrorStream() {
+    return InputStream.nullInputStream();
+  }
+
+  @Override
+  public int waitFor() throws InterruptedException {
+    synchronized (this) {
+      while (!this.exited) {
+        this.wait();
+      }
+    }
+    for (Thread[] threads = this.getThreads(); threads.length > 0; threads = this.getThreads()) {
+      threads[0].join();
+    }
+    return this.exitValue();
+  }
+
+  @Override
+  public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadlineNS = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (this) {
+      while (!this.exited) {
+        long remainingNS = deadlineNS - System.nanoTime();
+        if (remainingNS <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remainingNS);
+      }
+    }
+    for (Thread[] threads = this.getThreads(); threads.length > 0; threads = this.getThreads()) {
+      long remainingNS = deadlineNS - System.nanoTime();
+      if (remainingNS <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedJoin(threads[0], remainingNS);
+    }
+    return !this.isAlive();
+  }
+
+  /**
+   * The client is alive until it has exited and all its threads have exited. Then
+   * it stops routing its threads and closes its class loader.
+   */
+  @Override
+  public boolean isAlive() {
+    synchronized (this) {
+      if (!this.exited) {
+        return true;
+      }
+    }
+    if (this.getThreads().length > 0) {
+      return true;
+    }
+    clients.remove(this.threadGroup, this);
+    try {
+      this.classLoader.close();
+    } catch (IOException ignored) {
+    }
+    return false;
+  }
+
+  @Override
+  public synchronized int exitValue() {
+    if (this.isAlive()) {
+      throw new IllegalThreadStateException("The in-process client has not exited.");
+    }
+    return this.exitValue;
+  }
+
+  @Override
+  public boolean supportsNormalTermination() {
+    return true;
+  }
+
+  /**
+   * Closes the pipes of the client and interrupts its threads.
+   */
+  @Override
+  public void destroy() {
+    this.clientIn.close();
+    this.clientOut.close();
+    this.exit(DESTROY_EXIT_VALUE);
+  }
+
+  /**
+   * Also stops the threads of the client.
+   */
+  @Override
+  @SuppressWarnings({"deprecation", "removal"})
+  public Process destroyForcibly() {
+    this.destroy();
+    for (Thread thread : this.getThreads()) {
+      try {
+        thread.stop();
+      } catch (UnsupportedOperationException e) {
+        break;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * The client whose thread group the current thread is in, or null if the
+   * current thread is not a client thread.
+   */
+  private static InProcessClient getCurrentClient() {
+    if (clients.isEmpty()) {
+      return null;
+    }
+    // ThreadGroup.getParent() would call the security manager.
+    ThreadGroup currentGroup = Thread.currentThread().getThreadGroup();
+    for (InProcessClient client : clients.values()) {
+      if (client.threadGroup.parentOf(currentGroup)) {
+        return client;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Why in-process clients are not supported by this JVM, or null if they are.
+   * The security manager can not be installed from Java 18, unless the JVM is
+   * started with -Djava.security.manager=allow, nor if it is started with
+   * -Djava.security.manager=disallow, and Thread.stop() always throws from Java
+   * 20.
+   */
+  static String getUnsupportedReason() {
+    int version = Runtime.version().feature();
+    if (version >= 20) {
+      return "In-process clients need Thread.stop() to stop unresponsive clients, which is not "
+          + "supported from Java 20. Run the server with Java 11 to 19.";
+    }
+    String securityManager = System.getProperty("java.security.manager");
+    if (version >= 18 ? !"allow".equals(securityManager) : "disallow".equals(securityManager)) {
+      return "In-process clients need a security manager to intercept System.exit(), which the "
+          + "JVM does not allow. Start the server with -Djava.security.manager=allow.";
+    }
+    return null;
+  }
+
+  /**
+   * Installs the security manager, and replaces System.in and System.out with the
+   * routing streams, the first time an in-process client is created.
+   */
+  @SuppressWarnings("removal")
+  private static synchronized void install() throws IOException {
+    if (serverOut != null) {
+      return;
+    }
+    String unsupportedReason = getUnsupportedReason();
+    if (unsupportedReason != null) {
+      throw new IOException(unsupportedReason);
+    }
+    try {
+      System.setSecurityManager(new ClientSecurityManager());
+    } catch (UnsupportedOperationException | SecurityException e) {
+      throw new IOException("Could not install the security manager for in-process clients: " + e);
+    }
+    serverIn = System.in;
+    serverOut = System.out;
+    System.setIn(new RoutedInputStream());
+    System.setOut(new RoutedPrintStream());
+  }
+
+  private class ClientThreadGroup extends ThreadGroup {
+    ClientThreadGroup() {
+      super("InProcessClient");
+    }
+
+    @Override
+    public void uncaughtException(Thread thread, Throwable e) {
+      if (!(e instanceof ExitException)) {
+        super.uncaughtException(thread, e);
+      }
+    }
+  }
+
+  /**
+   * Thrown from System.exit() in a client thread, after the client has exited.
+   */
+  private static class ExitException extends SecurityException {
+    ExitException(int status) {
+      super("The in-process client exited with status " + status + ".");
+    }
+  }
+
+  @SuppressWarnings("removal")
+  private static class ClientSecurityManager extends SecurityManager {
+    @Override
+    public void checkPermission(Permission permission) {
+      if (!(permission instanceof RuntimePermission)) {
+        return;
+      }
+      if (permission.getName().equals("setIO") && getCurrentClient() != null) {
+        throw new SecurityException(
+            "In-process clients can not replace System.in, System.out or System.err.");
+      }
+      if (permission.getName().equals("setSecurityManager") && getCurrentClient() != null) {
+        throw new SecurityException("In-process clients can not replace the security manager.");
+      }
+    }
+
+    @Override
+    public void checkPermission(Permission permission, Object context) {
+      this.checkPermission(permission);
+    }
+
+    @Override
+    public void checkExit(int status) {
+      InProcessClient client = getCurrentClient();
+      if (client != null) {
+        client.exit(status);
+        throw new ExitException(status);
+      }
+    }
+  }
+
+  /**
+   * System.in, which reads the pipe to the client for client threads.
+   */
+  private static class RoutedInputStream extends InputStream {
+    private static InputStream getTarget() {
+      InProcessClient client = getCurrentClient();
+      return client == null ? serverIn : client.clientIn.getInputStream();
+    }
+
+    @Override
+    public int read() throws IOException {
+      return getTarget().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return getTarget().read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      return getTarget().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+      return getTarget().available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      getTarget().close();
+    }
+
+    @Override
+    public void mark(int readlimit) {
+      getTarget().mark(readlimit);
+    }
+
+    @Override
+    public void reset() throws IOException {
+      getTarget().reset();
+    }
+
+    @Override
+    public boolean markSupported() {
+      return getTarget().markSupported();
+    }
+  }
+
+  /**
+   * System.out, which writes to the pipe from the client for client threads.
+   * <p>
+   * Every method is forwarded, since PrintStream would otherwise lock this stream
+   * while writing. A client blocked on a full pipe would then block the server
+   * from printing, while the server should be reading the pipe.
+   */
+  private static class RoutedPrintStream extends PrintStream {
+    RoutedPrintStream() {
+      super(serverOut);
+    }
+
+    private static PrintStream getTarget() {
+      InProcessClient client = getCurrentClient();
+      return client == null ? serverOut : client.clientPrintStream;
+    }
+
+    @Override
+    public void flush() {
+      getTarget().flush();
+    }
+
+    @Override
+    public void close() {
+      getTarget().close();
+    }
+
+    @Override
+    public boolean checkError() {
+      return getTarget().checkError();
+    }
+
+    @Override
+    public void write(int b) {
+      getTarget().write(b);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+      getTarget().write(buf, off, len);
+    }
+
+    @Override
+    public void write(byte[] buf) throws IOException {
+      getTarget().write(buf);
+    }
+
+    @Override
+    public void print(boolean b) {
+      getTarget().print(b);
+    }
+
+    @Override
+    public void print(char c) {
+      getTarget().print(c);
+    }
+
+    @Override
+    public void print(int i) {
+      getTarget().print(i);
+    }
+
+    @Override
+    public void print(long l) {
+      getTarget().print(l);
+    }
+
+    @Override
+    public void print(float f) {
+      getTarget().print(f);
+    }
+
+    @Override
+    public void print(double d) {
+      getTarget().print(d);
+    }
+
+    @Override
+    public void print(char[] s) {
+      getTarget().print(s);
+    }
+
+    @Override
+    public void print(String s) {
+      getTarget().print(s);
+    }
+
+    @Override
+    public void print(Object obj) {
+      getTarget().print(obj);
+    }
+
+    @Override
+    public void println() {
+      getTarget().println();
+    }
+
+    @Override
+    public void println(boolean x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(char x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(int x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(long x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(float x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(double x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(char[] x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(String x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public void println(Object x) {
+      getTarget().println(x);
+    }
+
+    @Override
+    public PrintStream printf(String format, Object... args) {
+      getTarget().printf(format, args);
+      return this;
+    }
+
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args) {
+      getTarget().printf(l, format, args);
+      return this;
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+      getTarget().format(format, args);
+      return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+      getTarget().format(l, format, args);
+      return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq) {
+      getTarget().append(csq);
+      return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+      getTarget().append(csq, start, end);
+      return this;
+    }
+
+    @Override
+    public PrintStream append(char c) {
+      getTarget().append(c);
+      return this;
+    }
+  }
+}
@@ -15,6 +15,8 @@
  */
 package dk.dtu.compute.mavis.client;
 
+import java.util.function.LongSupplier;
+
 /**
  * A one-time Timeout object which the Client Thread uses to wait for the
  * Protocol Thread. The timeout can be manipulated by the Protocol Thread during
@@ -29,19 +31,53 @@ package dk.dtu.compute.mavis.client;
  * The Protocol Thread must never call functions that can block indefinitely
  * when: - The timeout is infinite. - The Protocol Thread holds a lock on the
  * Timeout object.
+ * <p>
+ * A CPU timeout measures the timeout periods in CPU time of the client
+ * processes instead of wall time, which the Client provides through
+ * setClientCpuTime(). Since a blocked client uses no CPU time, a CPU timeout
+ * also expires after CPU_TIMEOUT_WALL_FACTOR times the timeout period in wall
+ * time.
  */
 public class Timeout {
+  static final long CPU_TIME_SAMPLE_INTERVAL_MS = 50;
+  static final long CPU_TIMEOUT_WALL_FACTOR = 10;
+
   private volatile boolean expired = false;
   private volatile boolean stopped = false;
   private long startNS;
   private long timeoutNS;
 
+  private final boolean cpuTimeout;
+  private volatile LongSupplier clientCpuTime = null;
+  private long startCpuNS = 0;
+
   /**
    * Constructs a Timeout object with an infinite timeout period.
    */
   public Timeout() {
+    this(false);
+  }
+
+  /**
+   * Constructs a Timeout object with an infinite timeout period, whose timeout
+   * periods are measured in CPU time of the client if cpuTimeout is true.
+   */
+  public Timeout(boolean cpuTimeout) {
     this.startNS = 0;
     this.timeoutNS = 0;
+    this.cpuTimeout = cpuTimeout;
+  }
+
+  /**
+   * Called by the Client before the protocol starts.
+   */
+  synchronized void setClientCpuTime(LongSupplier clientCpuTime) {
+    this.clientCpuTime = clientCpuTime;
+  }
+
+  private long getClientCpuTime() {
+    LongSupplier clientCpuTime = this.clientCpuTime;
+    return clientCpuTime == null ? -1 : clientCpuTime.getAsLong();
   }
 
   /**
@@ -58,6 +94,9 @@ public class Timeout {
 
     this.startNS = startNS;
     this.timeoutNS = timeoutNS;
+    if (this.cpuTimeout) {
+      this.startCpuNS = this.getClientCpuTime();
+    }
     this.notifyAll();
 
     return true;
@@ -180,8 +219,14 @@ public class Timeout {
 
     long remainingNS = (this.timeoutNS == 0 ? 0 : this.getRemainingNS());
     while (!this.stopped && !this.expired && (this.timeoutNS == 0 || remainingNS > 0)) {
+      long waitMS = (remainingNS + 999_999L) / 1_000_000L; // Round up to next millisecond.
+      // The CPU time can not be waited for, so a CPU timeout samples it
+      // periodically.
+      if (this.cpuTimeout && this.timeoutNS != 0 && waitMS > CPU_TIME_SAMPLE_INTERVAL_MS) {
+        waitMS = CPU_TIME_SAMPLE_INTERVAL_MS;
+      }
       try {
-        this.wait((remainingNS + 999_999L) / 1_000_000L); // Round up to next millisecond.
+        this.wait(waitMS);
       } catch (InterruptedException ignored) {
       }
       remainingNS = (this.timeoutNS == 0 ? 0 : this.getRemainingNS());
@@ -195,6 +240,12 @@ public class Timeout {
   }
 
   private synchronized long getRemainingNS() {
-    return this.timeoutNS - (System.nanoTime() - this.startNS);
+    long elapsedNS = System.nanoTime() - this.startNS;
+    if (!this.cpuTimeout || this.clientCpuTime == null) {
+      return this.timeoutNS - elapsedNS;
+    }
+    long elapsedCpuNS = this.getClientCpuTime() - this.startCpuNS;
+    return Math.min(this.timeoutNS - elapsedCpuNS,
+        CPU_TIMEOUT_WALL_FACTOR * this.timeoutNS - elapsedNS);
   }
 }
@@ -15,6 +15,7 @@
  */
 package dk.dtu.compute.mavis.domain;
 
+import dk.dtu.compute.mavis.client.ClientTelemetry;
 import dk.dtu.compute.mavis.client.Timeout;
 import dk.dtu.compute.mavis.domain.gridworld.hospital.CldHospitalDomain;
 import dk.dtu.compute.mavis.domain.gridworld.hospital.HospitalDomain;
@@ -29,6 +30,7 @@ import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 public interface Domain {
   /**
@@ -60,17 +62,26 @@ public interface Domain {
     return domain;
   }
 
-  static Domain loadReplay(Path replayFile, Path constraintsFile)
+  /**
+   * Loads a Domain from the given log file or binary replay, as loadLevel() does
+   * for level files. The states of a binary replay are read from it on demand.
+   * <p>
+   * If actionLoader is not null, only the level and header of the log file are
+   * loaded before returning, and the actions are loaded by actionLoader (e.g. on
+   * a background thread) while getNumStates() grows. Errors in the actions are
+   * then printed instead of thrown.
+   */
+  static Domain loadReplay(Path replayFile, Path constraintsFile, Executor actionLoader)
       throws IOException, ParseException {
     String domainType = Domain.getDomainType(replayFile);
     Domain domain;
     // noinspection SwitchStatementWithTooFewBranches
     switch (domainType) {
       case "hospital":
-        domain = new HospitalDomain(replayFile, true);
+        domain = new HospitalDomain(replayFile, true, actionLoader);
         break;
       case "hospital-cld":
-        domain = new CldHospitalDomain(replayFile, constraintsFile, true);
+        domain = new CldHospitalDomain(replayFile, constraintsFile, true, actionLoader);
         break;
       default:
         throw new ParseException(String.format("Unsupported domain type: %s.", domainType));
@@ -125,10 +136,13 @@ public interface Domain {
   }
 
   /**
+   * The telemetry samples the resource usage of the client processes during the
+   * protocol, e.g. to log it.
+   * <p>
    * IMPORTANT: The streams must NOT be closed by the Domain.
    */
-  void runProtocol(Timeout timeout, long timeoutNS, BufferedInputStream clientIn,
-      BufferedOutputStream clientOut, OutputStream logOut);
+  void runProtocol(Timeout timeout, long timeoutNS, ClientTelemetry telemetry,
+      BufferedInputStream clientIn, BufferedOutputStream clientOut, OutputStream logOut);
 
   /**
    * Called after domain instantiation if the domain will be used for GUI output.
@@ -149,6 +163,22 @@ public interface Domain {
    */
   void allowDiscardingPastStates();
 
+  /**
+   * Called before runProtocol(...) if the client run will be written as a binary
+   * replay by writeReplay(...). The recording must not depend on the domain
+   * keeping past states.
+   */
+  void recordReplay();
+
+  /**
+   * Writes the recorded client run as a binary replay, which can be loaded by
+   * loadReplay(). Called after the client has shut down, and only if
+   * recordReplay() was called.
+   * <p>
+   * IMPORTANT: The stream must NOT be closed by the Domain.
+   */
+  void writeReplay(OutputStream replayOut) throws IOException;
+
   /**
    * Returns the name of the specific level that this domain has loaded.
    * <p>
@@ -176,6 +206,37 @@ public interface Domain {
    */
   String[] getStatus();
 
+  /**
+   * Returns true if the latest state solves the level. For a replay which is
+   * still loading, this is the latest state loaded so far.
+   */
+  boolean isSolved();
+
+  /**
+   * Returns the number of actions the client used, or the number of actions in
+   * the log. Called after the client has shut down or the log has loaded.
+   */
+  long getNumActions();
+
+  /**
+   * Returns the CPU time in nanoseconds the client process and its subprocesses
+   * used, from when the client sent its name to the end of the run, or -1 if it
+   * was not measured.
+   */
+  long getClientCpuTime();
+
+  /**
+   * Returns the peak resident memory in bytes of the client process and its
+   * subprocesses, or -1 if it was not sampled.
+   */
+  long getClientPeakMemory();
+
+  /**
+   * Returns the peak CPU usage of the client process and its subprocesses between
+   * two samples, where 1.0 is one core fully used, or -1 if it was not sampled.
+   */
+  double getClientPeakCpuUsage();
+
   /**
    * Return the number of states available. This function will be polled by the
    * GUI at the frequency of the GUI refresh rate.
@@ -20,7 +20,26 @@ public interface Validator<Action, State> {
   /**
    * Determines which actions are applicable and non-conflicting. Returns an array
    * with true for each action which was applicable and non-conflicting, and false
-   * otherwise.
+   * otherwise. The state must be the latest state of the level.
    */
-  boolean[] isApplicable(Action[] jointAction, State state);
+  default boolean[] isApplicable(Action[] jointAction, State state) {
+    boolean[] applicable = new boolean[jointAction.length];
+    this.isApplicable(jointAction, state, applicable);
+    return applicable;
+  }
+
+  /**
+   * Determines which actions are applicable and non-conflicting. Sets
+   * applicable[i] to true if the action of agent i was applicable and
+   * non-conflicting, and false otherwise. The applicable array is owned by the
+   * caller and can be reused between calls, so implementations should not
+   * allocate per call.
+   * <p>
+   * The state must be the latest state of the level, i.e. the state the joint
+   * action is applied to next. Implementations may look up cell occupancy in
+   * state kept by the level for its latest state (e.g. LevelInfo.cellObjects in
+   * the hospital domain) instead of in the given state, so the result for an
+   * earlier state is undefined.
+   */
+  void isApplicable(Action[] jointAction, State state, boolean[] applicable);
 }
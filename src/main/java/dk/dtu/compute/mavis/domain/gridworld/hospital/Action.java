@@ -15,6 +15,8 @@
  */
 package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
+import java.nio.charset.StandardCharsets;
+
 class Action {
   enum Type {
     NoOp, Move, Push, Pull
@@ -26,49 +28,128 @@ class Action {
   final short boxDeltaRow;
   final short boxDeltaCol;
   final String name;
+  final byte[] nameBytes;
+  final byte opcode;
 
   private Action(Type type, int moveDeltaRow, int moveDeltaCol, int boxDeltaRow, int boxDeltaCol,
-      String name) {
+      String name, int opcode) {
     this.type = type;
     this.moveDeltaRow = (short) moveDeltaRow;
     this.moveDeltaCol = (short) moveDeltaCol;
     this.boxDeltaRow = (short) boxDeltaRow;
     this.boxDeltaCol = (short) boxDeltaCol;
     this.name = name;
+    this.nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+    this.opcode = (byte) opcode;
+  }
+
+  static final Action NoOp = new Action(Type.NoOp, 0, 0, 0, 0, "NoOp", 0);
+
+  static final Action MoveN = new Action(Type.Move, -1, 0, 0, 0, "Move(N)", 1);
+  static final Action MoveS = new Action(Type.Move, 1, 0, 0, 0, "Move(S)", 2);
+  static final Action MoveE = new Action(Type.Move, 0, 1, 0, 0, "Move(E)", 3);
+  static final Action MoveW = new Action(Type.Move, 0, -1, 0, 0, "Move(W)", 4);
+
+  static final Action PushNN = new Action(Type.Push, -1, 0, -1, 0, "Push(N,N)", 5);
+  static final Action PushNE = new Action(Type.Push, 0, 1, -1, 0, "Push(N,E)", 6);
+  static final Action PushNW = new Action(Type.Push, 0, -1, -1, 0, "Push(N,W)", 7);
+  static final Action PushSE = new Action(Type.Push, 0, 1, 1, 0, "Push(S,E)", 9);
+  static final Action PushSW = new Action(Type.Push, 0, -1, 1, 0, "Push(S,W)", 10);
+  static final Action PushSS = new Action(Type.Push, 1, 0, 1, 0, "Push(S,S)", 8);
+  static final Action PushEN = new Action(Type.Push, -1, 0, 0, 1, "Push(E,N)", 11);
+  static final Action PushES = new Action(Type.Push, 1, 0, 0, 1, "Push(E,S)", 12);
+  static final Action PushEE = new Action(Type.Push, 0, 1, 0, 1, "Push(E,E)", 13);
+  static final Action PushWN = new Action(Type.Push, -1, 0, 0, -1, "Push(W,N)", 14);
+  static final Action PushWS = new Action(Type.Push, 1, 0, 0, -1, "Push(W,S)", 15);
+  static final Action PushWW = new Action(Type.Push, 0, -1, 0, -1, "Push(W,W)", 16);
+
+  static final Action PullNN = new Action(Type.Pull, -1, 0, -1, 0, "Pull(N,N)", 17);
+  static final Action PullNE = new Action(Type.Pull, -1, 0, 0, 1, "Pull(N,E)", 18);
+  static final Action PullNW = new Action(Type.Pull, -1, 0, 0, -1, "Pull(N,W)", 19);
+  static final Action PullSS = new Action(Type.Pull, 1, 0, 1, 0, "Pull(S,S)", 20);
+  static final Action PullSE = new Action(Type.Pull, 1, 0, 0, 1, "Pull(S,E)", 21);
+  static final Action PullSW = new Action(Type.Pull, 1, 0, 0, -1, "Pull(S,W)", 22);
+  static final Action PullEN = new Action(Type.Pull, 0, 1, -1, 0, "Pull(E,N)", 23);
+  static final Action PullES = new Action(Type.Pull, 0, 1, 1, 0, "Pull(E,S)", 24);
+  static final Action PullEE = new Action(Type.Pull, 0, 1, 0, 1, "Pull(E,E)", 25);
+  static final Action PullWN = new Action(Type.Pull, 0, -1, -1, 0, "Pull(W,N)", 26);
+  static final Action PullWS = new Action(Type.Pull, 0, -1, 1, 0, "Pull(W,S)", 27);
+  static final Action PullWW = new Action(Type.Pull, 0, -1, 0, -1, "Pull(W,W)", 28);
+
+  /**
+   * The actions indexed by opcode, which is their position in the protocol
+   * specification. Opcodes are used by the binary client protocol.
+   */
+  private static final Action[] OPCODES = {NoOp, MoveN, MoveS, MoveE, MoveW, PushNN, PushNE, PushNW,
+      PushSS, PushSE, PushSW, PushEN, PushES, PushEE, PushWN, PushWS, PushWW, PullNN, PullNE,
+      PullNW, PullSS, PullSE, PullSW, PullEN, PullES, PullEE, PullWN, PullWS, PullWW};
+
+  /**
+   * Perfect hash table over the action names, so actions can be decoded directly
+   * from the bytes of client messages and log lines. The key combines the name
+   * length and the bytes at index 3, 5 and 7 (which tell the action type and
+   * directions apart). The multiplier was found by search to map the 29 keys to
+   * distinct slots.
+   */
+  private static final int DECODE_MULTIPLIER = 0x07D4BEDD;
+  private static final Action[] DECODE_TABLE = new Action[64];
+
+  static {
+    for (int opcode = 0; opcode < OPCODES.length; ++opcode) {
+      Action action = OPCODES[opcode];
+      if (action.opcode != opcode) {
+        throw new AssertionError("Action opcode mismatch: " + action.name);
+      }
+      int slot = decodeSlot(action.nameBytes, 0, action.nameBytes.length);
+      if (DECODE_TABLE[slot] != null) {
+        throw new AssertionError("Action decode table collision: " + action.name);
+      }
+      DECODE_TABLE[slot] = action;
+    }
+  }
+
+  /**
+   * Returns the action with the given opcode, or null if there is no such action.
+   */
+  static Action fromOpcode(int opcode) {
+    return opcode >= 0 && opcode < OPCODES.length ? OPCODES[opcode] : null;
+  }
+
+  private static int decodeSlot(byte[] buffer, int from, int length) {
+    int key = length << 24 | (buffer[from + 3] & 0xFF) << 16;
+    if (length > 5) {
+      key |= buffer[from + 5] & 0xFF;
+    }
+    if (length > 7) {
+      key |= (buffer[from + 7] & 0xFF) << 8;
+    }
+    return (key * DECODE_MULTIPLIER) >>> 26;
   }
 
-  static final Action NoOp = new Action(Type.NoOp, 0, 0, 0, 0, "NoOp");
-
-  static final Action MoveN = new Action(Type.Move, -1, 0, 0, 0, "Move(N)");
-  static final Action MoveS = new Action(Type.Move, 1, 0, 0, 0, "Move(S)");
-  static final Action MoveE = new Action(Type.Move, 0, 1, 0, 0, "Move(E)");
-  static final Action MoveW = new Action(Type.Move, 0, -1, 0, 0, "Move(W)");
-
-  static final Action PushNN = new Action(Type.Push, -1, 0, -1, 0, "Push(N,N)");
-  static final Action PushNE = new Action(Type.Push, 0, 1, -1, 0, "Push(N,E)");
-  static final Action PushNW = new Action(Type.Push, 0, -1, -1, 0, "Push(N,W)");
-  static final Action PushSE = new Action(Type.Push, 0, 1, 1, 0, "Push(S,E)");
-  static final Action PushSW = new Action(Type.Push, 0, -1, 1, 0, "Push(S,W)");
-  static final Action PushSS = new Action(Type.Push, 1, 0, 1, 0, "Push(S,S)");
-  static final Action PushEN = new Action(Type.Push, -1, 0, 0, 1, "Push(E,N)");
-  static final Action PushES = new Action(Type.Push, 1, 0, 0, 1, "Push(E,S)");
-  static final Action PushEE = new Action(Type.Push, 0, 1, 0, 1, "Push(E,E)");
-  static final Action PushWN = new Action(Type.Push, -1, 0, 0, -1, "Push(W,N)");
-  static final Action PushWS = new Action(Type.Push, 1, 0, 0, -1, "Push(W,S)");
-  static final Action PushWW = new Action(Type.Push, 0, -1, 0, -1, "Push(W,W)");
-
-  static final Action PullNN = new Action(Type.Pull, -1, 0, -1, 0, "Pull(N,N)");
-  static final Action PullNE = new Action(Type.Pull, -1, 0, 0, 1, "Pull(N,E)");
-  static final Action PullNW = new Action(Type.Pull, -1, 0, 0, -1, "Pull(N,W)");
-  static final Action PullSS = new Action(Type.Pull, 1, 0, 1, 0, "Pull(S,S)");
-  static final Action PullSE = new Action(Type.Pull, 1, 0, 0, 1, "Pull(S,E)");
-  static final Action PullSW = new Action(Type.Pull, 1, 0, 0, -1, "Pull(S,W)");
-  static final Action PullEN = new Action(Type.Pull, 0, 1, -1, 0, "Pull(E,N)");
-  static final Action PullES = new Action(Type.Pull, 0, 1, 1, 0, "Pull(E,S)");
-  static final Action PullEE = new Action(Type.Pull, 0, 1, 0, 1, "Pull(E,E)");
-  static final Action PullWN = new Action(Type.Pull, 0, -1, -1, 0, "Pull(W,N)");
-  static final Action PullWS = new Action(Type.Pull, 0, -1, 1, 0, "Pull(W,S)");
-  static final Action PullWW = new Action(Type.Pull, 0, -1, 0, -1, "Pull(W,W)");
+  /**
+   * Decodes the action whose name is stored in buffer[from..to), without
+   * allocating. Returns null if the bytes do not name an action, like parse().
+   */
+  static Action decode(byte[] buffer, int from, int to) {
+    int length = to - from;
+    if (length != 4 && length != 7 && length != 9) {
+      return null;
+    }
+    Action action = DECODE_TABLE[decodeSlot(buffer, from, length)];
+    if (action == null) {
+      return null;
+    }
+    byte[] name = action.nameBytes;
+    if (name.length != length) {
+      return null;
+    }
+    for (int i = 0; i < length; ++i) {
+      if (buffer[from + i] != name[i]) {
+        return null;
+      }
+    }
+    return action;
+  }
 
   static Action parse(String action) {
     switch (action) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import dk.dtu.compute.mavis.client.Client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the lines of the #actions log section on a dedicated thread, so
+ * formatting, compression and disk writes do not delay the protocol thread.
+ * <p>
+ * The protocol thread appends action records (timestamp and opcodes) to a
+ * bounded single-producer single-consumer ring buffer without locking. The
+ * writer thread formats the records and flushes the log whenever it has caught
+ * up (group commit). When the ring buffer is full, the protocol thread waits
+ * for the writer.
+ * <p>
+ * close() drains all appended records and stops the writer thread, after which
+ * the log stream can be written by the caller again.
+ */
+class ActionLogWriter {
+  private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream logStream;
+  private final int numAgents;
+  private final int mask;
+  private final long[] times;
+  private final byte[] opcodes;
+
+  /**
+   * Number of records appended by the producer and written by the consumer. Each
+   * side only writes its own counter.
+   */
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  private volatile boolean producerWaiting = false;
+  private volatile boolean consumerWaiting = false;
+  private volatile boolean closed = false;
+  private volatile boolean failed = false;
+
+  private final Thread producerThread;
+  private final Thread writerThread;
+
+  /**
+   * The log stream is written by the writer thread between start() and close(),
+   * and must not be written by others in the meantime. Capacity must be a power
+   * of two.
+   */
+  ActionLogWriter(OutputStream logStream, int numAgents, int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two.");
+    }
+    this.logStream = logStream;
+    this.numAgents = numAgents;
+    this.mask = capacity - 1;
+    this.times = new long[capacity];
+    this.opcodes = new byte[capacity * numAgents];
+    this.producerThread = Thread.currentThread();
+    this.writerThread = new Thread(this::runWriter, "LogWriterThread");
+    this.writerThread.setDaemon(true);
+  }
+
+  void start() {
+    this.writerThread.start();
+  }
+
+  /**
+   * Appends an action record. Must be called from the thread which created this
+   * writer. Returns false if the writer has failed to write to the log.
+   */
+  boolean append(long time, Action[] jointAction) {
+    long head = this.head.get();
+    while (head - this.tail.get() > this.mask) {
+      if (this.failed) {
+        return false;
+      }
+      this.producerWaiting = true;
+      if (head - this.tail.get() > this.mask && !this.failed) {
+        LockSupport.park(this);
+      }
+      this.producerWaiting = false;
+    }
+
+    int slot = (int) head & this.mask;
+    this.times[slot] = time;
+    int offset = slot * this.numAgents;
+    for (int agent = 0; agent < this.numAgents; ++agent) {
+      this.opcodes[offset + agent] = jointAction[agent].opcode;
+    }
+    this.head.set(head + 1);
+
+    if (this.consumerWaiting) {
+      LockSupport.unpark(this.writerThread);
+    }
+    return !this.failed;
+  }
+
+  /**
+   * Waits until all appended records are written and flushed, and stops the
+   * writer thread. Returns false if the writer failed to write to the log.
+   */
+  boolean close() {
+    this.closed = true;
+    LockSupport.unpark(this.writerThread);
+    while (true) {
+      try {
+        this.writerThread.join();
+        break;
+      } catch (InterruptedException ignored) {
+      }
+    }
+    return !this.failed;
+  }
+
+  private void runWriter() {
+    Client.printDebug("Thread started.");
+    byte[] digits = new byte[20];
+    long tail = this.tail.get();
+    try {
+      while (true) {
+        long head = this.head.get();
+        if (tail == head) {
+          // Caught up, so commit what has been written so far.
+          this.logStream.flush();
+          if (this.closed && tail == this.head.get()) {
+            break;
+          }
+          this.consumerWaiting = true;
+          if (tail == this.head.get() && !this.closed) {
+            LockSupport.park(this);
+          }
+          this.consumerWaiting = false;
+          continue;
+        }
+
+        for (; tail != head; ++tail) {
+          int slot = (int) tail & this.mask;
+          this.writeRecord(this.times[slot], slot * this.numAgents, digits);
+        }
+        this.tail.set(tail);
+        if (this.producerWaiting) {
+          LockSupport.unpark(this.producerThread);
+        }
+      }
+    } catch (IOException e) {
+      Client.printError("Could not write to log file.");
+      Client.printError(e.getMessage());
+      this.failed = true;
+      LockSupport.unpark(this.producerThread);
+    }
+    Client.printDebug("Thread shut down.");
+  }
+
+  private void writeRecord(long time, int offset, byte[] digits) throws IOException {
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' + time % 10);
+      time /= 10;
+    } while (time != 0);
+    this.logStream.write(digits, start, digits.length - start);
+    this.logStream.write(':');
+    for (int agent = 0; agent < this.numAgents; ++agent) {
+      if (agent > 0) {
+        this.logStream.write('|');
+      }
+      this.logStream.write(Action.fromOpcode(this.opcodes[offset + agent]).nameBytes);
+    }
+    this.logStream.write(NEWLINE);
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import dk.dtu.compute.mavis.domain.ParseException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads the states of a binary replay on demand, without loading the replay.
+ * <p>
+ * A binary replay has the same text header as a log file (the level and the
+ * client name), followed by a "#replay" line and a binary section with the
+ * actions of the client. All numbers in the binary section are big-endian:
+ * 
+ * <pre>
+ * int    version (VERSION)
+ * int    number of agents
+ * int    snapshot interval K
+ * int    number of actions N
+ * N      step records: one opcode byte per agent, followed by a bit mask of
+ *        the applicable actions (bit (i % 8) of byte (i / 8) for agent i)
+ * N/K+1  snapshots of state j * K: the long time of the state, the int
+ *        offset of its time delta in the time stream, and the short (row,
+ *        col) of every agent followed by every box
+ *        time stream: the time deltas of states 1 .. N as zigzag varints
+ * </pre>
+ * 
+ * The step records have a fixed size, so any state is reconstructed by applying
+ * at most K steps to the nearest snapshot before it, and its time is found by
+ * decoding at most K time deltas.
+ * <p>
+ * BinaryReplay objects are immutable and can be read from any number of
+ * threads.
+ */
+class BinaryReplay {
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+
+  private final ByteBuffer buffer;
+  private final LevelInfo levelInfo;
+  private final int numAgents;
+  private final int numBoxes;
+  private final int snapshotInterval;
+  private final int numActions;
+  private final int stepSize;
+  private final int snapshotSize;
+  private final int snapshotsOffset;
+  private final int timesOffset;
+
+  /**
+   * Opens the binary section of a replay of the given level. Checks the size of
+   * the section and the opcodes of the actions, but the states are only
+   * reconstructed when they are requested.
+   */
+  BinaryReplay(ByteBuffer buffer, LevelInfo levelInfo) throws ParseException {
+    this.buffer = buffer;
+    this.levelInfo = levelInfo;
+    this.numAgents = levelInfo.numAgents;
+    this.numBoxes = levelInfo.numBoxes;
+    if (buffer.limit() < HEADER_SIZE) {
+      throw new ParseException("Binary replay section is truncated.");
+    }
+    if (buffer.getInt(0) != VERSION) {
+      throw new ParseException("Unsupported binary replay version: " + buffer.getInt(0) + ".");
+    }
+    if (buffer.getInt(4) != this.numAgents) {
+      throw new ParseException("Binary replay does not match the number of agents of the level.");
+    }
+    this.snapshotInterval = buffer.getInt(8);
+    this.numActions = buffer.getInt(12);
+    if (this.snapshotInterval <= 0 || this.numActions < 0) {
+      throw new ParseException("Binary replay header is invalid.");
+    }
+
+    this.stepSize = this.numAgents + (this.numAgents + 7) / 8;
+    this.snapshotSize = 12 + 4 * (this.numAgents + this.numBoxes);
+    long snapshotsOffset = HEADER_SIZE + (long) this.numActions * this.stepSize;
+    long timesOffset =
+        snapshotsOffset + (long) (this.numActions / this.snapshotInterval + 1) * this.snapshotSize;
+    if (timesOffset > buffer.limit()) {
+      throw new ParseException("Binary replay section is truncated.");
+    }
+    this.snapshotsOffset = (int) snapshotsOffset;
+    this.timesOffset = (int) timesOffset;
+
+    for (int step = 0; step < this.numActions; ++step) {
+      int offset = HEADER_SIZE + step * this.stepSize;
+      for (int agent = 0; agent < this.numAgents; ++agent) {
+        if (Action.fromOpcode(buffer.get(offset + agent)) == null) {
+          throw new ParseException("Binary replay has an invalid action in step " + step + ".");
+        }
+      }
+    }
+    if (!this.matchesInitialState(this.readSnapshot(0))) {
+      throw new ParseException("Binary replay does not start in the initial state of the level.");
+    }
+  }
+
+  int getNumStates() {
+    return this.numActions + 1;
+  }
+
+  /**
+   * Gets the time in nanoseconds for when the given state was generated.
+   */
+  long getStateTime(int state) {
+    int snapshot = state / this.snapshotInterval;
+    int offset = this.snapshotsOffset + snapshot * this.snapshotSize;
+    long time = this.buffer.getLong(offset);
+    int position = this.timesOffset + this.buffer.getInt(offset + 8);
+    for (int s = snapshot * this.snapshotInterval; s < state; ++s) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = this.buffer.get(position++);
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      time += (value >>> 1) ^ -(value & 1);
+    }
+    return time;
+  }
+
+  /**
+   * Reconstructs the given state. If previous is not null, it must be the state
+   * before the given state, and the state is reconstructed from it instead of
+   * from a snapshot.
+   */
+  State getState(int state, State previous) {
+    int fromState;
+    State reconstructed;
+    if (previous != null && state % this.snapshotInterval != 0) {
+      reconstructed = new State(previous);
+      fromState = state - 1;
+    } else {
+      fromState = state - state % this.snapshotInterval;
+      reconstructed = this.readSnapshot(fromState / this.snapshotInterval);
+    }
+
+    // Box ids by cell, only built if a box is moved.
+    int[] cellBoxes = null;
+    for (int step = fromState; step < state; ++step) {
+      int offset = HEADER_SIZE + step * this.stepSize;
+      for (int agent = 0; agent < this.numAgents; ++agent) {
+        if ((this.buffer.get(offset + this.numAgents + (agent >>> 3)) & 1 << (agent & 7)) == 0) {
+          continue;
+        }
+        Action action = Action.fromOpcode(this.buffer.get(offset + agent));
+        short agentRow = reconstructed.agentRows[agent];
+        short agentCol = reconstructed.agentCols[agent];
+        switch (action.type) {
+          case NoOp:
+            break;
+
+          case Move:
+            reconstructed.agentRows[agent] = (short) (agentRow + action.moveDeltaRow);
+            reconstructed.agentCols[agent] = (short) (agentCol + action.moveDeltaCol);
+            break;
+
+          case Push:
+            if (cellBoxes == null) {
+              cellBoxes = this.getCellBoxes(reconstructed);
+            }
+            reconstructed.agentRows[agent] = (short) (agentRow + action.boxDeltaRow);
+            reconstructed.agentCols[agent] = (short) (agentCol + action.boxDeltaCol);
+            this.moveBox(reconstructed, cellBoxes, reconstructed.agentRows[agent],
+                reconstructed.agentCols[agent], action.moveDeltaRow, action.moveDeltaCol);
+            break;
+
+          case Pull:
+            if (cellBoxes == null) {
+              cellBoxes = this.getCellBoxes(reconstructed);
+            }
+            reconstructed.agentRows[agent] = (short) (agentRow + action.moveDeltaRow);
+            reconstructed.agentCols[agent] = (short) (agentCol + action.moveDeltaCol);
+            this.moveBox(reconstructed, cellBoxes, (short) (agentRow - action.boxDeltaRow),
+                (short) (agentCol - action.boxDeltaCol), action.boxDeltaRow, action.boxDeltaCol);
+            break;
+        }
+      }
+    }
+    reconstructed.time = state;
+    return reconstructed;
+  }
+
+  private State readSnapshot(int snapshot) {
+    int offset = this.snapshotsOffset + snapshot * this.snapshotSize + 12;
+    State state = new State(new short[this.numBoxes], new short[this.numBoxes],
+        new short[this.numAgents], new short[this.numAgents]);
+    for (int agent = 0; agent < this.numAgents; ++agent, offset += 4) {
+      state.agentRows[agent] = this.buffer.getShort(offset);
+      state.agentCols[agent] = this.buffer.getShort(offset + 2);
+    }
+    for (int box = 0; box < this.numBoxes; ++box, offset += 4) {
+      state.boxRows[box] = this.buffer.getShort(offset);
+      state.boxCols[box] = this.buffer.getShort(offset + 2);
+    }
+    return state;
+  }
+
+  private boolean matchesInitialState(State state) {
+    State initialState = this.levelInfo.initialState;
+    return Arrays.equals(state.agentRows, initialState.agentRows)
+        && Arrays.equals(state.agentCols, initialState.agentCols)
+        && Arrays.equals(state.boxRows, initialState.boxRows)
+        && Arrays.equals(state.boxCols, initialState.boxCols);
+  }
+
+  /**
+   * Returns the box id + 1 at every cell of the given state, or 0 where there is
+   * no box.
+   */
+  private int[] getCellBoxes(State state) {
+    int[] cellBoxes = new int[this.levelInfo.numRows * this.levelInfo.numCols];
+    for (int box = 0; box < this.numBoxes; ++box) {
+      cellBoxes[state.boxRows[box] * this.levelInfo.numCols + state.boxCols[box]] = box + 1;
+    }
+    return cellBoxes;
+  }
+
+  private void moveBox(State state, int[] cellBoxes, short row, short col, short deltaRow,
+      short deltaCol) {
+    int fromCell = row * this.levelInfo.numCols + col;
+    int box = cellBoxes[fromCell] - 1;
+    short newRow = (short) (row + deltaRow);
+    short newCol = (short) (col + deltaCol);
+    cellBoxes[fromCell] = 0;
+    cellBoxes[newRow * this.levelInfo.numCols + newCol] = box + 1;
+    state.boxRows[box] = newRow;
+    state.boxCols[box] = newCol;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records the steps of a client run in memory, and writes them as the binary
+ * section of a binary replay (see BinaryReplay).
+ * <p>
+ * Only the protocol thread may record steps, and the section may only be
+ * written after the protocol has finished. Recording does not depend on the
+ * history of the state sequence, so it works when past states are discarded.
+ */
+class BinaryReplayWriter {
+  /**
+   * Arrays are not grown past this size, and the binary section must fit in a
+   * single memory mapping when it is read.
+   */
+  private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+  private final int numAgents;
+  private final int numBoxes;
+  private final int snapshotInterval;
+  private final int stepSize;
+  private final int snapshotSize;
+
+  private byte[] steps;
+  private int numActions = 0;
+  private byte[] snapshots;
+  private int snapshotsLength = 0;
+  private byte[] times = new byte[1024];
+  private int timesLength = 0;
+  private long latestTime = 0;
+  private boolean overflow = false;
+
+  BinaryReplayWriter(LevelInfo levelInfo, int snapshotInterval) {
+    this.numAgents = levelInfo.numAgents;
+    this.numBoxes = levelInfo.numBoxes;
+    this.snapshotInterval = snapshotInterval;
+    this.stepSize = this.numAgents + (this.numAgents + 7) / 8;
+    this.snapshotSize = 12 + 4 * (this.numAgents + this.numBoxes);
+    this.steps = new byte[this.stepSize * 1024];
+    this.snapshots = new byte[this.snapshotSize * 16];
+    this.recordSnapshot(levelInfo.initialState, 0);
+  }
+
+  /**
+   * Records a step of the client run. The state must be the latest state after
+   * the joint action was applied.
+   */
+  void append(Action[] jointAction, boolean[] applicable, long time, State state) {
+    if (this.overflow) {
+      return;
+    }
+    int offset = this.numActions * this.stepSize;
+    if (this.steps.length - offset < this.stepSize) {
+      this.steps = this.grow(this.steps, offset + this.stepSize);
+      if (this.overflow) {
+        return;
+      }
+    }
+    for (int agent = 0; agent < this.numAgents; ++agent) {
+      this.steps[offset + agent] = jointAction[agent].opcode;
+      if (applicable[agent]) {
+        this.steps[offset + this.numAgents + (agent >>> 3)] |= 1 << (agent & 7);
+      }
+    }
+    ++this.numActions;
+
+    // Times are written as zigzag varints of the difference to the previous
+    // state's time.
+    if (this.times.length - this.timesLength < 10) {
+      this.times = this.grow(this.times, this.timesLength + 10);
+      if (this.overflow) {
+        return;
+      }
+    }
+    long delta = time - this.latestTime;
+    long value = (delta << 1) ^ (delta >> 63);
+    while ((value & ~0x7FL) != 0) {
+      this.times[this.timesLength++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    this.times[this.timesLength++] = (byte) value;
+    this.latestTime = time;
+
+    if (this.numActions % this.snapshotInterval == 0) {
+      this.recordSnapshot(state, time);
+    }
+  }
+
+  /**
+   * Writes the binary section. IMPORTANT: The stream must NOT be closed.
+   */
+  void write(OutputStream out) throws IOException {
+    long size = BinaryReplay.HEADER_SIZE + (long) this.numActions * this.stepSize
+        + this.snapshotsLength + this.timesLength;
+    if (this.overflow || size > MAX_SIZE) {
+      throw new IOException("The client run is too long for a binary replay.");
+    }
+    ByteBuffer header = ByteBuffer.allocate(BinaryReplay.HEADER_SIZE);
+    header.putInt(BinaryReplay.VERSION);
+    header.putInt(this.numAgents);
+    header.putInt(this.snapshotInterval);
+    header.putInt(this.numActions);
+    out.write(header.array());
+    out.write(this.steps, 0, this.numActions * this.stepSize);
+    out.write(this.snapshots, 0, this.snapshotsLength);
+    out.write(this.times, 0, this.timesLength);
+  }
+
+  private void recordSnapshot(State state, long time) {
+    if (this.snapshots.length - this.snapshotsLength < this.snapshotSize) {
+      this.snapshots = this.grow(this.snapshots, this.snapshotsLength + this.snapshotSize);
+      if (this.overflow) {
+        return;
+      }
+    }
+    ByteBuffer snapshot = ByteBuffer.wrap(this.snapshots, this.snapshotsLength, this.snapshotSize);
+    snapshot.putLong(time);
+    snapshot.putInt(this.timesLength);
+    for (int agent = 0; agent < this.numAgents; ++agent) {
+      snapshot.putShort(state.agentRows[agent]);
+      snapshot.putShort(state.agentCols[agent]);
+    }
+    for (int box = 0; box < this.numBoxes; ++box) {
+      snapshot.putShort(state.boxRows[box]);
+      snapshot.putShort(state.boxCols[box]);
+    }
+    this.snapshotsLength += this.snapshotSize;
+  }
+
+  /**
+   * Grows the array to at least the given size, or sets overflow if it can not be
+   * grown that much.
+   */
+  private byte[] grow(byte[] array, long minSize) {
+    if (minSize > MAX_SIZE) {
+      this.overflow = true;
+      return array;
+    }
+    return Arrays.copyOf(array, (int) Math.max(minSize, Math.min(2L * array.length, MAX_SIZE)));
+  }
+}
@@ -17,6 +17,9 @@ package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import dk.dtu.compute.cld.services.ConstraintBuilder;
 import dk.dtu.compute.cld.services.ConstraintReader;
 import dk.dtu.compute.mavis.domain.ParseException;
 
@@ -30,7 +33,17 @@ import dk.dtu.compute.mavis.domain.ParseException;
 public class CldHospitalDomain extends HospitalDomain {
   public CldHospitalDomain(Path domainFile, Path constraintsFile, boolean isLogFile)
       throws IOException, ParseException {
-    super(domainFile, isLogFile, new CldValidator(new LevelReader(domainFile, isLogFile).getLevel(),
-        new ConstraintReader(constraintsFile).read()));
+    this(domainFile, constraintsFile, isLogFile, null);
+  }
+
+  public CldHospitalDomain(Path domainFile, Path constraintsFile, boolean isLogFile,
+      Executor actionLoader) throws IOException, ParseException {
+    this(domainFile, isLogFile, actionLoader, new ConstraintReader(constraintsFile).read());
+  }
+
+  private CldHospitalDomain(Path domainFile, boolean isLogFile, Executor actionLoader,
+      List<ConstraintBuilder> constraints) throws IOException, ParseException {
+    super(domainFile, isLogFile, actionLoader,
+        levelInfo -> new CldValidator(levelInfo, constraints));
   }
 }
@@ -15,47 +15,73 @@
  */
 package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
-import org.javatuples.Pair;
-import dk.dtu.compute.cld.model.Constraint;
+import dk.dtu.compute.cld.model.CompiledConstraint;
+import dk.dtu.compute.cld.model.EquiJoin;
+import dk.dtu.compute.cld.model.JointActionContext;
+import dk.dtu.compute.cld.model.KeyIndex;
 import dk.dtu.compute.cld.services.ConstraintBuilder;
+import dk.dtu.compute.cld.services.DistanceOracle;
 import dk.dtu.compute.mavis.domain.gridworld.Validator;
 
 class CldValidator implements Validator<Action, State> {
 
   private final LevelInfo levelInfo;
-  private final List<ConstraintBuilder> singleConstraints;
-  private final List<ConstraintBuilder> multiConstraints;
+
+  /**
+   * Constraints are compiled once. Each joint action is mapped into the packed
+   * context once, and constraints are evaluated by binding its actions to the
+   * constraint slots. The context and the conflicting array are reused between
+   * calls, so a validator may only be used by one thread at a time.
+   * <p>
+   * Multi-context constraints which are equi-joins are evaluated for all pairs of
+   * actions at once by hashing, and only the others pair by pair.
+   */
+  private final CompiledConstraint[] singleConstraints;
+  private final CompiledConstraint[] multiConstraints;
+  private final EquiJoin[] equiJoins;
+  private final JointActionContext context;
+  private final KeyIndex index;
+  private final boolean[] conflicting;
 
   public CldValidator(LevelInfo levelInfo, List<ConstraintBuilder> constraints) {
     this.levelInfo = levelInfo;
 
-    var groups = constraints.stream()
-        .collect(Collectors.partitioningBy(ConstraintBuilder::isSingleContextConstraint));
-    this.singleConstraints = groups.get(true);
-    this.multiConstraints = groups.get(false);
+    var groups = constraints.stream().map(ConstraintBuilder::compile)
+        .collect(Collectors.partitioningBy(CompiledConstraint::isSingleContextConstraint));
+    this.singleConstraints = groups.get(true).toArray(new CompiledConstraint[0]);
+    this.multiConstraints = groups.get(false).stream().filter(c -> c.equiJoin == null)
+        .toArray(CompiledConstraint[]::new);
+    this.equiJoins = groups.get(false).stream().filter(c -> c.equiJoin != null).map(c -> c.equiJoin)
+        .toArray(EquiJoin[]::new);
+    var oracle = new DistanceOracle(levelInfo.numRows, levelInfo.numCols, levelInfo.walls);
+    this.context = new JointActionContext(levelInfo.numAgents, oracle);
+    this.index = new KeyIndex(levelInfo.numAgents);
+    this.conflicting = new boolean[levelInfo.numAgents];
   }
 
   @Override
-  public boolean[] isApplicable(Action[] jointAction, State state) {
+  public void isApplicable(Action[] jointAction, State state, boolean[] applicable) {
     var numAgents = this.levelInfo.numAgents;
-    var applicable = new boolean[numAgents];
 
-    var actions = map(jointAction, state);
-    boolean[] conflicting = new boolean[numAgents];
+    var context = this.map(jointAction, state);
+    boolean[] conflicting = this.conflicting;
+    Arrays.fill(conflicting, false);
+    for (var equiJoin : this.equiJoins) {
+      equiJoin.markConflicts(context, numAgents, this.index, conflicting);
+    }
+    var isPairwise = this.multiConstraints.length > 0;
     for (byte a1 = 0; a1 < numAgents; ++a1) {
-      var action = actions[a1];
       // Test for applicability.
-      var isMoving = !action.origin.equals(action.destination);
-      applicable[action.agent] =
-          isMoving ? this.freeAt(action.destination, state) && isApplicable(action)
-              : isApplicable(action);
+      var destination = context.getDestination(a1);
+      var isMoving = context.getOrigin(a1) != destination;
+      applicable[a1] = isMoving ? this.freeAt(destination) && isApplicable(a1) : isApplicable(a1);
 
-      for (byte a2 = 0; a2 < a1; ++a2) {
-        var other = actions[a2];
+      for (byte a2 = 0; isPairwise && a2 < a1; ++a2) {
         // Test for conflicts.
-        var isConflicting = isConflicting(action, other);
+        var isConflicting = isConflicting(a1, a2);
         if (isConflicting) {
           conflicting[a1] = true;
           conflicting[a2] = true;
@@ -66,85 +92,64 @@ class CldValidator implements Validator<Action, State> {
     for (byte agent = 0; agent < numAgents; ++agent) {
       applicable[agent] &= !conflicting[agent];
     }
-
-    return applicable;
   }
 
-  private boolean isApplicable(dk.dtu.compute.cld.model.Action action) {
-    var blocked = singleConstraints.stream().map(b -> b.withRequestingContext(action))
-        .map(ConstraintBuilder::build).anyMatch(Constraint::evaluate);
-    return !blocked;
+  private boolean isApplicable(int action) {
+    this.context.bind(0, action);
+    for (var constraint : this.singleConstraints) {
+      if (constraint.evaluate(this.context)) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  private boolean isConflicting(dk.dtu.compute.cld.model.Action action,
-      dk.dtu.compute.cld.model.Action other) {
-    var conflicting = multiConstraints.stream().map(b -> b.withRequestingContext(action))
-        .map(b -> b.withRestrictingContext(other)).map(ConstraintBuilder::build)
-        .anyMatch(Constraint::evaluate);
-    return conflicting;
+  private boolean isConflicting(int action, int other) {
+    this.context.bind(0, action).bind(1, other);
+    for (var constraint : this.multiConstraints) {
+      if (constraint.evaluate(this.context)) {
+        return true;
+      }
+    }
+    return false;
   }
 
 
   /**
-   * Checks if the given cell is free (no wall, box, or agent occupies it).
-   * Complexity: O(log(numAgents)).
+   * Checks if the given packed cell is free (no wall or agent occupies it) in the
+   * latest state. Complexity: O(1).
    */
-  private boolean freeAt(Pair<Integer, Integer> vertex, State state) {
-    var row = vertex.getValue0().shortValue();
-    var col = vertex.getValue1().shortValue();
-    return !this.wallAt(row, col) && this.agentAt(row, col, state) == -1;
+  private boolean freeAt(int cell) {
+    var row = (short) dk.dtu.compute.cld.model.Action.cellRow(cell);
+    var col = (short) dk.dtu.compute.cld.model.Action.cellCol(cell);
+    return !this.levelInfo.wallAt(row, col) && this.levelInfo.agentAt(row, col) == -1;
   }
 
-  /**
-   * Returns whether there is a wall at the given (row, col). Complexity: O(1).
-   */
-  private boolean wallAt(short row, short col) {
-    return this.levelInfo.wallAt(row, col);
-  }
 
   /**
-   * Search for an agent at the given (row, col) in the latest state. Returns
-   * agent ID (0..9) if found, and -1 otherwise. Complexity: O(numAgents).
+   * Maps the joint action into the packed context, where action i is the action
+   * of agent i.
    */
-  private byte agentAt(short row, short col, State state) {
-    for (byte a = 0; a < this.levelInfo.numAgents; ++a) {
-      if (state.agentRows[a] == row && state.agentCols[a] == col) {
-        return a;
-      }
-    }
-    return -1;
-  }
-
-
-  private static dk.dtu.compute.cld.model.Action[] map(Action[] jointAction, State state) {
-    var jointCldAction = new dk.dtu.compute.cld.model.Action[jointAction.length];
-
+  private JointActionContext map(Action[] jointAction, State state) {
     for (var agent = 0; agent < jointAction.length; agent++) {
       var action = jointAction[agent];
-      var origRow = Integer.valueOf(state.agentRows[agent]);
-      var origCol = Integer.valueOf(state.agentCols[agent]);
-      var origin = new Pair<>(origRow, origCol);
+      var origRow = state.agentRows[agent];
+      var origCol = state.agentCols[agent];
+      var origin = dk.dtu.compute.cld.model.Action.cell(origRow, origCol);
 
       switch (action.type) {
         case NoOp:
-          jointCldAction[agent] = map(origin, origin, state.time, action.name, agent);
+          this.context.setAction(agent, origin, origin, state.time, action.name, agent);
           break;
         case Move:
-          var destRow = Integer.valueOf(origRow + action.moveDeltaRow);
-          var destCol = Integer.valueOf(origCol + action.moveDeltaCol);
-          var dest = new Pair<>(destRow, destCol);
-          jointCldAction[agent] = map(origin, dest, state.time, action.name, agent);
+          var dest = dk.dtu.compute.cld.model.Action.cell(origRow + action.moveDeltaRow,
+              origCol + action.moveDeltaCol);
+          this.context.setAction(agent, origin, dest, state.time, action.name, agent);
           break;
         default:
           throw new IllegalArgumentException("Only Move and NoOp actions are supported.");
       }
-
     }
-    return jointCldAction;
-  }
-
-  private static dk.dtu.compute.cld.model.Action map(Pair<Integer, Integer> origin,
-      Pair<Integer, Integer> dest, Integer time, String name, Integer agent) {
-    return new dk.dtu.compute.cld.model.Action(origin, dest, time, name, agent);
+    return this.context;
   }
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads client messages line by line directly from the raw bytes of the
+ * client's output stream, and decodes joint actions in place without creating
+ * strings.
+ * <p>
+ * Lines are terminated like BufferedReader.readLine() terminates them ('\n',
+ * '\r' or "\r\n"), and joint actions are split on '|' with the same rules as
+ * String.split("\\|"), so malformed messages are reported exactly as before.
+ * <p>
+ * In the binary protocol a joint action is one opcode byte per agent (see
+ * Action.fromOpcode()), and a comment is a line starting with '#' and
+ * terminated by '\n'. Opcodes are all below '#'.
+ * <p>
+ * Strings are only created for client names, comments and invalid messages.
+ */
+class ClientMessageReader {
+  enum MessageType {
+    JointAction, Comment, InvalidNumberOfAgents, InvalidJointAction, InvalidEncoding, EndOfStream
+  }
+
+  private final InputStream in;
+  private final int numAgents;
+
+  private byte[] buffer = new byte[8192];
+  private int position = 0;
+  private int limit = 0;
+  private boolean skipLF = false;
+  private boolean endOfStream = false;
+
+  private int lineStart = 0;
+  private int lineEnd = 0;
+  private boolean binaryFrame = false;
+
+  ClientMessageReader(InputStream in, int numAgents) {
+    this.in = in;
+    this.numAgents = numAgents;
+  }
+
+  /**
+   * Reads the next line as an ASCII string, or returns null at the end of the
+   * stream. Used for the client name.
+   */
+  String readLine() throws IOException {
+    this.binaryFrame = false;
+    if (!this.nextLine(false)) {
+      return null;
+    }
+    for (int i = this.lineStart; i < this.lineEnd; ++i) {
+      if (this.buffer[i] < 0) {
+        throw new CharacterCodingException();
+      }
+    }
+    return this.lineString(this.lineStart);
+  }
+
+  /**
+   * Reads the next message. If it is a valid joint action, the actions are
+   * decoded into jointAction, which must have length equal to the number of
+   * agents.
+   */
+  MessageType readMessage(Action[] jointAction) throws IOException {
+    this.binaryFrame = false;
+    if (!this.nextLine(false)) {
+      return MessageType.EndOfStream;
+    }
+    return decodeJointAction(this.buffer, this.lineStart, this.lineEnd, jointAction);
+  }
+
+  /**
+   * Decodes a text protocol message in buffer[from .. to) into jointAction, whose
+   * length is the number of agents. Also used for the joint actions of log files.
+   */
+  static MessageType decodeJointAction(byte[] buffer, int from, int to, Action[] jointAction) {
+    // A single pass validates the encoding and finds the separators.
+    // String.split drops trailing empty strings, so trailing separators are not
+    // counted.
+    int numSeparators = 0;
+    int numTrailingSeparators = 0;
+    for (int i = from; i < to; ++i) {
+      byte b = buffer[i];
+      if (b < 0) {
+        return MessageType.InvalidEncoding;
+      }
+      if (b == '|') {
+        ++numSeparators;
+        ++numTrailingSeparators;
+      } else {
+        numTrailingSeparators = 0;
+      }
+    }
+
+    if (to > from && buffer[from] == '#') {
+      return MessageType.Comment;
+    }
+
+    int numActions;
+    if (numSeparators == 0) {
+      numActions = 1;
+    } else if (to - from == numTrailingSeparators) {
+      numActions = 0;
+    } else {
+      numActions = numSeparators - numTrailingSeparators + 1;
+    }
+    if (numActions != jointAction.length) {
+      return MessageType.InvalidNumberOfAgents;
+    }
+
+    int actionStart = from;
+    for (int agent = 0; agent < numActions; ++agent) {
+      int actionEnd = actionStart;
+      while (actionEnd < to && buffer[actionEnd] != '|') {
+        ++actionEnd;
+      }
+      jointAction[agent] = Action.decode(buffer, actionStart, actionEnd);
+      if (jointAction[agent] == null) {
+        return MessageType.InvalidJointAction;
+      }
+      actionStart = actionEnd + 1;
+    }
+    return MessageType.JointAction;
+  }
+
+  /**
+   * Reads the next message of the binary protocol. If it is a valid joint action,
+   * the actions are decoded into jointAction. A joint action cut short by the end
+   * of the stream is invalid.
+   */
+  MessageType readBinaryMessage(Action[] jointAction) throws IOException {
+    this.binaryFrame = false;
+    // The client name line may have been terminated by "\r\n".
+    if (this.skipLF) {
+      if (!this.ensureAvailable(1)) {
+        return MessageType.EndOfStream;
+      }
+      if (this.buffer[this.position] == '\n') {
+        ++this.position;
+      }
+      this.skipLF = false;
+    }
+
+    if (!this.ensureAvailable(1)) {
+      return MessageType.EndOfStream;
+    }
+    if (this.buffer[this.position] == '#') {
+      this.nextLine(true);
+      for (int i = this.lineStart; i < this.lineEnd; ++i) {
+        if (this.buffer[i] < 0) {
+          return MessageType.InvalidEncoding;
+        }
+      }
+      return MessageType.Comment;
+    }
+
+    this.binaryFrame = true;
+    boolean complete = this.ensureAvailable(this.numAgents);
+    this.lineStart = this.position;
+    this.lineEnd = complete ? this.position + this.numAgents : this.limit;
+    this.position = this.lineEnd;
+    if (!complete) {
+      return MessageType.InvalidJointAction;
+    }
+    for (int agent = 0; agent < this.numAgents; ++agent) {
+      jointAction[agent] = Action.fromOpcode(this.buffer[this.lineStart + agent]);
+      if (jointAction[agent] == null) {
+        return MessageType.InvalidJointAction;
+      }
+    }
+    return MessageType.JointAction;
+  }
+
+  /**
+   * Returns whether a complete message can be read without blocking, because it
+   * is already buffered or available from the stream. Returns false at the end of
+   * the stream.
+   */
+  boolean hasBufferedMessage(boolean binary) {
+    try {
+      while (!this.containsMessage(binary)) {
+        if (this.endOfStream || this.in.available() <= 0) {
+          return false;
+        }
+        this.fill();
+      }
+      return true;
+    } catch (IOException e) {
+      // The next read reports the error.
+      return false;
+    }
+  }
+
+  private boolean containsMessage(boolean binary) {
+    int scan = this.position;
+    if (this.skipLF && scan < this.limit && this.buffer[scan] == '\n') {
+      ++scan;
+    }
+    if (binary && scan < this.limit && this.buffer[scan] != '#') {
+      return this.limit - scan >= this.numAgents;
+    }
+    for (; scan < this.limit; ++scan) {
+      byte b = this.buffer[scan];
+      if (b == '\n' || (b == '\r' && !binary)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The last message read, as a string. Binary joint actions are shown as their
+   * opcodes separated by '|'.
+   */
+  String getMessage() {
+    if (this.binaryFrame) {
+      StringBuilder message = new StringBuilder();
+      for (int i = this.lineStart; i < this.lineEnd; ++i) {
+        if (i > this.lineStart) {
+          message.append('|');
+        }
+        message.append(this.buffer[i] & 0xFF);
+      }
+      return message.toString();
+    }
+    return this.lineString(this.lineStart);
+  }
+
+  /**
+   * The last message read, as a string without the leading '#' of comments.
+   */
+  String getComment() {
+    return this.lineString(this.lineStart + 1);
+  }
+
+  private String lineString(int from) {
+    return new String(this.buffer, from, this.lineEnd - from, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Advances to the next line, reading from the stream as needed. Returns false
+   * at the end of the stream if there are no more characters. Binary protocol
+   * lines are only terminated by '\n', since '\r' is also an opcode.
+   */
+  private boolean nextLine(boolean binary) throws IOException {
+    int scan = this.position;
+    while (true) {
+      if (this.skipLF && scan < this.limit) {
+        if (this.buffer[scan] == '\n') {
+          ++scan;
+          this.position = scan;
+        }
+        this.skipLF = false;
+      }
+
+      for (; scan < this.limit; ++scan) {
+        byte b = this.buffer[scan];
+        if (b == '\n' || (b == '\r' && !binary)) {
+          this.lineStart = this.position;
+          this.lineEnd = scan;
+          this.position = scan + 1;
+          this.skipLF = b == '\r';
+          return true;
+        }
+      }
+
+      if (this.endOfStream) {
+        if (this.position == this.limit) {
+          return false;
+        }
+        this.lineStart = this.position;
+        this.lineEnd = this.limit;
+        this.position = this.limit;
+        return true;
+      }
+
+      scan -= this.position;
+      this.fill();
+    }
+  }
+
+  /**
+   * Reads from the stream until at least the given number of bytes are unread.
+   * Returns false if the stream ends first.
+   */
+  private boolean ensureAvailable(int numBytes) throws IOException {
+    while (this.limit - this.position < numBytes) {
+      if (this.endOfStream) {
+        return false;
+      }
+      this.fill();
+    }
+    return true;
+  }
+
+  /**
+   * Moves the unread bytes to the front of the buffer (growing it if it is full)
+   * and blocks until more bytes are read or the stream ends.
+   */
+  private void fill() throws IOException {
+    int unread = this.limit - this.position;
+    if (unread == this.buffer.length) {
+      byte[] grown = new byte[this.buffer.length * 2];
+      System.arraycopy(this.buffer, this.position, grown, 0, unread);
+      this.buffer = grown;
+    } else if (this.position > 0) {
+      System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+    }
+    this.position = 0;
+    this.limit = unread;
+
+    int numRead = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+    if (numRead == -1) {
+      this.endOfStream = true;
+    } else {
+      this.limit += numRead;
+    }
+  }
+}
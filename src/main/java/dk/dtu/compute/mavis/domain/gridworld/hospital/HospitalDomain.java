@@ -17,6 +17,7 @@ package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
 import dk.dtu.compute.mavis.Fonts;
 import dk.dtu.compute.mavis.client.Client;
+import dk.dtu.compute.mavis.client.ClientTelemetry;
 import dk.dtu.compute.mavis.client.Timeout;
 import dk.dtu.compute.mavis.domain.Domain;
 import dk.dtu.compute.mavis.domain.ParseException;
@@ -35,21 +36,23 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class HospitalDomain implements Domain {
   private Path levelFile;
@@ -58,6 +61,20 @@ public class HospitalDomain implements Domain {
   private volatile String clientName = null;
 
   private long numActions = 0;
+  private long clientCpuTime = -1;
+  private List<ClientTelemetry.Sample> clientTelemetry = List.of();
+
+  /**
+   * Set if the domain was loaded from a log file, whose state sequence may still
+   * be loading. It keeps all states, so its number of actions is the number of
+   * states less one.
+   */
+  private final boolean isReplay;
+
+  /**
+   * Records the client run for writeReplay(), if recordReplay() was called.
+   */
+  private BinaryReplayWriter replayWriter = null;
 
   /**
    * Rendering constants.
@@ -116,50 +133,68 @@ public class HospitalDomain implements Domain {
   private int numDynamicAgents;
   private final byte[] dynamicAgents = new byte[10];
   private final int[] dynamicAgentsBox = new int[10];
-  // For each state we cache the box goals which are solved in that state. The
-  // state data structures
-  // are not designed
-  // for that to be efficiently computable.
-  private BitSet[] stateSolvedBoxGoals = new BitSet[1024];
+  // For recently rendered states we cache the box goals which are solved in that
+  // state. The state data structures are not designed for that to be
+  // efficiently computable.
+  private static final int SOLVED_BOX_GOALS_CACHE_SIZE = 64;
+  private final Map<Integer, BitSet> stateSolvedBoxGoals =
+      new LinkedHashMap<>(SOLVED_BOX_GOALS_CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BitSet> eldest) {
+          return this.size() > SOLVED_BOX_GOALS_CACHE_SIZE;
+        }
+      };
 
   private Validator<Action, State> validator;
 
   public HospitalDomain(Path domainFile, boolean isLogFile) throws IOException, ParseException {
-    this.levelFile = domainFile;
-    var levelInfo = new LevelReader(domainFile, isLogFile).getLevel();
-    this.stateSequence = new StateSequence(levelInfo);
-    this.validator = new HospitalValidator(levelInfo);
+    this(domainFile, isLogFile, null);
+  }
 
-    if (isLogFile) {
-      this.clientName = this.stateSequence.levelInfo.clientName;
-      this.numActions = this.stateSequence.getNumStates() - 1;
-    }
+  /**
+   * If actionLoader is not null, only the header of a log file is loaded by the
+   * constructor, and the actions are loaded by actionLoader while the state
+   * sequence grows.
+   */
+  public HospitalDomain(Path domainFile, boolean isLogFile, Executor actionLoader)
+      throws IOException, ParseException {
+    this(domainFile, isLogFile, actionLoader, HospitalValidator::new);
   }
 
-  public HospitalDomain(Path domainFile, boolean isLogFile, Validator<Action, State> validator)
+  /**
+   * The validator is created for the level of this domain, since validators look
+   * up cell occupancy in the latest state of the level.
+   */
+  HospitalDomain(Path domainFile, boolean isLogFile, Executor actionLoader,
+      Function<LevelInfo, Validator<Action, State>> validatorFactory)
       throws IOException, ParseException {
     this.levelFile = domainFile;
-    var levelInfo = new LevelReader(domainFile, isLogFile).getLevel();
-    this.stateSequence = new StateSequence(levelInfo);
-    this.validator = validator;
+    var levelReader = new LevelReader(domainFile, isLogFile);
+    var levelInfo =
+        actionLoader == null ? levelReader.getLevel() : levelReader.getLevel(actionLoader);
+    this.validator = validatorFactory.apply(levelInfo);
 
     if (isLogFile) {
-      this.clientName = this.stateSequence.levelInfo.clientName;
-      this.numActions = this.stateSequence.getNumStates() - 1;
+      // The actions of the log are loaded into its state sequence.
+      this.stateSequence = levelInfo.initialSequence;
+      this.clientName = levelInfo.clientName;
+      this.isReplay = true;
+    } else {
+      this.stateSequence = new StateSequence(levelInfo);
+      this.isReplay = false;
     }
   }
 
   @Override
-  public void runProtocol(Timeout timeout, long timeoutNS, BufferedInputStream clientIn,
-      BufferedOutputStream clientOut, OutputStream logOut) {
+  public void runProtocol(Timeout timeout, long timeoutNS, ClientTelemetry telemetry,
+      BufferedInputStream clientIn, BufferedOutputStream clientOut, OutputStream logOut) {
     Client.printDebug("Protocol begun.");
 
-    BufferedReader clientReader =
-        new BufferedReader(new InputStreamReader(clientIn, StandardCharsets.US_ASCII.newDecoder()));
-    BufferedWriter clientWriter = new BufferedWriter(
-        new OutputStreamWriter(clientOut, StandardCharsets.US_ASCII.newEncoder()));
-    BufferedWriter logWriter =
-        new BufferedWriter(new OutputStreamWriter(logOut, StandardCharsets.US_ASCII.newEncoder()));
+    // Client messages are decoded directly from bytes, and responses are
+    // written as bytes, so the protocol loop does not allocate.
+    ClientMessageReader clientReader =
+        new ClientMessageReader(clientIn, this.stateSequence.levelInfo.numAgents);
+    BufferedOutputStream logStream = new BufferedOutputStream(logOut, LOG_BUFFER_SIZE);
 
     // Read client name. 10 seconds timeout.
     timeout.reset(System.nanoTime(), TimeUnit.SECONDS.toNanos(10));
@@ -178,12 +213,14 @@ public class HospitalDomain implements Domain {
       return;
     }
 
-    // Check and reset timeout.
+    // Check and reset timeout. The CPU time and telemetry are measured from the
+    // same point as the action times.
     long startNS = System.nanoTime();
     if (!timeout.reset(startNS, timeoutNS)) {
       Client.printError("Timed out while waiting for client name.");
       return;
     }
+    long startCpuNS = telemetry.getAsLong();
 
     // Store client name.
     if (clientMsg != null) {
@@ -194,27 +231,38 @@ public class HospitalDomain implements Domain {
       return;
     }
 
+    // The client requests the binary protocol by appending the request to its
+    // name. The server acknowledges it before the level, so clients can fall
+    // back to text if the server does not support it.
+    boolean binaryProtocol = this.clientName.endsWith(BINARY_PROTOCOL_REQUEST);
+    if (binaryProtocol) {
+      this.clientName =
+          this.clientName.substring(0, this.clientName.length() - BINARY_PROTOCOL_REQUEST.length());
+      Client.printDebug("Client requested binary protocol.");
+    }
+
     // Send level to client and log.
     Client.printDebug("Opening level file: " + this.levelFile);
     try (InputStream levelStream = Files.newInputStream(this.levelFile)) {
       Client.printDebug("Writing level to client and log.");
       try {
+        if (binaryProtocol) {
+          writeLine(clientOut, BINARY_PROTOCOL_ACKNOWLEDGEMENT);
+        }
         byte[] buffer = new byte[4096];
         int len;
         boolean endNewline = false;
         while ((len = levelStream.readNBytes(buffer, 0, buffer.length)) != 0) {
           clientOut.write(buffer, 0, len);
-          logOut.write(buffer, 0, len);
+          logStream.write(buffer, 0, len);
           endNewline = buffer[len - 1] == '\n';
         }
-        clientOut.flush();
-        logOut.flush();
         if (!endNewline) {
-          clientWriter.newLine();
-          clientWriter.flush();
-          logWriter.newLine();
-          logWriter.flush();
+          clientOut.write(NEWLINE);
+          logStream.write(NEWLINE);
         }
+        clientOut.flush();
+        logStream.flush();
       } catch (IOException e) {
         if (timeout.isExpired()) {
           Client.printError("Timeout expired while sending level to client.");
@@ -235,50 +283,129 @@ public class HospitalDomain implements Domain {
     // must be domain).
     try {
       Client.printDebug("Logging client name.");
-      logWriter.write("#clientname");
-      logWriter.newLine();
-      logWriter.write(this.clientName);
-      logWriter.newLine();
-      logWriter.flush();
+      writeLine(logStream, "#clientname");
+      writeLine(logStream, this.clientName);
+      logStream.flush();
     } catch (IOException e) {
       Client.printError("Could not write client name to log file.");
       Client.printError(e.getMessage());
       return;
     }
 
-    Client.printDebug("Beginning action/comment message exchanges.");
-    long numMessages = 0;
-    Action[] jointAction = new Action[this.stateSequence.levelInfo.numAgents];
+    try {
+      writeLine(logStream, "#actions");
+      logStream.flush();
+    } catch (IOException e) {
+      Client.printError("Could not write to log file.");
+      Client.printError(e.getMessage());
+      return;
+    }
+
+    // The action lines are logged by a separate thread until the log writer is
+    // closed, after which the summary is logged.
+    ActionLogWriter logWriter =
+        new ActionLogWriter(logStream, this.stateSequence.levelInfo.numAgents, LOG_WRITER_CAPACITY);
+    logWriter.start();
+    boolean exchanged = false;
+    try {
+      exchanged = this.exchangeMessages(timeout, startNS, clientReader, binaryProtocol, clientOut,
+          logWriter);
+    } finally {
+      // The log writer reports its own errors.
+      if (!logWriter.close()) {
+        exchanged = false;
+      }
+    }
+    if (!exchanged) {
+      return;
+    }
+    this.clientCpuTime = telemetry.getAsLong() - startCpuNS;
+    telemetry.recordSample();
+    var samples = new ArrayList<ClientTelemetry.Sample>();
+    for (ClientTelemetry.Sample sample : telemetry.getSamples()) {
+      samples.add(new ClientTelemetry.Sample(sample.timeNS - startNS, sample.cpuTimeNS - startCpuNS,
+          sample.memoryBytes, sample.numThreads));
+    }
+    this.clientTelemetry = samples;
 
+    // Log summary.
     try {
-      logWriter.write("#actions");
-      logWriter.newLine();
-      logWriter.flush();
+      writeLine(logStream, "#end");
+
+      writeLine(logStream, "#solved");
+      writeLine(logStream, this.isGoalState(this.getNumStates() - 1) ? "true" : "false");
+
+      writeLine(logStream, "#numactions");
+      writeLine(logStream, Long.toString(this.numActions));
+
+      writeLine(logStream, "#time");
+      writeLine(logStream, Long.toString(this.getStateTime(this.getNumStates() - 1)));
+
+      writeLine(logStream, "#cputime");
+      writeLine(logStream, Long.toString(this.clientCpuTime));
+
+      // Samples taken while the client started have negative times.
+      if (!this.clientTelemetry.isEmpty()) {
+        writeLine(logStream, "#telemetry");
+        for (ClientTelemetry.Sample sample : this.clientTelemetry) {
+          writeLine(logStream, sample.timeNS + ":" + sample.cpuTimeNS + ":" + sample.memoryBytes
+              + ":" + sample.numThreads);
+        }
+      }
+
+      writeLine(logStream, "#end");
+      logStream.flush();
     } catch (IOException e) {
       Client.printError("Could not write to log file.");
       Client.printError(e.getMessage());
       return;
     }
 
-    protocolLoop: while (true) {
+    Client.printDebug("Protocol finished.");
+  }
+
+  /**
+   * Exchanges action and comment messages with the client until the client closes
+   * its output stream or times out. Returns false if the protocol failed.
+   */
+  private boolean exchangeMessages(Timeout timeout, long startNS, ClientMessageReader clientReader,
+      boolean binaryProtocol, BufferedOutputStream clientOut, ActionLogWriter logWriter) {
+    Client.printDebug("Beginning action/comment message exchanges.");
+    long numMessages = 0;
+    Action[] jointAction = new Action[this.stateSequence.levelInfo.numAgents];
+    boolean[] applicable = new boolean[jointAction.length];
+    byte[] applicableMask = new byte[(jointAction.length + 7) / 8];
+
+    while (true) {
       if (timeout.isExpired()) {
         Client.printDebug("Client timed out in protocol loop.");
         break;
       }
 
+      // Responses are only flushed before a read that may block, so a client
+      // streaming joint actions gets a whole batch of responses with one flush.
+      if (!clientReader.hasBufferedMessage(binaryProtocol)) {
+        try {
+          clientOut.flush();
+        } catch (IOException e) {
+          Client.printError("Could not write response to client.");
+          Client.printError(e.getMessage());
+          return false;
+        }
+      }
+
       // Read client message.
+      ClientMessageReader.MessageType messageType;
       try {
-        clientMsg = clientReader.readLine();
-      } catch (CharacterCodingException e) {
-        Client.printError("Client message not valid ASCII.");
-        return;
+        messageType = binaryProtocol ? clientReader.readBinaryMessage(jointAction)
+            : clientReader.readMessage(jointAction);
       } catch (IOException e) {
         Client.printError("Unexpected exception while reading from client.");
         Client.printError(e.getMessage());
         e.printStackTrace();
-        return;
+        return false;
       }
-      if (clientMsg == null) {
+      if (messageType == ClientMessageReader.MessageType.EndOfStream) {
         if (timeout.isExpired()) {
           Client.printDebug("Client stream closed after timeout.");
         } else {
@@ -286,6 +413,10 @@ public class HospitalDomain implements Domain {
         }
         break;
       }
+      if (messageType == ClientMessageReader.MessageType.InvalidEncoding) {
+        Client.printError("Client message not valid ASCII.");
+        return false;
+      }
 
       if (timeout.isExpired()) {
         Client.printDebug("Client timed out in protocol loop.");
@@ -294,97 +425,90 @@ public class HospitalDomain implements Domain {
 
       // Process message.
       ++numMessages;
-      if (clientMsg.startsWith("#")) {
-        Client.printMessage(clientMsg.substring(1));
-      } else {
-        // Parse action string.
-        String[] actionMsg = clientMsg.split("\\|");
-        if (actionMsg.length != this.stateSequence.levelInfo.numAgents) {
+      switch (messageType) {
+        case Comment:
+          Client.printMessage(clientReader.getComment());
+          continue;
+        case InvalidNumberOfAgents:
           Client.printError("Invalid number of agents in joint action:");
-          Client.printError(clientMsg);
+          Client.printError(clientReader.getMessage());
           continue;
-        }
-        for (int i = 0; i < jointAction.length; ++i) {
-          jointAction[i] = Action.parse(actionMsg[i]);
-          if (jointAction[i] == null) {
-            Client.printError("Invalid joint action:");
-            Client.printError(clientMsg);
-            continue protocolLoop;
-          }
-        }
+        case InvalidJointAction:
+          Client.printError("Invalid joint action:");
+          Client.printError(clientReader.getMessage());
+          continue;
+        default:
+          break;
+      }
 
-        // Execute action.
-        long actionTime = System.nanoTime() - startNS;
-        State currentState = this.stateSequence.getState(this.stateSequence.getNumStates() - 1);
-        boolean[] applicable = this.validator.isApplicable(jointAction, currentState);
-        this.stateSequence.apply(jointAction, applicable, actionTime);
-        ++this.numActions;
+      // Execute action.
+      long actionTime = System.nanoTime() - startNS;
+      State currentState = this.stateSequence.getLatestState();
+      this.validator.isApplicable(jointAction, currentState, applicable);
+      this.stateSequence.apply(jointAction, applicable, actionTime);
+      ++this.numActions;
+      if (this.replayWriter != null) {
+        this.replayWriter.append(jointAction, applicable, actionTime, currentState);
+      }
 
-        // Write response.
-        try {
-          clientWriter.write(applicable[0] ? "true" : "false");
-          for (int i = 1; i < applicable.length; ++i) {
-            clientWriter.write("|");
-            clientWriter.write(applicable[i] ? "true" : "false");
-          }
-          clientWriter.newLine();
-          clientWriter.flush();
-        } catch (IOException e) {
-          // Happens when client closes before reading responses, then server can't write
-          // to the
-          // client's
-          // input stream.
-          Client.printError("Could not write response to client.");
-          Client.printError(e.getMessage());
-          return;
-        }
+      // Write response.
+      try {
+        writeResponse(applicable, binaryProtocol, applicableMask, clientOut);
+      } catch (IOException e) {
+        // Happens when client closes before reading responses, then server can't write
+        // to the client's input stream.
+        Client.printError("Could not write response to client.");
+        Client.printError(e.getMessage());
+        return false;
+      }
 
-        // Log action.
-        try {
-          logWriter.write(Long.toString(actionTime));
-          logWriter.write(":");
-          logWriter.write(clientMsg);
-          logWriter.newLine();
-          logWriter.flush();
-        } catch (IOException e) {
-          Client.printError("Could not write to log file.");
-          Client.printError(e.getMessage());
-          return;
-        }
+      // Log action. The log writer reports its own errors.
+      if (!logWriter.append(actionTime, jointAction)) {
+        return false;
       }
     }
     Client.printDebug("Messages exchanged: " + numMessages + ".");
+    return true;
+  }
 
-    // Log summary.
-    try {
-      logWriter.write("#end");
-      logWriter.newLine();
-
-      logWriter.write("#solved");
-      logWriter.newLine();
-      logWriter.write(this.isGoalState(this.getNumStates() - 1) ? "true" : "false");
-      logWriter.newLine();
-
-      logWriter.write("#numactions");
-      logWriter.newLine();
-      logWriter.write(Long.toString(this.numActions));
-      logWriter.newLine();
-
-      logWriter.write("#time");
-      logWriter.newLine();
-      logWriter.write(Long.toString(this.getStateTime(this.getNumStates() - 1)));
-      logWriter.newLine();
-
-      logWriter.write("#end");
-      logWriter.newLine();
-      logWriter.flush();
-    } catch (IOException e) {
-      Client.printError("Could not write to log file.");
-      Client.printError(e.getMessage());
-      return;
+  /**
+   * Writes the response to a joint action. The binary response has bit (i % 8) of
+   * byte (i / 8) set if the action of agent i was applicable, and applicableMask
+   * is scratch space for it.
+   */
+  static void writeResponse(boolean[] applicable, boolean binaryProtocol, byte[] applicableMask,
+      OutputStream out) throws IOException {
+    if (binaryProtocol) {
+      Arrays.fill(applicableMask, (byte) 0);
+      for (int i = 0; i < applicable.length; ++i) {
+        if (applicable[i]) {
+          applicableMask[i >>> 3] |= 1 << (i & 7);
+        }
+      }
+      out.write(applicableMask);
+    } else {
+      out.write(applicable[0] ? TRUE : FALSE);
+      for (int i = 1; i < applicable.length; ++i) {
+        out.write('|');
+        out.write(applicable[i] ? TRUE : FALSE);
+      }
+      out.write(NEWLINE);
     }
+  }
 
-    Client.printDebug("Protocol finished.");
+  private static final int LOG_BUFFER_SIZE = 1 << 16;
+  private static final int LOG_WRITER_CAPACITY = 1 << 12;
+
+  private static final String BINARY_PROTOCOL_REQUEST = " #binary";
+  private static final String BINARY_PROTOCOL_ACKNOWLEDGEMENT = "#binary";
+
+  private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+  private static void writeLine(OutputStream out, String line) throws IOException {
+    out.write(line.getBytes(StandardCharsets.US_ASCII));
+    out.write(NEWLINE);
   }
 
   @Override
@@ -392,6 +516,30 @@ public class HospitalDomain implements Domain {
     this.stateSequence.allowDiscardingPastStates();
   }
 
+  @Override
+  public void recordReplay() {
+    this.replayWriter =
+        new BinaryReplayWriter(this.stateSequence.levelInfo, StateSequence.KEYFRAME_INTERVAL);
+  }
+
+  @Override
+  public void writeReplay(OutputStream replayOut) throws IOException {
+    if (this.clientName == null) {
+      throw new IOException("The client did not send its name.");
+    }
+    BufferedOutputStream replayStream = new BufferedOutputStream(replayOut, LOG_BUFFER_SIZE);
+    byte[] level = Files.readAllBytes(this.levelFile);
+    replayStream.write(level);
+    if (level.length == 0 || level[level.length - 1] != '\n') {
+      replayStream.write(NEWLINE);
+    }
+    writeLine(replayStream, "#clientname");
+    writeLine(replayStream, this.clientName);
+    writeLine(replayStream, "#replay");
+    this.replayWriter.write(replayStream);
+    replayStream.flush();
+  }
+
   @Override
   public String getLevelName() {
     return this.stateSequence.levelInfo.levelName;
@@ -407,13 +555,61 @@ public class HospitalDomain implements Domain {
     int lastStateID = this.getNumStates() - 1;
     boolean isSolved = this.isGoalState(lastStateID);
 
-    String[] status = new String[3];
-    status[0] = String.format("Level solved: %s.", isSolved ? "Yes" : "No");
-    status[1] = String.format("Actions used: %,d.", this.numActions);
-    status[2] = String.format("Time to solve: %.3f seconds.",
-        this.getStateTime(lastStateID) / 1_000_000_000d);
+    var status = new ArrayList<String>();
+    status.add(String.format("Level solved: %s.", isSolved ? "Yes" : "No"));
+    status.add(String.format("Actions used: %,d.", this.getNumActions()));
+    status.add(String.format("Time to solve: %.3f seconds.",
+        this.getStateTime(lastStateID) / 1_000_000_000d));
+
+    // The resource usage is only known for logs written by newer servers.
+    long clientCpuTime = this.getClientCpuTime();
+    if (clientCpuTime != -1) {
+      status.add(String.format("CPU time used: %.3f seconds.", clientCpuTime / 1_000_000_000d));
+    }
+    var telemetry = this.getClientTelemetry();
+    long peakMemory = ClientTelemetry.getPeakMemory(telemetry);
+    if (peakMemory != -1) {
+      status.add(String.format("Peak memory used: %,.1f MB.", peakMemory / 1_000_000d));
+    }
+    double peakCpuUsage = ClientTelemetry.getPeakCpuUsage(telemetry);
+    if (peakCpuUsage != -1) {
+      status.add(String.format("Peak CPU usage: %.2f cores.", peakCpuUsage));
+    }
+    int peakThreads = ClientTelemetry.getPeakThreads(telemetry);
+    if (peakThreads != -1) {
+      status.add(String.format("Peak number of threads: %d.", peakThreads));
+    }
+
+    return status.toArray(new String[0]);
+  }
 
-    return status;
+  @Override
+  public boolean isSolved() {
+    return this.isGoalState(this.getNumStates() - 1);
+  }
+
+  @Override
+  public long getNumActions() {
+    return this.isReplay ? this.getNumStates() - 1 : this.numActions;
+  }
+
+  @Override
+  public long getClientCpuTime() {
+    return this.isReplay ? this.stateSequence.levelInfo.clientCpuTime : this.clientCpuTime;
+  }
+
+  @Override
+  public long getClientPeakMemory() {
+    return ClientTelemetry.getPeakMemory(this.getClientTelemetry());
+  }
+
+  @Override
+  public double getClientPeakCpuUsage() {
+    return ClientTelemetry.getPeakCpuUsage(this.getClientTelemetry());
+  }
+
+  private List<ClientTelemetry.Sample> getClientTelemetry() {
+    return this.isReplay ? this.stateSequence.levelInfo.clientTelemetry : this.clientTelemetry;
   }
 
   private boolean isGoalState(int stateID) {
@@ -864,11 +1060,7 @@ public class HospitalDomain implements Domain {
   }
 
   private BitSet getSolvedBoxGoals(int stateID) {
-    if (stateID >= this.stateSolvedBoxGoals.length) {
-      int newSize = Math.max(this.stateSolvedBoxGoals.length * 2, stateID + 1);
-      this.stateSolvedBoxGoals = Arrays.copyOf(this.stateSolvedBoxGoals, newSize);
-    }
-    BitSet solvedBoxGoals = this.stateSolvedBoxGoals[stateID];
+    BitSet solvedBoxGoals = this.stateSolvedBoxGoals.get(stateID);
     if (solvedBoxGoals == null) {
       State state = this.stateSequence.getState(stateID);
       solvedBoxGoals = new BitSet(this.stateSequence.levelInfo.numBoxGoals);
@@ -883,7 +1075,7 @@ public class HospitalDomain implements Domain {
         }
       }
 
-      this.stateSolvedBoxGoals[stateID] = solvedBoxGoals;
+      this.stateSolvedBoxGoals.put(stateID, solvedBoxGoals);
     }
     return solvedBoxGoals;
   }
@@ -17,108 +17,73 @@ package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
 import dk.dtu.compute.mavis.domain.gridworld.Validator;
 
+import java.util.Arrays;
+
 class HospitalValidator implements Validator<Action, State> {
 
   private final LevelInfo levelInfo;
 
-  public HospitalValidator(LevelInfo levelInfo) {
-    this.levelInfo = levelInfo;
-  }
-
   /**
-   * Checks if the given cell is free (no wall, box, or agent occupies it).
-   * Complexity: O(log(numBoxes) + numAgents).
+   * Scratch arrays for isApplicable, indexed by agent. Reused between calls, so a
+   * validator may only be used by one thread at a time.
    */
-  private boolean freeAt(short row, short col, State state) {
-    return !this.wallAt(row, col) && this.boxAt(row, col, state) == -1
-        && this.agentAt(row, col, state) == -1;
-  }
+  private final short[] destRows;
+  private final short[] destCols;
+  private final short[] boxRows;
+  private final short[] boxCols;
+  private final boolean[] conflicting;
 
   /**
-   * Returns whether there is a wall at the given (row, col). Complexity: O(1).
+   * Claims on cells by the actions of the current call to isApplicable, indexed
+   * by row * numCols + col. A claim is (generation << 32) | agent, and is only
+   * valid if its generation is the current generation, so the grids never have to
+   * be cleared between calls.
    */
-  private boolean wallAt(short row, short col) {
-    return this.levelInfo.wallAt(row, col);
-  }
+  private final long[] destClaims;
+  private final long[] boxClaims;
+  private int generation = 0;
 
-  /**
-   * Search for an agent at the given (row, col) in the latest state. Returns
-   * agent ID (0..9) if found, and -1 otherwise. Complexity: O(numAgents).
-   */
-  private byte agentAt(short row, short col, State state) {
-    for (byte a = 0; a < this.levelInfo.numAgents; ++a) {
-      if (state.agentRows[a] == row && state.agentCols[a] == col) {
-        return a;
-      }
-    }
-    return -1;
+  public HospitalValidator(LevelInfo levelInfo) {
+    this.levelInfo = levelInfo;
+    this.destRows = new short[levelInfo.numAgents];
+    this.destCols = new short[levelInfo.numAgents];
+    this.boxRows = new short[levelInfo.numAgents];
+    this.boxCols = new short[levelInfo.numAgents];
+    this.conflicting = new boolean[levelInfo.numAgents];
+    int numCells = levelInfo.numRows * levelInfo.numCols;
+    this.destClaims = new long[numCells];
+    this.boxClaims = new long[numCells];
   }
 
   /**
-   * Search for box at the given (row, col) in the state. Returns box letter (A..Z
-   * = 0..25) if found, and -1 otherwise. Complexity: O(log(numBoxes)).
+   * Search for box at the given (row, col) in the latest state. Returns box
+   * letter (A..Z = 0..25) if found, and -1 otherwise. Complexity: O(1).
    */
-  private byte boxAt(short row, short col, State state) {
-    if (this.levelInfo.numBoxes == 0) {
+  private byte boxAt(short row, short col) {
+    int boxId = this.levelInfo.boxIdAt(row, col);
+    if (boxId == -1) {
       return -1;
     }
-    int sortedBoxIdx = this.findBox(row, col, state);
-    int boxId = this.levelInfo.sortedBoxIds[sortedBoxIdx];
-    if (state.boxRows[boxId] == row && state.boxCols[boxId] == col) {
-      return this.levelInfo.boxLetters[boxId];
-    }
-    return -1;
-  }
-
-  /**
-   * Does a binary search over the sorted boxes in the latest state, and returns
-   * the index in the sorted order where the box with the given (row, col) should
-   * be. Complexity: O(log(numBoxes)).
-   */
-  private int findBox(short row, short col, State state) {
-    int lowIdx = 0;
-    int highIdx = this.levelInfo.numBoxes - 1;
-    int midIdx = lowIdx + (highIdx - lowIdx) / 2;
-
-    while (lowIdx <= highIdx) {
-      midIdx = lowIdx + (highIdx - lowIdx) / 2;
-      short midRow = state.boxRows[this.levelInfo.sortedBoxIds[midIdx]];
-      short midCol = state.boxCols[this.levelInfo.sortedBoxIds[midIdx]];
-
-      if (midRow < row) {
-        lowIdx = midIdx + 1;
-      } else if (midRow > row) {
-        highIdx = midIdx - 1;
-      } else if (midCol < col) {
-        lowIdx = midIdx + 1;
-      } else if (midCol > col) {
-        highIdx = midIdx - 1;
-      } else {
-        // Found.
-        break;
-      }
-    }
-
-    return midIdx;
+    return this.levelInfo.boxLetters[boxId];
   }
 
   /**
-   * Determines which actions are applicable and non-conflicting. Returns an array
-   * with true for each action which was applicable and non-conflicting, and false
-   * otherwise.
+   * Determines which actions are applicable and non-conflicting, and writes the
+   * result into applicable. The state must be the latest state of the sequence,
+   * since cell occupancy is looked up in this.levelInfo.cellObjects.
    */
-  public boolean[] isApplicable(Action[] jointAction, State state) {
+  @Override
+  public void isApplicable(Action[] jointAction, State state, boolean[] applicable) {
     if (this.levelInfo == null) {
       throw new UnsupportedOperationException("Missing Level Context");
     }
 
     var numAgents = this.levelInfo.numAgents;
 
-    boolean[] applicable = new boolean[numAgents];
-    short[] destRows = new short[numAgents];
-    short[] destCols = new short[numAgents];
-    short[] boxRows = new short[numAgents];
-    short[] boxCols = new short[numAgents];
+    short[] destRows = this.destRows;
+    short[] destCols = this.destCols;
+    short[] boxRows = this.boxRows;
+    short[] boxCols = this.boxCols;
 
     // Test applicability.
     for (byte agent = 0; agent < numAgents; ++agent) {
@@ -138,60 +103,71 @@ class HospitalValidator implements Validator<Action, State> {
         case Move:
           destRows[agent] = (short) (agentRow + action.moveDeltaRow);
           destCols[agent] = (short) (agentCol + action.moveDeltaCol);
-          applicable[agent] = this.freeAt(destRows[agent], destCols[agent], state);
+          applicable[agent] = this.levelInfo.freeAt(destRows[agent], destCols[agent]);
           break;
 
         case Push:
-          boxLetter = this.boxAt(boxRows[agent], boxCols[agent], state);
+          boxLetter = this.boxAt(boxRows[agent], boxCols[agent]);
           destRows[agent] = (short) (boxRows[agent] + action.moveDeltaRow);
           destCols[agent] = (short) (boxCols[agent] + action.moveDeltaCol);
           applicable[agent] = boxLetter != -1
               && this.levelInfo.agentColors[agent] == this.levelInfo.boxColors[boxLetter]
-              && this.freeAt(destRows[agent], destCols[agent], state);
+              && this.levelInfo.freeAt(destRows[agent], destCols[agent]);
           break;
 
         case Pull:
           boxRows[agent] = (short) (agentRow - action.boxDeltaRow);
           boxCols[agent] = (short) (agentCol - action.boxDeltaCol);
-          boxLetter = this.boxAt(boxRows[agent], boxCols[agent], state);
+          boxLetter = this.boxAt(boxRows[agent], boxCols[agent]);
           destRows[agent] = (short) (agentRow + action.moveDeltaRow);
           destCols[agent] = (short) (agentCol + action.moveDeltaCol);
           applicable[agent] = boxLetter != -1
               && this.levelInfo.agentColors[agent] == this.levelInfo.boxColors[boxLetter]
-              && this.freeAt(destRows[agent], destCols[agent], state);
+              && this.levelInfo.freeAt(destRows[agent], destCols[agent]);
           break;
       }
     }
 
-    // Test conflicts.
-    boolean[] conflicting = new boolean[numAgents];
-    for (byte a1 = 0; a1 < numAgents; ++a1) {
-      if (!applicable[a1] || jointAction[a1] == Action.NoOp) {
+    // Test conflicts. Each applicable action claims its destination cell and box
+    // cell, and an agent claiming a cell already claimed by another agent
+    // conflicts with that agent. Complexity: O(numAgents).
+    boolean[] conflicting = this.conflicting;
+    Arrays.fill(conflicting, false);
+    if (++this.generation == 0) {
+      // Generations wrapped around, so old claims could look current.
+      Arrays.fill(this.destClaims, 0);
+      Arrays.fill(this.boxClaims, 0);
+      this.generation = 1;
+    }
+    for (byte agent = 0; agent < numAgents; ++agent) {
+      if (!applicable[agent] || jointAction[agent] == Action.NoOp) {
         continue;
       }
-      for (byte a2 = 0; a2 < a1; ++a2) {
-        if (!applicable[a2] || jointAction[a2] == Action.NoOp) {
-          continue;
-        }
-
-        // Objects moving into same cell?
-        if (destRows[a1] == destRows[a2] && destCols[a1] == destCols[a2]) {
-          conflicting[a1] = true;
-          conflicting[a2] = true;
-        }
-
-        // Moving same box?
-        if (boxRows[a1] == boxRows[a2] && boxCols[a1] == boxCols[a2]) {
-          conflicting[a1] = true;
-          conflicting[a2] = true;
-        }
-      }
+
+      // Objects moving into same cell?
+      this.claim(this.destClaims, destRows[agent], destCols[agent], agent, conflicting);
+
+      // Moving same box?
+      this.claim(this.boxClaims, boxRows[agent], boxCols[agent], agent, conflicting);
     }
 
     for (byte agent = 0; agent < numAgents; ++agent) {
       applicable[agent] &= !conflicting[agent];
     }
+  }
 
-    return applicable;
+  /**
+   * Claims the given (row, col) for the agent. If another agent has claimed the
+   * cell in this generation, both agents are marked as conflicting.
+   */
+  private void claim(long[] claims, short row, short col, byte agent, boolean[] conflicting) {
+    int cell = row * this.levelInfo.numCols + col;
+    long claim = claims[cell];
+    if ((int) (claim >>> 32) == this.generation) {
+      conflicting[agent] = true;
+      conflicting[(int) claim] = true;
+    } else {
+      claims[cell] = (long) this.generation << 32 | agent;
+    }
   }
 }
@@ -15,11 +15,15 @@
  */
 package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
+import dk.dtu.compute.mavis.client.ClientTelemetry;
+
 import java.awt.Color;
 import java.util.BitSet;
+import java.util.List;
 
 /**
- * Contains information that does not change throughout the run.
+ * Contains information that does not change throughout the run, except for
+ * cellObjects, which tracks the occupancy of the latest state of the run.
  */
 class LevelInfo {
   /**
@@ -27,6 +31,15 @@ class LevelInfo {
    */
   String levelName;
   String clientName;
+  /**
+   * The CPU time in nanoseconds used by the client of a log, or -1 if the log
+   * does not record it.
+   */
+  long clientCpuTime = -1;
+  /**
+   * The resource usage samples of the client of a log, if the log records them.
+   */
+  List<ClientTelemetry.Sample> clientTelemetry = List.of();
 
   /**
    * Size of bounding rectangle around level.
@@ -76,17 +89,12 @@ class LevelInfo {
   byte[] boxGoalLetters;
 
   /**
-   * Ids of boxes as they would be in the latest state if the boxes were sorted by
-   * (row, col). I.e. sortedBoxIds[i] < sortedBoxIds[i+1] with < defined by
-   * lexicographical ordering of (row, col). The value at sortedBoxIds[i] is the
-   * box id of the box at that position in the ordering in the latest state. E.g.
-   * the sortedBoxIds[11] is the box id of the 12th box in the sorted order, and
-   * will index into this.states[this.numStates-1].boxRows/boxCols. Note that
-   * during this.apply, this array does NOT index into
-   * this.states[this.numStates-1].boxRows/boxCols yet, since the new state is not
-   * added to the this.states array yet.
+   * The object occupying each cell in the latest state, indexed by row * numCols
+   * + col. The value is 0 if the cell is empty, agent + 1 for agents, and -(box +
+   * 1) for boxes. Maintained by StateSequence.apply, so it indexes into
+   * StateSequence.getLatestState().boxRows/boxCols and agentRows/agentCols.
    */
-  int[] sortedBoxIds;
+  int[] cellObjects;
 
   /**
    * The initial state.
@@ -118,13 +126,13 @@ class LevelInfo {
     this.boxGoalRows = null;
     this.boxGoalCols = null;
     this.boxGoalLetters = null;
-    this.sortedBoxIds = null;
+    this.cellObjects = null;
   }
 
   public LevelInfo(String levelName, String clientName, short numRows, short numCols, BitSet walls,
       int numBoxes, byte[] boxLetters, Color[] boxColors, byte numAgents, Color[] agentColors,
       short[] agentGoalRows, short[] agentGoalCols, int numBoxGoals, short[] boxGoalRows,
-      short[] boxGoalCols, byte[] boxGoalLetters, State initialState, int[] sortedBoxIds) {
+      short[] boxGoalCols, byte[] boxGoalLetters, State initialState, int[] cellObjects) {
     this.levelName = levelName;
     this.clientName = clientName;
     this.numRows = numRows;
@@ -141,7 +149,7 @@ class LevelInfo {
     this.boxGoalRows = boxGoalRows;
     this.boxGoalCols = boxGoalCols;
     this.boxGoalLetters = boxGoalLetters;
-    this.sortedBoxIds = sortedBoxIds;
+    this.cellObjects = cellObjects;
     this.initialState = initialState;
   }
 
@@ -192,4 +200,37 @@ class LevelInfo {
   boolean wallAt(short row, short col) {
     return this.walls.get(row * this.numCols + col);
   }
+
+  /**
+   * Returns whether the given (row, col) is free (no wall, box, or agent occupies
+   * it) in the latest state. Complexity: O(1).
+   */
+  boolean freeAt(short row, short col) {
+    return this.cellObjects[row * this.numCols + col] == 0 && !this.wallAt(row, col);
+  }
+
+  /**
+   * Returns the id of the agent at the given (row, col) in the latest state, or
+   * -1 if there is none. Complexity: O(1).
+   */
+  byte agentAt(short row, short col) {
+    int object = this.cellObjects[row * this.numCols + col];
+    return object > 0 ? (byte) (object - 1) : -1;
+  }
+
+  /**
+   * Returns the id of the box at the given (row, col) in the latest state, or -1
+   * if there is none. Complexity: O(1).
+   */
+  int boxIdAt(short row, short col) {
+    int object = this.cellObjects[row * this.numCols + col];
+    return object < 0 ? -(object + 1) : -1;
+  }
+
+  /**
+   * Sets the object at the given (row, col) in the latest state. See cellObjects.
+   */
+  void setCellObject(short row, short col, int object) {
+    this.cellObjects[row * this.numCols + col] = object;
+  }
 }
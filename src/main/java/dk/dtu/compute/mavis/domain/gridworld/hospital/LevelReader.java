@@ -15,19 +15,20 @@
  */
 package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
+import dk.dtu.compute.mavis.client.ClientTelemetry;
 import dk.dtu.compute.mavis.domain.ParseException;
 import dk.dtu.compute.mavis.domain.gridworld.Validator;
 import dk.dtu.compute.mavis.server.Server;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.concurrent.Executor;
 
 /**
  * Produces LevelInfo.
@@ -50,114 +51,224 @@ class LevelReader {
    * Parses the given level file to construct a new state sequence.
    */
   public LevelInfo getLevel() throws IOException, ParseException {
-    this.levelInfo = new LevelInfo();
     var tStart = System.nanoTime();
 
-    try (LineNumberReader levelReader =
-        new LineNumberReader(Files.newBufferedReader(domainFile, StandardCharsets.US_ASCII))) {
+    try (MappedLineReader levelReader = new MappedLineReader(this.domainFile)) {
       try {
-        // Skip the domain type lines.
-        levelReader.readLine();
-        levelReader.readLine();
+        String line = this.parseLevelSections(levelReader);
 
-        String line = levelReader.readLine();
-        if (line == null || !line.equals("#levelname")) {
-          throw new ParseException("Expected beginning of level name section (#levelname).",
-              levelReader.getLineNumber());
+        // If this is a log file, then parse additional sections.
+        if (this.isLogFile) {
+          if (this.parseLogHeader(levelReader, line)) {
+            line = this.parseLogSections(levelReader);
+          } else {
+            line = null;
+          }
         }
-        line = this.parseNameSection(levelReader);
 
-        if (line == null || !line.equals("#colors")) {
-          throw new ParseException("Expected beginning of color section (#colors).",
-              levelReader.getLineNumber());
-        }
-        line = this.parseColorsSection(levelReader);
+        this.parseEndOfFile(levelReader, line);
+      } catch (MalformedInputException e) {
+        throw new ParseException("Level file content not valid ASCII.",
+            levelReader.getLineNumber());
+      }
+    }
 
-        if (!line.equals("#initial")) {
-          throw new ParseException("Expected beginning of initial state section (#initial).",
-              levelReader.getLineNumber());
-        }
-        line = this.parseInitialSection(levelReader);
+    var tEnd = System.nanoTime();
+    Server.printDebug(String.format("Parsing time: %.3f ms.", (tEnd - tStart) / 1_000_000_000.0));
+    return this.levelInfo;
+  }
 
-        if (!line.equals("#goal")) {
-          throw new ParseException("Expected beginning of goal state section (#goal).",
-              levelReader.getLineNumber());
-        }
-        line = this.parseGoalSection(levelReader);
+  /**
+   * Parses the level and the header of the given log file, and loads the actions
+   * of the log with the given executor, e.g. on a background thread. The states
+   * are appended to levelInfo.initialSequence as they are loaded, by the same
+   * single writer protocol as for clients, so the sequence can be played while it
+   * grows.
+   * <p>
+   * Errors in the actions or the summary of the log are printed, and stop the
+   * loading. The states of a binary replay are read from it on demand, so it is
+   * not loaded by the executor.
+   */
+  LevelInfo getLevel(Executor actionLoader) throws IOException, ParseException {
+    if (!this.isLogFile) {
+      return this.getLevel();
+    }
 
-        // Initial and goal states loaded; check that states are legal.
-        this.checkObjectsEnclosedInWalls();
+    MappedLineReader levelReader = new MappedLineReader(this.domainFile);
+    boolean loading = false;
+    try {
+      boolean hasActions;
+      try {
+        hasActions = this.parseLogHeader(levelReader, this.parseLevelSections(levelReader));
+      } catch (MalformedInputException e) {
+        throw new ParseException("Level file content not valid ASCII.",
+            levelReader.getLineNumber());
+      }
+      if (hasActions) {
+        actionLoader.execute(() -> this.loadActions(levelReader));
+        loading = true;
+      }
+    } finally {
+      if (!loading) {
+        levelReader.close();
+      }
+    }
+    return this.levelInfo;
+  }
 
-        if (!line.stripTrailing().equalsIgnoreCase("#end")) {
-          throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
-        }
-        line = parseEndSection(levelReader);
+  private void loadActions(MappedLineReader levelReader) {
+    var tStart = System.nanoTime();
+    try (levelReader) {
+      try {
+        this.parseEndOfFile(levelReader, this.parseLogSections(levelReader));
+      } catch (MalformedInputException e) {
+        throw new ParseException("Level file content not valid ASCII.",
+            levelReader.getLineNumber());
+      }
+    } catch (ParseException e) {
+      Server.printError("Could not load all actions, failed to parse log file.");
+      Server.printError(e.getMessage());
+      return;
+    } catch (IOException e) {
+      Server.printError("IOException while loading actions.");
+      Server.printError(e.getMessage());
+      return;
+    }
+    var tEnd = System.nanoTime();
+    Server.printDebug(String.format("Loading time: %.3f ms.", (tEnd - tStart) / 1_000_000.0));
+  }
 
-        // If this is a log file, then parse additional sections.
-        if (isLogFile) {
+  /**
+   * Parses the sections of the level, up to and including its end section.
+   * Returns the line after the end section.
+   */
+  private String parseLevelSections(MappedLineReader levelReader)
+      throws IOException, ParseException {
+    this.levelInfo = new LevelInfo();
 
-          this.stateSequence = new StateSequence(this.levelInfo);
+    // Skip the domain type lines.
+    levelReader.readLine();
+    levelReader.readLine();
 
-          // Parse client name.
-          if (!line.stripTrailing().equalsIgnoreCase("#clientname")) {
-            throw new ParseException("Expected client name section (#clientname).",
-                levelReader.getLineNumber());
-          }
-          line = parseClientNameSection(levelReader);
+    String line = levelReader.readLine();
+    if (line == null || !line.equals("#levelname")) {
+      throw new ParseException("Expected beginning of level name section (#levelname).",
+          levelReader.getLineNumber());
+    }
+    line = this.parseNameSection(levelReader);
 
-          // Parse and simulate actions.
-          if (!line.stripTrailing().equalsIgnoreCase("#actions")) {
-            throw new ParseException("Expected actions section (#actions).",
-                levelReader.getLineNumber());
-          }
-          // FIXME: use domain-relevant validator
-          this.validator = new HospitalValidator(levelInfo);
-          line = parseActionsSection(levelReader);
+    if (line == null || !line.equals("#colors")) {
+      throw new ParseException("Expected beginning of color section (#colors).",
+          levelReader.getLineNumber());
+    }
+    line = this.parseColorsSection(levelReader);
 
-          if (!line.stripTrailing().equalsIgnoreCase("#end")) {
-            throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
-          }
-          line = parseEndSection(levelReader);
+    if (!line.equals("#initial")) {
+      throw new ParseException("Expected beginning of initial state section (#initial).",
+          levelReader.getLineNumber());
+    }
+    line = this.parseInitialSection(levelReader);
 
-          // Parse summary to check if it is consistent with simulation.
-          if (!line.stripTrailing().equalsIgnoreCase("#solved")) {
-            throw new ParseException("Expected solved section (#solved).",
-                levelReader.getLineNumber());
-          }
-          line = parseSolvedSection(levelReader);
+    if (!line.equals("#goal")) {
+      throw new ParseException("Expected beginning of goal state section (#goal).",
+          levelReader.getLineNumber());
+    }
+    line = this.parseGoalSection(levelReader);
 
-          if (!line.stripTrailing().equalsIgnoreCase("#numactions")) {
-            throw new ParseException("Expected numactions section (#numactions).",
-                levelReader.getLineNumber());
-          }
-          line = parseNumActionsSection(levelReader);
+    // Initial and goal states loaded; check that states are legal.
+    this.checkObjectsEnclosedInWalls();
 
-          if (!line.stripTrailing().equalsIgnoreCase("#time")) {
-            throw new ParseException("Expected time section (#time).", levelReader.getLineNumber());
-          }
-          line = parseTimeSection(levelReader);
+    if (!line.stripTrailing().equalsIgnoreCase("#end")) {
+      throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
+    }
+    return parseEndSection(levelReader);
+  }
 
-          if (!line.stripTrailing().equalsIgnoreCase("#end")) {
-            throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
-          }
-          line = parseEndSection(levelReader);
-        }
+  /**
+   * Parses the client name of a log file, up to the beginning of its actions
+   * section, and creates the state sequence for the actions. Returns false if the
+   * log file is a binary replay, whose states are read from the replay on demand,
+   * so it has no more sections to parse.
+   */
+  private boolean parseLogHeader(MappedLineReader levelReader, String line)
+      throws IOException, ParseException {
+    // Parse client name.
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#clientname")) {
+      throw new ParseException("Expected client name section (#clientname).",
+          levelReader.getLineNumber());
+    }
+    line = parseClientNameSection(levelReader);
 
-        if (line != null) {
-          throw new ParseException("Expected no more content after end section.",
-              levelReader.getLineNumber());
-        }
+    // The actions of a binary replay were validated when it was recorded.
+    if (line != null && line.stripTrailing().equalsIgnoreCase("#replay")) {
+      var replay = new BinaryReplay(levelReader.mapRemaining(), this.levelInfo);
+      this.stateSequence = new StateSequence(this.levelInfo, replay);
+      this.levelInfo.initialSequence = this.stateSequence;
+      return false;
+    }
 
-        this.levelInfo.initialSequence = this.stateSequence;
-      } catch (MalformedInputException e) {
-        throw new ParseException("Level file content not valid ASCII.",
-            levelReader.getLineNumber());
-      }
+    this.stateSequence = new StateSequence(this.levelInfo);
+    this.levelInfo.initialSequence = this.stateSequence;
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#actions")) {
+      throw new ParseException("Expected actions section (#actions).", levelReader.getLineNumber());
     }
+    // The log does not record which actions were applicable, so they are
+    // validated to reproduce the states.
+    // FIXME: use domain-relevant validator
+    this.validator = new HospitalValidator(levelInfo);
+    return true;
+  }
 
-    var tEnd = System.nanoTime();
-    Server.printDebug(String.format("Parsing time: %.3f ms.", (tEnd - tStart) / 1_000_000_000.0));
-    return this.levelInfo;
+  /**
+   * Parses and simulates the actions of a log file, and checks that its summary
+   * is consistent with the simulation. Returns the line after the final end
+   * section.
+   */
+  private String parseLogSections(MappedLineReader levelReader) throws IOException, ParseException {
+    String line = parseActionsSection(levelReader);
+
+    if (!line.stripTrailing().equalsIgnoreCase("#end")) {
+      throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
+    }
+    line = parseEndSection(levelReader);
+
+    // Parse summary to check if it is consistent with simulation.
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#solved")) {
+      throw new ParseException("Expected solved section (#solved).", levelReader.getLineNumber());
+    }
+    line = parseSolvedSection(levelReader);
+
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#numactions")) {
+      throw new ParseException("Expected numactions section (#numactions).",
+          levelReader.getLineNumber());
+    }
+    line = parseNumActionsSection(levelReader);
+
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#time")) {
+      throw new ParseException("Expected time section (#time).", levelReader.getLineNumber());
+    }
+    line = parseTimeSection(levelReader);
+
+    // Logs written before the resource usage was measured have no CPU time or
+    // telemetry sections.
+    if (line != null && line.stripTrailing().equalsIgnoreCase("#cputime")) {
+      line = parseCpuTimeSection(levelReader);
+    }
+    if (line != null && line.stripTrailing().equalsIgnoreCase("#telemetry")) {
+      line = parseTelemetrySection(levelReader);
+    }
+
+    if (line == null || !line.stripTrailing().equalsIgnoreCase("#end")) {
+      throw new ParseException("Expected end section (#end).", levelReader.getLineNumber());
+    }
+    return parseEndSection(levelReader);
+  }
+
+  private void parseEndOfFile(MappedLineReader levelReader, String line) throws ParseException {
+    if (line != null) {
+      throw new ParseException("Expected no more content after end section.",
+          levelReader.getLineNumber());
+    }
   }
 
   private static class LocationStack {
@@ -300,7 +411,7 @@ class LevelReader {
     return true;
   }
 
-  private String parseNameSection(LineNumberReader levelReader) throws IOException, ParseException {
+  private String parseNameSection(MappedLineReader levelReader) throws IOException, ParseException {
     String line = levelReader.readLine();
     if (line == null) {
       throw new ParseException("Expected a level name, but reached end of file.",
@@ -314,7 +425,7 @@ class LevelReader {
     return line;
   }
 
-  private String parseColorsSection(LineNumberReader levelReader)
+  private String parseColorsSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     while (true) {
       String line = levelReader.readLine();
@@ -377,7 +488,7 @@ class LevelReader {
     }
   }
 
-  private String parseInitialSection(LineNumberReader levelReader)
+  private String parseInitialSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     int numWalls = 0;
     short[] wallRows = new short[1024];
@@ -497,10 +608,6 @@ class LevelReader {
     // Set box information.
     this.levelInfo.numBoxes = numBoxes;
     this.levelInfo.boxLetters = Arrays.copyOf(boxLetters, this.levelInfo.numBoxes);
-    this.levelInfo.sortedBoxIds = new int[this.levelInfo.numBoxes];
-    for (int i = 0; i < this.levelInfo.numBoxes; ++i) {
-      this.levelInfo.sortedBoxIds[i] = i;
-    }
 
     // Create initial state.
     State initialState = new State(Arrays.copyOf(boxRows, numBoxes),
@@ -509,10 +616,19 @@ class LevelReader {
 
     this.levelInfo.initialState = initialState;
 
+    // Set cell objects of the initial state.
+    this.levelInfo.cellObjects = new int[this.levelInfo.numRows * this.levelInfo.numCols];
+    for (int box = 0; box < this.levelInfo.numBoxes; ++box) {
+      this.levelInfo.setCellObject(boxRows[box], boxCols[box], -(box + 1));
+    }
+    for (int agent = 0; agent < this.levelInfo.numAgents; ++agent) {
+      this.levelInfo.setCellObject(agentRows[agent], agentCols[agent], agent + 1);
+    }
+
     return line;
   }
 
-  private String parseGoalSection(LineNumberReader levelReader) throws IOException, ParseException {
+  private String parseGoalSection(MappedLineReader levelReader) throws IOException, ParseException {
     int numBoxGoals = 0;
     short[] boxGoalRows = new short[128];
     short[] boxGoalCols = new short[128];
@@ -632,7 +748,7 @@ class LevelReader {
     return line;
   }
 
-  private String parseClientNameSection(LineNumberReader levelReader)
+  private String parseClientNameSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     String line = levelReader.readLine();
     if (line == null) {
@@ -647,61 +763,98 @@ class LevelReader {
     return line;
   }
 
-  private String parseActionsSection(LineNumberReader levelReader)
+  /**
+   * Parses and applies the action lines. The lines are decoded in place from the
+   * bytes of the file, so no strings are created for them.
+   */
+  private String parseActionsSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     Action[] jointAction = new Action[this.levelInfo.numAgents];
+    boolean[] applicable = new boolean[this.levelInfo.numAgents];
 
     while (true) {
-      String line = levelReader.readLine();
-      if (line == null) {
+      if (!levelReader.nextLine()) {
         throw new ParseException(
             "Expected more action lines or end of actions section, but reached end of " + "file.",
             levelReader.getLineNumber());
       }
+      byte[] line = levelReader.getLineBuffer();
+      int lineLength = levelReader.getLineLength();
 
-      if (line.length() > 0 && line.charAt(0) == '#') {
-        return line;
+      if (lineLength > 0 && line[0] == '#') {
+        return levelReader.getLine();
       }
 
-      String[] split = line.split(":");
-      if (split.length < 1) {
-        throw new ParseException("Invalid action line syntax - timestamp missing?",
-            levelReader.getLineNumber());
+      // Like String.split(":"), ignore trailing colons.
+      int end = lineLength;
+      while (end > 0 && line[end - 1] == ':') {
+        --end;
       }
-      if (split.length > 2) {
-        throw new ParseException("Invalid action line syntax - too many colons?",
+      int colon = -1;
+      for (int i = 0; i < end; ++i) {
+        if (line[i] == ':') {
+          if (colon != -1) {
+            throw new ParseException("Invalid action line syntax - too many colons?",
+                levelReader.getLineNumber());
+          }
+          colon = i;
+        }
+      }
+      if (colon == -1) {
+        throw new ParseException("Invalid action line syntax - timestamp missing?",
             levelReader.getLineNumber());
       }
 
       // Parse action timestamp.
       long actionTime;
       try {
-        actionTime = Long.parseLong(split[0]);
+        actionTime = parseLong(line, 0, colon);
       } catch (NumberFormatException e) {
         throw new ParseException("Invalid action timestamp.", levelReader.getLineNumber());
       }
 
       // Parse and execute joint action.
-      String[] actionsStr = split[1].split("\\|");
-      if (actionsStr.length != this.levelInfo.numAgents) {
-        throw new ParseException("Invalid number of agents in joint action.",
-            levelReader.getLineNumber());
-      }
-      for (int i = 0; i < jointAction.length; ++i) {
-        jointAction[i] = Action.parse(actionsStr[i]);
-        if (jointAction[i] == null) {
+      switch (ClientMessageReader.decodeJointAction(line, colon + 1, end, jointAction)) {
+        case JointAction:
+          break;
+        case InvalidEncoding:
+          throw new ParseException("Level file content not valid ASCII.",
+              levelReader.getLineNumber());
+        case InvalidNumberOfAgents:
+          throw new ParseException("Invalid number of agents in joint action.",
+              levelReader.getLineNumber());
+        default:
           throw new ParseException("Invalid joint action.", levelReader.getLineNumber());
-        }
       }
 
       // Execute action.
-      State state = this.stateSequence.getState(this.stateSequence.getNumStates() - 1);
-      boolean[] applicable = this.validator.isApplicable(jointAction, state);
+      State state = this.stateSequence.getLatestState();
+      this.validator.isApplicable(jointAction, state, applicable);
       this.stateSequence.apply(jointAction, applicable, actionTime);
     }
   }
 
-  private String parseSolvedSection(LineNumberReader levelReader)
+  /**
+   * Parses a decimal long like Long.parseLong(), without creating a string for
+   * numbers which can not overflow.
+   */
+  private static long parseLong(byte[] buffer, int from, int to) {
+    int digits = from < to && (buffer[from] == '-' || buffer[from] == '+') ? from + 1 : from;
+    if (digits == to || to - digits > 18) {
+      return Long.parseLong(new String(buffer, from, to - from, StandardCharsets.US_ASCII));
+    }
+    long value = 0;
+    for (int i = digits; i < to; ++i) {
+      int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException();
+      }
+      value = value * 10 + digit;
+    }
+    return buffer[from] == '-' ? -value : value;
+  }
+
+  private String parseSolvedSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     String line = levelReader.readLine();
     if (line == null) {
@@ -725,7 +878,7 @@ class LevelReader {
         break;
       }
     }
-    State lastState = this.stateSequence.getState(this.stateSequence.getNumStates() - 1);
+    State lastState = this.stateSequence.getLatestState();
     for (int agent = 0; agent < this.levelInfo.numAgents; ++agent) {
       short agentGoalRow = this.levelInfo.agentGoalRows[agent];
       short agentGoalCol = this.levelInfo.agentGoalCols[agent];
@@ -752,7 +905,7 @@ class LevelReader {
     return line;
   }
 
-  private String parseNumActionsSection(LineNumberReader levelReader)
+  private String parseNumActionsSection(MappedLineReader levelReader)
       throws IOException, ParseException {
     String line = levelReader.readLine();
     if (line == null) {
@@ -777,7 +930,7 @@ class LevelReader {
     return line;
   }
 
-  private String parseTimeSection(LineNumberReader levelReader) throws IOException, ParseException {
+  private String parseTimeSection(MappedLineReader levelReader) throws IOException, ParseException {
     String line = levelReader.readLine();
     if (line == null) {
       throw new ParseException("Expected a solved value, but reached end of file.",
@@ -801,7 +954,55 @@ class LevelReader {
     return line;
   }
 
-  private String parseEndSection(LineNumberReader levelReader) throws IOException, ParseException {
+  private String parseCpuTimeSection(MappedLineReader levelReader)
+      throws IOException, ParseException {
+    String line = levelReader.readLine();
+    if (line == null) {
+      throw new ParseException("Expected a CPU time value, but reached end of file.",
+          levelReader.getLineNumber());
+    }
+
+    try {
+      this.levelInfo.clientCpuTime = Long.parseLong(line);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid CPU time.", levelReader.getLineNumber());
+    }
+    if (this.levelInfo.clientCpuTime < 0) {
+      throw new ParseException("Invalid CPU time.", levelReader.getLineNumber());
+    }
+
+    line = levelReader.readLine();
+    return line;
+  }
+
+  private String parseTelemetrySection(MappedLineReader levelReader)
+      throws IOException, ParseException {
+    var samples = new ArrayList<ClientTelemetry.Sample>();
+    String line;
+    while (true) {
+      line = levelReader.readLine();
+      if (line == null || line.startsWith("#")) {
+        break;
+      }
+
+      // <time>:<cpu-time>:<memory>:<threads>
+      String[] fields = line.split(":");
+      if (fields.length != 4) {
+        throw new ParseException("Invalid telemetry sample.", levelReader.getLineNumber());
+      }
+      try {
+        samples.add(new ClientTelemetry.Sample(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+            Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+      } catch (NumberFormatException e) {
+        throw new ParseException("Invalid telemetry sample.", levelReader.getLineNumber());
+      }
+    }
+    this.levelInfo.clientTelemetry = samples;
+
+    return line;
+  }
+
+  private String parseEndSection(MappedLineReader levelReader) throws IOException, ParseException {
     return levelReader.readLine();
   }
 
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of an ASCII file through a memory mapping of the file, so
+ * large log files are read without copying them through stream buffers and
+ * without creating strings for every line.
+ * <p>
+ * Lines are terminated like BufferedReader.readLine() terminates them ('\n',
+ * '\r' or "\r\n"). After nextLine(), the bytes of the line are available in
+ * getLineBuffer() from index 0 to getLineLength(). Large files are mapped in
+ * windows, so a line may be at most WINDOW_SIZE bytes. Files which can not be
+ * mapped, e.g. entries of a zip file system, are read into memory instead.
+ */
+class MappedLineReader implements Closeable {
+  private static final int WINDOW_SIZE = 1 << 30;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private ByteBuffer window;
+  private long windowStart = 0;
+  private boolean skipLF = false;
+
+  private byte[] line = new byte[256];
+  private int lineLength = 0;
+  private int lineNumber = 0;
+
+  MappedLineReader(Path file) throws IOException {
+    if (file.getFileSystem() == FileSystems.getDefault()) {
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+      this.fileSize = this.channel.size();
+      this.map(0);
+    } else {
+      this.channel = null;
+      this.window = ByteBuffer.wrap(Files.readAllBytes(file));
+      this.fileSize = this.window.limit();
+    }
+  }
+
+  /**
+   * Reads the next line as a string, or returns null at the end of the file.
+   * Throws MalformedInputException if the line is not ASCII.
+   */
+  String readLine() throws IOException {
+    if (!this.nextLine()) {
+      return null;
+    }
+    return this.getLine();
+  }
+
+  /**
+   * The current line as a string. Throws MalformedInputException if the line is
+   * not ASCII.
+   */
+  String getLine() throws MalformedInputException {
+    for (int i = 0; i < this.lineLength; ++i) {
+      if (this.line[i] < 0) {
+        throw new MalformedInputException(1);
+      }
+    }
+    return new String(this.line, 0, this.lineLength, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Advances to the next line. Returns false at the end of the file if there are
+   * no more characters.
+   */
+  boolean nextLine() throws IOException {
+    ByteBuffer window = this.window;
+    if (this.skipLF) {
+      if (!window.hasRemaining() && this.windowStart + window.limit() < this.fileSize) {
+        window = this.map(this.windowStart + window.position());
+      }
+      if (window.hasRemaining() && window.get(window.position()) == '\n') {
+        window.position(window.position() + 1);
+      }
+      this.skipLF = false;
+    }
+
+    int start = window.position();
+    int scan = start;
+    while (true) {
+      int limit = window.limit();
+      for (; scan < limit; ++scan) {
+        byte b = window.get(scan);
+        if (b == '\n' || b == '\r') {
+          this.copyLine(window, start, scan);
+          window.position(scan + 1);
+          this.skipLF = b == '\r';
+          ++this.lineNumber;
+          return true;
+        }
+      }
+
+      if (this.windowStart + limit == this.fileSize) {
+        if (start == limit) {
+          return false;
+        }
+        this.copyLine(window, start, limit);
+        window.position(limit);
+        ++this.lineNumber;
+        return true;
+      }
+      if (start == 0) {
+        throw new IOException("Line " + (this.lineNumber + 1) + " is too long.");
+      }
+
+      // The line continues past the window, so map a new window from its start.
+      window = this.map(this.windowStart + start);
+      scan -= start;
+      start = 0;
+    }
+  }
+
+  /**
+   * The bytes of the current line, from index 0 to getLineLength(). The array is
+   * reused for the next line.
+   */
+  byte[] getLineBuffer() {
+    return this.line;
+  }
+
+  int getLineLength() {
+    return this.lineLength;
+  }
+
+  /**
+   * The number of lines read so far.
+   */
+  int getLineNumber() {
+    return this.lineNumber;
+  }
+
+  /**
+   * Maps the rest of the file after the current line, e.g. a binary section after
+   * a text header. The mapping stays valid after close().
+   */
+  ByteBuffer mapRemaining() throws IOException {
+    long start = this.windowStart + this.window.position();
+    if (this.fileSize - start > Integer.MAX_VALUE) {
+      throw new IOException("The rest of the file is too large to map.");
+    }
+    ByteBuffer remaining;
+    if (this.channel != null) {
+      remaining = this.channel.map(FileChannel.MapMode.READ_ONLY, start, this.fileSize - start);
+    } else {
+      remaining = this.window.duplicate().position((int) start).slice();
+    }
+    if (this.skipLF && remaining.hasRemaining() && remaining.get(0) == '\n') {
+      remaining.position(1);
+      remaining = remaining.slice();
+    }
+    return remaining;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.channel != null) {
+      this.channel.close();
+    }
+  }
+
+  private ByteBuffer map(long start) throws IOException {
+    long size = Math.min(WINDOW_SIZE, this.fileSize - start);
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    this.windowStart = start;
+    return this.window;
+  }
+
+  private void copyLine(ByteBuffer window, int from, int to) {
+    int length = to - from;
+    if (this.line.length < length) {
+      this.line = new byte[Math.max(length, this.line.length * 2)];
+    }
+    window.position(from);
+    window.get(this.line, 0, length);
+    this.lineLength = length;
+  }
+}
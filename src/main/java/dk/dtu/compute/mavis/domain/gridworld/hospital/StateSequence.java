@@ -16,6 +16,8 @@
 package dk.dtu.compute.mavis.domain.gridworld.hospital;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A sequence of states, generated from a level and client, or a log file.
@@ -34,15 +36,40 @@ import java.util.Arrays;
  * StateSequence objects are thread-safe to write only from a single thread (the
  * protocol thread), but can be read from any number threads (e.g. the GUI
  * threads). The state is up-to-date with calls to getNumStates().
+ * <p>
+ * Past states are not stored in full. For every action only the new positions
+ * of the agents and boxes which moved are stored, and every KEYFRAME_INTERVAL
+ * states a full copy is stored as a keyframe. Past states are reconstructed on
+ * demand from the nearest keyframe, and the most recently used reconstructed
+ * states are cached for the renderer. The states of a binary replay are instead
+ * reconstructed from the replay.
  */
 class StateSequence {
+  /**
+   * Number of states between keyframes. Reconstructing a state applies at most
+   * this many steps of moves to a copy of a keyframe.
+   */
+  static final int KEYFRAME_INTERVAL = 1024;
+
+  /**
+   * Number of reconstructed states to cache.
+   */
+  private static final int STATE_CACHE_SIZE = 64;
+
+  /**
+   * The latest state. Only accessed by the protocol thread, which updates it in
+   * place when applying actions, so it is never handed to other threads.
+   */
+  private final State latestState;
 
   /**
-   * Sequence of states. states[0] is the initial state.
+   * The history of states. keyframes[k] is a copy of state k * KEYFRAME_INTERVAL.
+   * The moves leading to state s (s > 0) are stored at indices moveEnds[s - 1] ..
+   * moveEnds[s] - 1 of moveObjects and moveCells. A moved object is a box id, or
+   * -(agent + 1) for agents, and its new cell is packed as (row << 16) | col.
    * <p>
-   * If allowDiscardingPastStates is true, then we will replace states[0] every
-   * action, in which case it is not the initial state, but the latest state (and
-   * all past states are discarded).
+   * If allowDiscardingPastStates is true, no history is stored, and the sequence
+   * only has the latest state (with time stateTimes[0]).
    * <p>
    * IMPORTANT! Note that numStates is used for memory visibility to GUI threads.
    * Take care with order of reading/writing these variables to ensure correct
@@ -51,29 +78,54 @@ class StateSequence {
    * guaranteed to get an up-to-date snapshot of the variables as of that thread's
    * last read of numStates through .getNumStates().
    */
-  private State[] states = new State[64];
+  private State[] keyframes = new State[16];
+  private int[] moveEnds = new int[64];
+  private int[] moveObjects = new int[64];
+  private int[] moveCells = new int[64];
+  private int numMoves = 0;
   private long[] stateTimes = new long[64];
   private volatile int numStates;
 
+  /**
+   * Least recently used cache of reconstructed states. Guarded by itself.
+   */
+  private final Map<Integer, State> stateCache =
+      new LinkedHashMap<>(STATE_CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, State> eldest) {
+          return this.size() > STATE_CACHE_SIZE;
+        }
+      };
+
   /**
    * Set if we are allowed to discard past states (i.e. we're not using a GUI).
    */
   private boolean allowDiscardingPastStates = false;
 
+  /**
+   * The binary replay which the states are read from, or null if the states are
+   * generated by apply().
+   */
+  private final BinaryReplay replay;
+
   LevelInfo levelInfo = null;
 
   StateSequence(LevelInfo levelInfo) {
+    this(levelInfo, null);
+  }
+
+  /**
+   * A sequence of all the states of the given binary replay, which are read from
+   * it on demand. Actions must not be applied to such a sequence.
+   */
+  StateSequence(LevelInfo levelInfo, BinaryReplay replay) {
     this.levelInfo = levelInfo;
+    this.replay = replay;
 
-    if (this.levelInfo.initialSequence == null) {
-      this.states[0] = levelInfo.initialState;
-      this.stateTimes[0] = 0;
-      this.numStates = 1;
-    } else {
-      this.states = levelInfo.initialSequence.states;
-      this.stateTimes = levelInfo.initialSequence.stateTimes;
-      this.numStates = levelInfo.initialSequence.numStates;
-    }
+    this.keyframes[0] = levelInfo.initialState;
+    this.latestState = new State(levelInfo.initialState);
+    this.stateTimes[0] = 0;
+    this.numStates = replay == null ? 1 : replay.getNumStates();
   }
 
   void allowDiscardingPastStates() {
@@ -82,7 +134,7 @@ class StateSequence {
 
   /**
    * Gets the number of available states. NB! This is a volatile read, so any
-   * subsequent read of this.states is "up-to-date" as of this call.
+   * subsequent read of the history is "up-to-date" as of this call.
    */
   int getNumStates() {
     return this.numStates;
@@ -92,114 +144,140 @@ class StateSequence {
    * Gets the time in nanoseconds for when the given state was generated.
    */
   long getStateTime(int state) {
+    if (this.replay != null) {
+      return this.replay.getStateTime(state);
+    }
     return this.stateTimes[state];
   }
 
-  State getState(int state) {
-    return this.states[state];
-  }
-
   /**
-   * Does a binary search over the sorted boxes in the latest state, and returns
-   * the index in the sorted order where the box with the given (row, col) should
-   * be. Complexity: O(log(numBoxes)).
+   * Gets the given state, reconstructing it if necessary. The returned state must
+   * not be modified.
    */
-  private int findBox(State currentState, short row, short col) {
-    int lowIdx = 0;
-    int highIdx = this.levelInfo.numBoxes - 1;
-    int midIdx = lowIdx + (highIdx - lowIdx) / 2;
-
-    while (lowIdx <= highIdx) {
-      midIdx = lowIdx + (highIdx - lowIdx) / 2;
-      short midRow = currentState.boxRows[this.levelInfo.sortedBoxIds[midIdx]];
-      short midCol = currentState.boxCols[this.levelInfo.sortedBoxIds[midIdx]];
-
-      if (midRow < row) {
-        lowIdx = midIdx + 1;
-      } else if (midRow > row) {
-        highIdx = midIdx - 1;
-      } else if (midCol < col) {
-        lowIdx = midIdx + 1;
-      } else if (midCol > col) {
-        highIdx = midIdx - 1;
-      } else {
-        // Found.
-        break;
+  State getState(int state) {
+    if (this.allowDiscardingPastStates) {
+      return this.latestState;
+    }
+    int keyframe = state / KEYFRAME_INTERVAL;
+    int keyframeState = keyframe * KEYFRAME_INTERVAL;
+    if (state == 0 || this.replay == null && state == keyframeState) {
+      return this.keyframes[keyframe];
+    }
+
+    // Reconstruct from the previous state if it is cached (as it is during
+    // playback), otherwise from the keyframe. A binary replay reconstructs its
+    // states from its own snapshots.
+    State previous;
+    synchronized (this.stateCache) {
+      State cached = this.stateCache.get(state);
+      if (cached != null) {
+        return cached;
+      }
+      previous = this.stateCache.get(state - 1);
+    }
+    State reconstructed;
+    int fromState;
+    if (this.replay != null) {
+      reconstructed = this.replay.getState(state, previous);
+      fromState = state;
+    } else if (previous != null) {
+      reconstructed = new State(previous);
+      fromState = state - 1;
+    } else {
+      reconstructed = new State(this.keyframes[keyframe]);
+      fromState = keyframeState;
+    }
+    for (int s = fromState + 1; s <= state; ++s) {
+      for (int move = this.moveEnds[s - 1]; move < this.moveEnds[s]; ++move) {
+        int object = this.moveObjects[move];
+        short row = (short) (this.moveCells[move] >>> 16);
+        short col = (short) this.moveCells[move];
+        if (object < 0) {
+          reconstructed.agentRows[-object - 1] = row;
+          reconstructed.agentCols[-object - 1] = col;
+        } else {
+          reconstructed.boxRows[object] = row;
+          reconstructed.boxCols[object] = col;
+        }
       }
     }
+    reconstructed.time = state;
 
-    return midIdx;
+    synchronized (this.stateCache) {
+      this.stateCache.put(state, reconstructed);
+    }
+    return reconstructed;
+  }
+
+  /**
+   * Gets the latest state. Only for the protocol thread, and the returned state
+   * is modified by the next call to apply().
+   */
+  State getLatestState() {
+    return this.latestState;
   }
 
   /**
    * Search for box at the given (row, col) in the latest state. Returns box
-   * letter (A..Z = 0..25) if found, and -1 otherwise. Complexity:
-   * O(log(numBoxes)).
+   * letter (A..Z = 0..25) if found, and -1 otherwise. Complexity: O(1).
    */
   byte boxAt(short row, short col) {
-    if (this.levelInfo.numBoxes == 0) {
+    int boxId = this.levelInfo.boxIdAt(row, col);
+    if (boxId == -1) {
       return -1;
     }
-    State currentState = this.states[this.numStates - 1];
-    int sortedBoxIdx = this.findBox(currentState, row, col);
-    int boxId = this.levelInfo.sortedBoxIds[sortedBoxIdx];
-    if (currentState.boxRows[boxId] == row && currentState.boxCols[boxId] == col) {
-      return this.levelInfo.boxLetters[boxId];
-    }
-    return -1;
+    return this.levelInfo.boxLetters[boxId];
   }
 
   /**
    * Moves a box in newState from the given (fromRow, fromCol) to (toRow, toCol)
-   * and maintains this.levelInfo.sortedBoxIds.
+   * and maintains this.levelInfo.cellObjects. Returns the id of the box.
+   * Complexity: O(1).
    */
-  void moveBox(State newState, short fromRow, short fromCol, short toRow, short toCol) {
-    int sortedBoxIdx = this.findBox(newState, fromRow, fromCol);
-    int boxId = this.levelInfo.sortedBoxIds[sortedBoxIdx];
-
-    short[] boxRows = newState.boxRows;
-    short[] boxCols = newState.boxCols;
-
-    // Shift sortedBoxIds until sorted order is restored.
-    if (toRow > fromRow || (toRow == fromRow && toCol > fromCol)) {
-      while (sortedBoxIdx + 1 < this.levelInfo.numBoxes
-          && (boxRows[this.levelInfo.sortedBoxIds[sortedBoxIdx + 1]] < toRow
-              || (boxRows[this.levelInfo.sortedBoxIds[sortedBoxIdx + 1]] == toRow
-                  && boxCols[this.levelInfo.sortedBoxIds[sortedBoxIdx + 1]] < toCol))) {
-        this.levelInfo.sortedBoxIds[sortedBoxIdx] = this.levelInfo.sortedBoxIds[sortedBoxIdx + 1];
-        ++sortedBoxIdx;
-      }
-    } else {
-      while (0 < sortedBoxIdx && (boxRows[this.levelInfo.sortedBoxIds[sortedBoxIdx - 1]] > toRow
-          || (boxRows[this.levelInfo.sortedBoxIds[sortedBoxIdx - 1]] == toRow
-              && boxCols[this.levelInfo.sortedBoxIds[sortedBoxIdx - 1]] > toCol))) {
-        this.levelInfo.sortedBoxIds[sortedBoxIdx] = this.levelInfo.sortedBoxIds[sortedBoxIdx - 1];
-        --sortedBoxIdx;
-      }
-    }
-
-    // Move box.
-    boxRows[boxId] = toRow;
-    boxCols[boxId] = toCol;
-    this.levelInfo.sortedBoxIds[sortedBoxIdx] = boxId;
+  private int moveBox(State newState, short fromRow, short fromCol, short toRow, short toCol) {
+    int boxId = this.levelInfo.boxIdAt(fromRow, fromCol);
+    newState.boxRows[boxId] = toRow;
+    newState.boxCols[boxId] = toCol;
+    this.levelInfo.setCellObject(fromRow, fromCol, 0);
+    this.levelInfo.setCellObject(toRow, toCol, -(boxId + 1));
+    return boxId;
   }
 
   /**
-   * Moves the given agent to the given (row, col). Complexity: O(1).
+   * Moves the given agent to the given (row, col) and maintains
+   * this.levelInfo.cellObjects. Complexity: O(1).
    */
   private void moveAgent(State newState, byte agent, short row, short col) {
+    this.levelInfo.setCellObject(newState.agentRows[agent], newState.agentCols[agent], 0);
+    this.levelInfo.setCellObject(row, col, agent + 1);
     newState.agentRows[agent] = row;
     newState.agentCols[agent] = col;
   }
 
   /**
-   * Applies the actions in jointAction which are applicable to the latest state
-   * and returns the resulting state.
+   * Records the move of an object (a box id, or -(agent + 1) for agents) in the
+   * history, if the history is kept.
    */
-  State apply(Action[] jointAction, boolean[] applicable, long actionTime) {
-    State currentState = this.states[this.numStates - 1];
-    State newState = new State(currentState);
-    newState.time++;
+  private void recordMove(int object, short row, short col) {
+    if (this.allowDiscardingPastStates) {
+      return;
+    }
+    if (this.moveObjects.length == this.numMoves) {
+      this.moveObjects = Arrays.copyOf(this.moveObjects, this.moveObjects.length * 2);
+      this.moveCells = Arrays.copyOf(this.moveCells, this.moveCells.length * 2);
+    }
+    this.moveObjects[this.numMoves] = object;
+    this.moveCells[this.numMoves] = row << 16 | col;
+    ++this.numMoves;
+  }
+
+  /**
+   * Applies the actions in jointAction which are applicable to the latest state,
+   * updating the latest state in place.
+   */
+  void apply(Action[] jointAction, boolean[] applicable, long actionTime) {
+    State state = this.latestState;
+    state.time++;
 
     for (byte agent = 0; agent < jointAction.length; ++agent) {
       if (!applicable[agent]) {
@@ -208,12 +286,15 @@ class StateSequence {
       }
 
       Action action = jointAction[agent];
+      short agentRow = state.agentRows[agent];
+      short agentCol = state.agentCols[agent];
       short newAgentRow;
       short newAgentCol;
       short oldBoxRow;
       short oldBoxCol;
       short newBoxRow;
       short newBoxCol;
+      int boxId;
 
       switch (action.type) {
         case NoOp:
@@ -221,56 +302,65 @@ class StateSequence {
           break;
 
         case Move:
-          newAgentRow = (short) (currentState.agentRows[agent] + action.moveDeltaRow);
-          newAgentCol = (short) (currentState.agentCols[agent] + action.moveDeltaCol);
-          this.moveAgent(newState, agent, newAgentRow, newAgentCol);
+          newAgentRow = (short) (agentRow + action.moveDeltaRow);
+          newAgentCol = (short) (agentCol + action.moveDeltaCol);
+          this.moveAgent(state, agent, newAgentRow, newAgentCol);
+          this.recordMove(-agent - 1, newAgentRow, newAgentCol);
           break;
 
         case Push:
-          newAgentRow = (short) (currentState.agentRows[agent] + action.boxDeltaRow);
-          newAgentCol = (short) (currentState.agentCols[agent] + action.boxDeltaCol);
+          newAgentRow = (short) (agentRow + action.boxDeltaRow);
+          newAgentCol = (short) (agentCol + action.boxDeltaCol);
           oldBoxRow = newAgentRow;
           oldBoxCol = newAgentCol;
           newBoxRow = (short) (oldBoxRow + action.moveDeltaRow);
           newBoxCol = (short) (oldBoxCol + action.moveDeltaCol);
-          this.moveBox(newState, oldBoxRow, oldBoxCol, newBoxRow, newBoxCol);
-          this.moveAgent(newState, agent, newAgentRow, newAgentCol);
+          boxId = this.moveBox(state, oldBoxRow, oldBoxCol, newBoxRow, newBoxCol);
+          this.moveAgent(state, agent, newAgentRow, newAgentCol);
+          this.recordMove(boxId, newBoxRow, newBoxCol);
+          this.recordMove(-agent - 1, newAgentRow, newAgentCol);
           break;
 
         case Pull:
-          newAgentRow = (short) (currentState.agentRows[agent] + action.moveDeltaRow);
-          newAgentCol = (short) (currentState.agentCols[agent] + action.moveDeltaCol);
-          oldBoxRow = (short) (currentState.agentRows[agent] - action.boxDeltaRow);
-          oldBoxCol = (short) (currentState.agentCols[agent] - action.boxDeltaCol);
-          newBoxRow = currentState.agentRows[agent];
-          newBoxCol = currentState.agentCols[agent];
-          this.moveAgent(newState, agent, newAgentRow, newAgentCol);
-          this.moveBox(newState, oldBoxRow, oldBoxCol, newBoxRow, newBoxCol);
+          newAgentRow = (short) (agentRow + action.moveDeltaRow);
+          newAgentCol = (short) (agentCol + action.moveDeltaCol);
+          oldBoxRow = (short) (agentRow - action.boxDeltaRow);
+          oldBoxCol = (short) (agentCol - action.boxDeltaCol);
+          newBoxRow = agentRow;
+          newBoxCol = agentCol;
+          this.moveAgent(state, agent, newAgentRow, newAgentCol);
+          boxId = this.moveBox(state, oldBoxRow, oldBoxCol, newBoxRow, newBoxCol);
+          this.recordMove(-agent - 1, newAgentRow, newAgentCol);
+          this.recordMove(boxId, newBoxRow, newBoxCol);
           break;
       }
     }
 
-    // Update this.states and this.numStates. Grow as necessary.
+    // Update the history and this.numStates. Grow as necessary.
     if (this.allowDiscardingPastStates) {
-      this.states[0] = newState;
       this.stateTimes[0] = actionTime;
       // NB. This change will not be visible to other threads; if we needed that we
-      // could set
-      // numStates = 1.
+      // could set numStates = 1.
     } else {
-      if (this.states.length == this.numStates) {
-        this.states = Arrays.copyOf(this.states, this.states.length * 2);
+      int newState = this.numStates;
+      if (this.stateTimes.length == newState) {
+        this.moveEnds = Arrays.copyOf(this.moveEnds, this.moveEnds.length * 2);
         this.stateTimes = Arrays.copyOf(this.stateTimes, this.stateTimes.length * 2);
       }
-      this.states[this.numStates] = newState;
-      this.stateTimes[this.numStates] = actionTime;
+      this.moveEnds[newState] = this.numMoves;
+      this.stateTimes[newState] = actionTime;
+      if (newState % KEYFRAME_INTERVAL == 0) {
+        int keyframe = newState / KEYFRAME_INTERVAL;
+        if (this.keyframes.length == keyframe) {
+          this.keyframes = Arrays.copyOf(this.keyframes, this.keyframes.length * 2);
+        }
+        this.keyframes[keyframe] = new State(state);
+      }
 
       // Non-atomic increment OK, only the protocol thread may write to numStates.
       // NB. This causes visibility of the new state to other threads.
       // noinspection NonAtomicOperationOnVolatileField
       ++this.numStates;
     }
-
-    return newState;
   }
 }
@@ -15,9 +15,12 @@
  */
 package dk.dtu.compute.mavis.server;
 
+import dk.dtu.compute.mavis.client.Client;
 import dk.dtu.compute.mavis.domain.Domain;
+import dk.dtu.compute.mavis.domain.ParseException;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -36,10 +39,11 @@ public class ArgumentParser {
    * Input and Output modes.
    * <p>
    * Valid combinations are: CLIENT + FILE + {NONE, GUI, LOG, BOTH} CLIENT +
-   * DIRECTORY + {NONE, LOG} REPLAY + {NONE, GUI} In total 8 combinations.
+   * DIRECTORY + {NONE, LOG} REPLAY + {NONE, GUI} TOURNAMENT + LOG In total 9
+   * combinations.
    */
   public enum ServerInputMode {
-    NONE, CLIENT, REPLAY
+    NONE, CLIENT, REPLAY, TOURNAMENT
   }
 
   public enum ClientInputMode {
@@ -60,13 +64,27 @@ public class ArgumentParser {
   private String clientCommand = null;
   private Path levelPath = null;
   private int timeoutSeconds = 0;
+  private boolean cpuTimeout = false;
+  private int sampleIntervalMS = 100;
+  private boolean inProcess = false;
   private Path logFilePath = null;
+  private boolean binaryReplays = false;
+  private int parallelLevels = 1;
   private Path constraintsPath = null;
 
+  /**
+   * Tournament options.
+   */
+  private Path tournamentPath = null;
+  private Tournament tournament = null;
+  private int pinnedCores = 0;
+
   /**
    * Replay options.
    */
   private Path[] replayFilePaths = null;
+  private String[] replayEntryPatterns = null;
+  private Boolean replaySolvedFilter = null;
 
   /**
    * GUI options.
@@ -208,6 +226,103 @@ public class ArgumentParser {
           }
           break;
 
+        case "--cpu-timeout":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --cpu-timeout argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+          this.cpuTimeout = true;
+          break;
+
+        case "--sample-interval":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --sample-interval argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+
+          ++i;
+          if (i >= args.length) {
+            throw new ArgumentException("Expected another argument after --sample-interval.");
+          }
+          try {
+            this.sampleIntervalMS = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            throw new ArgumentException("The argument after --sample-interval must be an integer.");
+          }
+          if (this.sampleIntervalMS <= 0) {
+            throw new ArgumentException("The argument after --sample-interval must be positive.");
+          }
+          break;
+
+        case "--in-process":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --in-process argument with -r.");
+          }
+          String inProcessUnsupportedReason = Client.getInProcessUnsupportedReason();
+          if (inProcessUnsupportedReason != null) {
+            throw new ArgumentException(inProcessUnsupportedReason);
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+          this.inProcess = true;
+          break;
+
+        case "--parallel":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --parallel argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+
+          ++i;
+          if (i >= args.length) {
+            throw new ArgumentException("Expected another argument after --parallel.");
+          }
+          try {
+            this.parallelLevels = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            throw new ArgumentException("The argument after --parallel must be an integer.");
+          }
+          if (this.parallelLevels <= 0) {
+            throw new ArgumentException("The argument after --parallel must be positive.");
+          }
+          break;
+
+        case "--tournament":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --tournament argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+
+          ++i;
+          if (i >= args.length) {
+            throw new ArgumentException("Expected another argument after --tournament.");
+          }
+          this.tournamentPath = Path.of(args[i]);
+          if (!Files.isRegularFile(this.tournamentPath) || !Files.isReadable(this.tournamentPath)) {
+            throw new ArgumentException(
+                "The tournament file may not exist, or has insufficient access.");
+          }
+          break;
+
+        case "--pin-cores":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use --pin-cores argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+
+          ++i;
+          if (i >= args.length) {
+            throw new ArgumentException("Expected another argument after --pin-cores.");
+          }
+          try {
+            this.pinnedCores = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            throw new ArgumentException("The argument after --pin-cores must be an integer.");
+          }
+          if (this.pinnedCores <= 0) {
+            throw new ArgumentException("The argument after --pin-cores must be positive.");
+          }
+          break;
+
         case "-o":
           if (this.serverInputMode == ServerInputMode.REPLAY) {
             throw new ArgumentException("Can not use -o argument with -r.");
@@ -235,10 +350,18 @@ public class ArgumentParser {
           }
           break;
 
+        case "-b":
+          if (this.serverInputMode == ServerInputMode.REPLAY) {
+            throw new ArgumentException("Can not use -b argument with -r.");
+          }
+          this.serverInputMode = ServerInputMode.CLIENT;
+          this.binaryReplays = true;
+          break;
+
         // Replay options.
         case "-r":
           if (this.serverInputMode == ServerInputMode.CLIENT) {
-            throw new ArgumentException("Can not use -r argument with -c, -l, -t, or -o.");
+            throw new ArgumentException("Can not use -r argument with -c, -l, -t, -o, or -b.");
           }
           this.serverInputMode = ServerInputMode.REPLAY;
 
@@ -255,6 +378,37 @@ public class ArgumentParser {
           this.replayFilePaths = replayFilePaths.toArray(new Path[0]);
           break;
 
+        case "-e":
+          ArrayList<String> replayEntryPatterns = new ArrayList<>(8);
+          ++i;
+          while (i < args.length) {
+            if (args[i].charAt(0) == '-') {
+              break;
+            }
+            replayEntryPatterns.add(args[i]);
+            ++i;
+          }
+          --i;
+          if (replayEntryPatterns.isEmpty()) {
+            throw new ArgumentException("Expected another argument after -e.");
+          }
+          this.replayEntryPatterns = replayEntryPatterns.toArray(new String[0]);
+          break;
+
+        case "-S":
+          ++i;
+          if (i >= args.length) {
+            throw new ArgumentException("Expected another argument after -S.");
+          }
+          if (args[i].equals("solved")) {
+            this.replaySolvedFilter = true;
+          } else if (args[i].equals("unsolved")) {
+            this.replaySolvedFilter = false;
+          } else {
+            throw new ArgumentException("The argument after -S must be solved or unsolved.");
+          }
+          break;
+
         case "-C":
           ++i;
           if (i >= args.length) {
@@ -274,6 +428,66 @@ public class ArgumentParser {
       ++i;
     }
 
+    if (this.replayEntryPatterns != null && this.serverInputMode != ServerInputMode.REPLAY) {
+      throw new ArgumentException("Can only use -e argument with -r.");
+    }
+    if (this.replaySolvedFilter != null && this.serverInputMode != ServerInputMode.REPLAY) {
+      throw new ArgumentException("Can only use -S argument with -r.");
+    }
+
+    if (this.cpuTimeout && this.timeoutSeconds == 0) {
+      throw new ArgumentException("Can only use --cpu-timeout argument with -t.");
+    }
+
+    if (this.binaryReplays) {
+      if (!this.hasLogOutput()) {
+        throw new ArgumentException("Can only use -b argument with -o.");
+      }
+      if (this.clientInputMode == ClientInputMode.FILE
+          && !Files.notExists(this.getReplayFilePath())) {
+        throw new ArgumentException(
+            "The binary replay file may already exist, or has insufficient access.");
+      }
+    }
+
+    if (this.tournamentPath != null) {
+      if (this.clientCommand != null || this.levelPath != null) {
+        throw new ArgumentException("Can not use --tournament argument with -c or -l.");
+      }
+      if (!this.hasLogOutput()) {
+        throw new ArgumentException("Can only use --tournament argument with -o.");
+      }
+      if (this.hasGUIOutput()) {
+        throw new ArgumentException("GUI is not supported when running a tournament.");
+      }
+      try {
+        this.tournament = Tournament.read(this.tournamentPath);
+      } catch (ParseException | IOException e) {
+        throw new ArgumentException("Could not read tournament file: " + e.getMessage());
+      }
+      this.serverInputMode = ServerInputMode.TOURNAMENT;
+    }
+
+    if (this.pinnedCores > 0) {
+      if (this.serverInputMode != ServerInputMode.TOURNAMENT) {
+        throw new ArgumentException("Can only use --pin-cores argument with --tournament.");
+      }
+      if (this.inProcess) {
+        throw new ArgumentException("Can not use --pin-cores argument with --in-process.");
+      }
+      try {
+        Tournament.getCoreSlots(this.parallelLevels, this.pinnedCores);
+      } catch (IOException e) {
+        throw new ArgumentException("Can not pin clients to cores. " + e.getMessage());
+      }
+    }
+
+    if (this.parallelLevels > 1 && this.clientInputMode != ClientInputMode.DIRECTORY
+        && this.serverInputMode != ServerInputMode.TOURNAMENT) {
+      throw new ArgumentException(
+          "Can only use --parallel argument with a directory of levels or --tournament.");
+    }
+
     // No GUI support for client with directory of levels.
     if (this.serverInputMode == ServerInputMode.CLIENT
         && this.clientInputMode == ClientInputMode.DIRECTORY
@@ -328,10 +542,72 @@ public class ArgumentParser {
     return this.timeoutSeconds;
   }
 
+  /**
+   * True if the timeout applies to the CPU time of the client instead of its wall
+   * time.
+   */
+  public boolean getCpuTimeout() {
+    return this.cpuTimeout;
+  }
+
+  /**
+   * The interval in milliseconds between samples of the resource usage of the
+   * client.
+   */
+  public int getSampleIntervalMS() {
+    return this.sampleIntervalMS;
+  }
+
+  /**
+   * True if the clients are Java clients to run in the server process instead of
+   * as separate processes.
+   */
+  public boolean getInProcess() {
+    return this.inProcess;
+  }
+
   public Path getLogFilePath() {
     return this.logFilePath;
   }
 
+  /**
+   * The number of levels of a directory of levels to run clients on at once.
+   */
+  public int getParallelLevels() {
+    return this.parallelLevels;
+  }
+
+  /**
+   * Tournament options.
+   */
+  Tournament getTournament() {
+    return this.tournament;
+  }
+
+  /**
+   * The number of cores to pin each client of a tournament to, or 0 to not pin
+   * clients.
+   */
+  public int getPinnedCores() {
+    return this.pinnedCores;
+  }
+
+  public boolean getBinaryReplays() {
+    return this.binaryReplays;
+  }
+
+  /**
+   * The path of the binary replay written next to the log file of a single level,
+   * which replaces the .log extension of the log file with .replay.
+   */
+  public Path getReplayFilePath() {
+    String logFileName = this.logFilePath.getFileName().toString();
+    if (logFileName.endsWith(".log")) {
+      logFileName = logFileName.substring(0, logFileName.length() - 4);
+    }
+    return this.logFilePath.resolveSibling(logFileName + ".replay");
+  }
+
   /**
    * Replay options.
    */
@@ -339,6 +615,22 @@ public class ArgumentParser {
     return this.replayFilePaths;
   }
 
+  /**
+   * Glob patterns for the names of the log archive entries to replay, or null to
+   * replay all entries.
+   */
+  public String[] getReplayEntryPatterns() {
+    return this.replayEntryPatterns;
+  }
+
+  /**
+   * True to only replay solved levels, false to only replay unsolved levels, or
+   * null to replay all levels.
+   */
+  public Boolean getReplaySolvedFilter() {
+    return this.replaySolvedFilter;
+  }
+
   /**
    * GUI options.
    */
@@ -387,11 +679,17 @@ public class ArgumentParser {
         + "Omitting the -h argument shows this abbreviated description.\n"
         + "Providing the -h argument shows a detailed description.\n" + "\n"
         + "Run a client on a level or a directory of levels, optionally output to GUI and/or log file:\n"
-        + "    java -jar %1$s -c <client-cmd> -l <level-file-or-dir-path> [-t <seconds>]\n"
+        + "    java -jar %1$s -c <client-cmd> -l <level-file-or-dir-path> [-t <seconds> [--cpu-timeout]]\n"
         + "              %2$s [-g [<screen>] [-s <ms-per-action>] [-p] [-f] [-i]]\n"
-        + "              %2$s [-o <log-file-path>] [-C <constriants-file>]\n" + "\n"
+        + "              %2$s [-o <log-file-path> [-b]] [-C <constriants-file>] [--parallel <n>]\n"
+        + "              %2$s [--sample-interval <ms>] [--in-process]\n" + "\n"
+        + "Run several clients on several levels as a tournament, output to log archive:\n"
+        + "    java -jar %1$s --tournament <tournament-file> -o <log-file-path> [-b] [-t <seconds> [--cpu-timeout]]\n"
+        + "              %2$s [-C <constraints-file>] [--sample-interval <ms>] [--parallel <n> [--pin-cores <k>]]\n"
+        + "              %2$s [--in-process]\n" + "\n"
         + "Replay one or more log files, optionally output to synchronized GUIs:\n"
         + "    java -jar %1$s -r <log-file-path> [<log-file-path> ...] [-C <constraints-file>]\n"
+        + "              %2$s [-e <entry-pattern> [<entry-pattern> ...]] [-S solved|unsolved]\n"
         + "              %2$s [-g [<screen> ...] [-s <ms-per-action>] [-p] [-f] [-i]]";
     var jarName = getJarName();
     var jarNameSpacePadding = " ".repeat(jarName.length());
@@ -406,10 +704,10 @@ public class ArgumentParser {
         + "Omitting the -h argument shows an abbreviated description.\n"
         + "Providing the -h argument shows this detailed description.\n" + "\n"
         + "Run a client on a level or a directory of levels, optionally output to GUI and/or log file:\n"
-        + "    java -jar %1$s -c <client-cmd> -l <level-file-or-dir-path> [-t <seconds>]\n"
+        + "    java -jar %1$s -c <client-cmd> -l <level-file-or-dir-path> [-t <seconds> [--cpu-timeout]]\n"
         + "              %2$s [-g [<screen>] [-s <ms-per-action>] [-p] [-f] [-i]]\n"
-        + "              %2$s [-o <log-file-path>]\n" + "Where the arguments are as follows:\n"
-        + "    -c <client-cmd>\n"
+        + "              %2$s [-o <log-file-path> [-b]] [--parallel <n>] [--sample-interval <ms>] [--in-process]\n"
+        + "Where the arguments are as follows:\n" + "    -c <client-cmd>\n"
         + "        Specifies the command the server will use to start the client process, including all client arguments.\n"
         + "        The <client-cmd> string will be naïvely tokenized by splitting on whitespace, and\n"
         + "        then passed to your OS native process API through Java's ProcessBuilder.\n"
@@ -419,6 +717,27 @@ public class ArgumentParser {
         + "        Optional. Specifies a timeout in seconds for the client.\n"
         + "        The server will terminate the client after this timeout.\n"
         + "        If this argument is not given, the server will never time the client out.\n"
+        + "    --cpu-timeout\n"
+        + "        Optional. Applies the -t timeout to the CPU time (user + system) of the client and its subprocesses,\n"
+        + "        instead of the wall time, so the timeout does not depend on the load of the machine.\n"
+        + "        A client which uses no CPU time, e.g. because it is blocked, still times out after 10 times the timeout.\n"
+        + "        The CPU time of the client is always measured, and is written to the log file and summary.\n"
+        + "    --sample-interval <ms>\n"
+        + "        Optional. Sets the interval between samples of the CPU time, memory and threads of the client and its\n"
+        + "        subprocesses, which are written to the log file. The peak memory, CPU usage and number of threads are\n"
+        + "        written to the summary. By default the interval is 100 ms. NB: The CPU time is counted in 10 ms ticks,\n"
+        + "        so the CPU usage of short intervals is imprecise. Memory and threads are only sampled on Linux.\n"
+        + "    --in-process\n"
+        + "        Optional. Runs a Java client in the server process, which avoids starting a JVM for every level.\n"
+        + "        The <client-cmd> must be a java command with a class path and main class, or -jar, e.g.\n"
+        + "        \"java -cp alice searchclient.SearchClient\" or \"java -jar alice.jar\". Other JVM options are ignored.\n"
+        + "        The main class is loaded in its own class loader for every level, and System.in and System.out of\n"
+        + "        the client threads are connected to the server through in-memory pipes.\n"
+        + "        NB: The client may not replace System.in or System.out. The memory of the client is not sampled.\n"
+        + "        Only supported on Java 11 to 19, and on Java 18 and 19 only if the server is started with\n"
+        + "        -Djava.security.manager=allow. System.exit() of a client is intercepted by a security manager, and\n"
+        + "        the threads of a client which do not respond to interrupts are stopped with Thread.stop(), which\n"
+        + "        newer versions of Java do not support. The server refuses --in-process on those versions.\n"
         + "    -g [<screen>]\n" + "        Optional. Enables GUI output.\n"
         + "        The optional <screen> argument specifies which screen to start the GUI on.\n"
         + "        See notes on <screen> below for an explanation of the valid values.\n"
@@ -436,14 +755,56 @@ public class ArgumentParser {
         + "        If the -l argument is a level directory path, then logs for the client run on all levels in the\n"
         + "        level directory are compressed as a zip file written to the given log file path.\n"
         + "        NB: The log file may *not* already exist (the server does not allow overwriting files).\n"
+        + "    -b\n"
+        + "        Optional. Also writes a binary replay of the client run, which can be replayed like a log file.\n"
+        + "        A binary replay opens instantly and can seek to any state quickly, also for very long runs.\n"
+        + "        If the -l argument is a level file path, then the binary replay is written next to the log file,\n"
+        + "        with the .log extension replaced by .replay (which may *not* already exist).\n"
+        + "        If the -l argument is a level directory path, then the binary replays are added to the log archive.\n"
         + "    -C  <constraints-file>\n"
         + "        Optional. Specifies the constraint definition file. The file must be in CLD format.\n"
         + "        If not defined, default (with vertex and following conflict definitions) is used.\n"
+        + "    --parallel <n>\n"
+        + "        Optional. Runs up to <n> client processes at once on the levels of a level directory.\n"
+        + "        The logs are written in the order of the level file names, as in a run without this argument.\n"
+        + "        NB: Concurrent clients share the CPU cores, which may slow them down compared to a sequential run.\n"
+        + "Run several clients on several levels as a tournament, output to log archive:\n"
+        + "    java -jar %1$s --tournament <tournament-file> -o <log-file-path> [-b] [-t <seconds> [--cpu-timeout]]\n"
+        + "              %2$s [-C <constraints-file>] [--sample-interval <ms>] [--parallel <n> [--pin-cores <k>]]\n"
+        + "              %2$s [--in-process]\n" + "Where the arguments are as follows:\n"
+        + "    --tournament <tournament-file>\n"
+        + "        Specifies the clients and levels of the tournament. Every client is run on every level.\n"
+        + "        The file has a #clients section with a line \"<client-name>: <client-cmd>\" for each client,\n"
+        + "        followed by a #levels section with a line for each level file or directory of level files.\n"
+        + "    -o <log-file-path>\n"
+        + "        Writes the logs of the tournament as a zip file to the given log file path (which may *not* already exist).\n"
+        + "        The log of a client on a level is written as <client-name>/<level-name>.log, and the results are\n"
+        + "        written as a matrix with a row for each level and columns for each client in results.csv.\n"
+        + "        The columns of a client are whether it solved the level, its actions, its time and CPU time in seconds,\n"
+        + "        its peak memory in MB and its peak CPU usage in cores.\n"
+        + "    -b, -t <seconds>, --cpu-timeout, -C <constraints-file>, --sample-interval <ms>, --in-process\n"
+        + "        Optional. As when running a client on a directory of levels.\n"
+        + "    --parallel <n>\n" + "        Optional. Runs up to <n> client processes at once.\n"
+        + "    --pin-cores <k>\n"
+        + "        Optional. Pins each of the <n> concurrent client processes to its own <k> cores, so concurrent runs\n"
+        + "        do not compete for cores. The <n> * <k> cores must be available to the server.\n"
+        + "        Only supported on Linux, where the clients are started through taskset, which must be installed.\n"
         + "Replay one or more log files, optionally output to synchronized GUIs:\n"
         + "    java -jar %1$s -r <log-file-path> [<log-file-path> ...]\n"
+        + "              %2$s [-e <entry-pattern> [<entry-pattern> ...]] [-S solved|unsolved]\n"
         + "              %2$s [-g [<screen> ...] [-s <ms-per-action>] [-p] [-f] [-i]]\n"
         + "Where the arguments are as follows:\n" + "    -r <log-file-path> [<log-file-path> ...]\n"
-        + "        Specifies one or more log files to replay.\n" + "    -g [<screen> ...]\n"
+        + "        Specifies one or more log files or binary replays to replay.\n"
+        + "        A log archive (.zip) written for a directory of levels replays all its log entries.\n"
+        + "        If the archive has a binary replay of a level, it is replayed instead of the log of the level.\n"
+        + "        The replays are loaded in parallel.\n"
+        + "    -e <entry-pattern> [<entry-pattern> ...]\n"
+        + "        Optional. Only replays the log archive entries whose paths match one of the glob patterns, e.g. \"MA*\",\n"
+        + "        or \"alice/MA*\" for the logs of the client alice in a tournament archive.\n"
+        + "    -S solved|unsolved\n"
+        + "        Optional. Only replays the log files which solve, or do not solve, their level.\n"
+        + "        The log files are then loaded completely before the GUI starts.\n"
+        + "    -g [<screen> ...]\n"
         + "        Optional. Enables GUI output. The playback of the replays are synchronized.\n"
         + "        The optional <screen> arguments specify which screen to start the GUI on for each log file.\n"
         + "        See notes on <screen> below for an explanation of the valid values.\n"
@@ -501,14 +862,25 @@ public class ArgumentParser {
         + "    java -jar %1$s -c \"java ExampleClient\" -l \"levels\"\n" + "\n"
         + "    # Client on a directory of levels, output to log archive.\n"
         + "    java -jar %1$s -c \"java ExampleClient\" -l \"levels\" -o \"logs.zip\"\n" + "\n"
-        + "Replay example invocations:\n" + "    # Replay a single log file, no output.\n"
+        + "    # Client on a directory of levels, four levels at a time, output to log archive.\n"
+        + "    java -jar %1$s -c \"java ExampleClient\" -l \"levels\" -o \"logs.zip\" --parallel 4\n"
+        + "\n"
+        + "    # Java client on a directory of levels, run in the server process, output to log archive.\n"
+        + "    java -jar %1$s -c \"java -cp client ExampleClient\" -l \"levels\" -o \"logs.zip\" --in-process\n"
+        + "\n"
+        + "    # Tournament of the clients and levels in a tournament file, four runs at a time on two cores each.\n"
+        + "    java -jar %1$s --tournament \"tournament.txt\" -o \"tournament.zip\" -t 180 --parallel 4 --pin-cores 2\n"
+        + "\n" + "Replay example invocations:\n" + "    # Replay a single log file, no output.\n"
         + "    java -jar %1$s -r \"logs/example.log\"\n" + "\n"
         + "    # Replay a single log file, output to GUI on default screen.\n"
         + "    java -jar %1$s -r \"logs/example.log\" -g\n" + "\n"
         + "    # Replay two log files, output to synchronized GUIs on screen 0 and 1.\n"
         + "    # Start the GUIs paused, in fullscreen mode and with hidden interface elements to avoid spoilers.\n"
         + "    # Play back actions at a speed of one action every 500 milliseconds.\n"
-        + "    java -jar %1$s -r \"logs/example1.log\" \"logs/example2.log\" -g 0 1 -p -f -i -s 500";
+        + "    java -jar %1$s -r \"logs/example1.log\" \"logs/example2.log\" -g 0 1 -p -f -i -s 500\n"
+        + "\n"
+        + "    # Replay the unsolved multi-agent levels of a log archive, output to GUI on default screen.\n"
+        + "    java -jar %1$s -r \"logs.zip\" -e \"MA*\" -S unsolved -g";
     var jarName = getJarName();
     var jarNameSpacePadding = " ".repeat(jarName.length());
     var supportedDomains = String.join("\n    ", Domain.getSupportedDomains());
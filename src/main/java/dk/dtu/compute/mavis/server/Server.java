@@ -26,17 +26,31 @@ import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -88,6 +102,9 @@ public class Server {
       case REPLAY:
         Server.runReplays(arguments);
         break;
+      case TOURNAMENT:
+        Server.runTournament(arguments);
+        break;
     }
 
     Server.printDebug("Thread shut down.");
@@ -140,13 +157,17 @@ public class Server {
     } else {
       logFileStream = OutputStream.nullOutputStream();
     }
+    if (args.getBinaryReplays()) {
+      domain.recordReplay();
+    }
 
     // Load and start client.
     Client client;
-    Timeout timeout = new Timeout();
+    Timeout timeout = new Timeout(args.getCpuTimeout());
     try {
       long timeoutNS = args.getTimeoutSeconds() * 1_000_000_000L;
-      client = new Client(domain, args.getClientCommand(), logFileStream, true, timeout, timeoutNS);
+      client = new Client(domain, args.getClientCommand(), logFileStream, true, timeout, timeoutNS,
+          args.getSampleIntervalMS(), args.getInProcess());
     } catch (Exception e) {
       Server.printError("Could not start client process.");
       Server.printError(e.getMessage());
@@ -180,61 +201,74 @@ public class Server {
 
     // Wait for client to shut down (if it hasn't already while GUI ran).
     client.waitShutdown();
+
+    // Write binary replay.
+    if (args.getBinaryReplays()) {
+      try (OutputStream replayFileStream = Files.newOutputStream(args.getReplayFilePath(),
+          StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        domain.writeReplay(replayFileStream);
+      } catch (IOException e) {
+        Server.printError("Could not write binary replay file: " + args.getReplayFilePath());
+        Server.printError(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns true for the level files of a directory of levels.
+   */
+  static boolean isLevelFile(Path entry) {
+    return Files.isReadable(entry) && Files.isRegularFile(entry)
+        && entry.getFileName().toString().endsWith(".lvl")
+        && entry.getFileName().toString().length() > 4;
   }
 
   private static void runClientOnLevelDirectory(ArgumentParser args) {
-    var levelFileFilter = new DirectoryStream.Filter<Path>() {
-      @Override
-      public boolean accept(Path entry) {
-        return Files.isReadable(entry) && Files.isRegularFile(entry)
-            && entry.getFileName().toString().endsWith(".lvl")
-            && entry.getFileName().toString().length() > 4;
-      }
-    };
+    // Levels are run in the order of their file names, so sequential and parallel
+    // runs write the same log file.
+    ArrayList<Path> levelPaths = new ArrayList<>();
+    try (var levelDirectory = Files.newDirectoryStream(args.getLevelPath(), Server::isLevelFile)) {
+      levelDirectory.forEach(levelPaths::add);
+    } catch (IOException e) {
+      Server.printError("Could not open levels directory.");
+      Server.printError(e.getMessage());
+      return;
+    }
+    levelPaths.sort(Comparator.comparing(levelPath -> levelPath.getFileName().toString()));
 
-    try (var levelDirectory = Files.newDirectoryStream(args.getLevelPath(), levelFileFilter)) {
-      // Open log file.
-      OutputStream logFileStream;
-      ZipOutputStream logZipStream;
-      if (args.hasLogOutput()) {
-        try {
-          logZipStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(
-              args.getLogFilePath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
-          logFileStream = logZipStream;
-        } catch (IOException e) {
-          Server.printError("Could not create log file: " + args.getLogFilePath());
-          Server.printError(e.getMessage());
-          return;
-        }
-      } else {
-        logFileStream = OutputStream.nullOutputStream();
-        logZipStream = new ZipOutputStream(logFileStream);
+    // Open log file.
+    OutputStream logFileStream;
+    ZipOutputStream logZipStream;
+    if (args.hasLogOutput()) {
+      try {
+        logZipStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(
+            args.getLogFilePath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        logFileStream = logZipStream;
+      } catch (IOException e) {
+        Server.printError("Could not create log file: " + args.getLogFilePath());
+        Server.printError(e.getMessage());
+        return;
       }
+    } else {
+      logFileStream = OutputStream.nullOutputStream();
+      logZipStream = new ZipOutputStream(logFileStream);
+    }
 
-      ArrayList<String> levelNames = new ArrayList<>();
-      ArrayList<String[]> levelStatus = new ArrayList<>();
+    ArrayList<String> levelNames = new ArrayList<>();
+    ArrayList<String[]> levelStatus = new ArrayList<>();
 
-      for (Path levelPath : levelDirectory) {
+    if (args.getParallelLevels() > 1) {
+      runClientOnLevelsInParallel(args, levelPaths, logZipStream, levelNames, levelStatus);
+    } else {
+      for (Path levelPath : levelPaths) {
         Server.printInfo(String.format("Running client on level file: %s", levelPath.toString()));
 
         // Load domain.
-        Domain domain;
-        try {
-          Server.printDebug("Loading domain.");
-          domain = Domain.loadLevel(levelPath, args.getConstraintsPath());
-        } catch (ParseException e) {
-          Server.printError("Could not load domain, failed to parse level file.");
-          Server.printError(e.getMessage());
-          continue;
-        } catch (IOException e) {
-          Server.printError("IOException while loading domain.");
-          e.printStackTrace();
+        Domain domain = loadDirectoryLevel(args, levelPath);
+        if (domain == null) {
           continue;
         }
 
-        // Never run with GUI, always discard states.
-        domain.allowDiscardingPastStates();
-
         // Prepare next log entry.
         String levelFileName = levelPath.getFileName().toString();
         String logEntryName = levelFileName.substring(0, levelFileName.length() - 4) + ".log";
@@ -248,11 +282,11 @@ public class Server {
 
         // Load and start client.
         Client client;
-        Timeout timeout = new Timeout();
+        Timeout timeout = new Timeout(args.getCpuTimeout());
         try {
           long timeoutNS = args.getTimeoutSeconds() * 1_000_000_000L;
-          client =
-              new Client(domain, args.getClientCommand(), logFileStream, false, timeout, timeoutNS);
+          client = new Client(domain, args.getClientCommand(), logFileStream, false, timeout,
+              timeoutNS, args.getSampleIntervalMS(), args.getInProcess());
         } catch (Exception e) {
           Server.printError("Could not start client process.");
           Server.printError(e.getMessage());
@@ -265,6 +299,19 @@ public class Server {
         // Wait for client to shut down.
         client.waitShutdown();
 
+        // Add binary replay to the log file.
+        if (args.getBinaryReplays()) {
+          String replayEntryName =
+              levelFileName.substring(0, levelFileName.length() - 4) + ".replay";
+          try {
+            logZipStream.putNextEntry(new ZipEntry(replayEntryName));
+            domain.writeReplay(logFileStream);
+          } catch (IOException e) {
+            Server.printError("Could not write binary replay entry for level.");
+            Server.printError(e.getMessage());
+          }
+        }
+
         // Aggregate level summaries.
         levelNames.add(domain.getLevelName());
         levelStatus.add(domain.getStatus());
@@ -275,81 +322,582 @@ public class Server {
         client = null;
         System.gc();
       }
+    }
 
-      // Write summary to log file.
-      try {
-        logZipStream.putNextEntry(new ZipEntry("summary.txt"));
-        BufferedWriter logWriter = new BufferedWriter(
-            new OutputStreamWriter(logFileStream, StandardCharsets.US_ASCII.newEncoder()));
-        for (int i = 0; i < levelNames.size(); ++i) {
-          logWriter.write("Level name: ");
-          logWriter.write(levelNames.get(i));
-          logWriter.newLine();
-          for (String statusLine : levelStatus.get(i)) {
-            logWriter.write(statusLine);
-            logWriter.newLine();
-          }
+    // Write summary to log file.
+    try {
+      logZipStream.putNextEntry(new ZipEntry("summary.txt"));
+      BufferedWriter logWriter = new BufferedWriter(
+          new OutputStreamWriter(logFileStream, StandardCharsets.US_ASCII.newEncoder()));
+      for (int i = 0; i < levelNames.size(); ++i) {
+        logWriter.write("Level name: ");
+        logWriter.write(levelNames.get(i));
+        logWriter.newLine();
+        for (String statusLine : levelStatus.get(i)) {
+          logWriter.write(statusLine);
           logWriter.newLine();
-          logWriter.flush();
         }
+        logWriter.newLine();
+        logWriter.flush();
+      }
+    } catch (IOException e) {
+      Server.printError("Could not write summary to log file.");
+      Server.printError(e.getMessage());
+    }
+
+    // Close log file.
+    try {
+      logZipStream.close();
+    } catch (IOException e) {
+      Server.printError("Could not close log file.");
+      Server.printError(e.getMessage());
+    }
+  }
+
+  /**
+   * Loads the domain of a level in a directory of levels, which is never run with
+   * GUI. Returns null if the level could not be loaded.
+   */
+  private static Domain loadDirectoryLevel(ArgumentParser args, Path levelPath) {
+    Domain domain;
+    try {
+      Server.printDebug("Loading domain.");
+      domain = Domain.loadLevel(levelPath, args.getConstraintsPath());
+    } catch (ParseException e) {
+      Server.printError("Could not load domain, failed to parse level file.");
+      Server.printError(e.getMessage());
+      return null;
+    } catch (IOException e) {
+      Server.printError("IOException while loading domain.");
+      e.printStackTrace();
+      return null;
+    }
+
+    // Never run with GUI, always discard states.
+    domain.allowDiscardingPastStates();
+    if (args.getBinaryReplays()) {
+      domain.recordReplay();
+    }
+    return domain;
+  }
+
+  /**
+   * The result of running a client on a level of a directory of levels in
+   * parallel, with its log entries buffered until they are written in order.
+   */
+  private static class LevelRun {
+    private final String entryName;
+    private Domain domain = null;
+    private boolean clientStarted = false;
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private ByteArrayOutputStream replay = null;
+
+    private LevelRun(Path levelPath) {
+      String levelFileName = levelPath.getFileName().toString();
+      this.entryName = levelFileName.substring(0, levelFileName.length() - 4);
+    }
+  }
+
+  /**
+   * Runs up to args.getParallelLevels() clients at once, each on its own level
+   * with its own Domain and Timeout. The log entries and level summaries are
+   * written in the order of levelPaths, as in a sequential run.
+   */
+  private static void runClientOnLevelsInParallel(ArgumentParser args, List<Path> levelPaths,
+      ZipOutputStream logZipStream, List<String> levelNames, List<String[]> levelStatus) {
+    ExecutorService levelRunner =
+        Executors.newFixedThreadPool(args.getParallelLevels(), Server::newLevelRunnerThread);
+    ArrayList<Future<LevelRun>> levelRuns = new ArrayList<>();
+    for (Path levelPath : levelPaths) {
+      levelRuns.add(levelRunner.submit(() -> {
+        Server.printInfo(String.format("Running client on level file: %s", levelPath.toString()));
+        return runClientOnLevel(args, args.getClientCommand(), levelPath);
+      }));
+    }
+    levelRunner.shutdown();
+
+    forEachInOrder(levelRuns, levelPaths::get, (levelRun, i) -> {
+      if (levelRun == null || !writeLevelRun(logZipStream, levelRun.entryName, levelRun)) {
+        return;
+      }
+
+      // Aggregate level summaries.
+      levelNames.add(levelRun.domain.getLevelName());
+      levelStatus.add(levelRun.domain.getStatus());
+    });
+  }
+
+  /**
+   * Passes the result of each run, and its index, to the consumer in the order of
+   * runs, whatever order the runs complete in. A run which failed is reported,
+   * and passed as null. Each result is released after it is consumed, so only the
+   * results of runs which complete before the runs ahead of them are held.
+   */
+  static <T> void forEachInOrder(List<Future<T>> runs, IntFunction<Path> levelPaths,
+      ObjIntConsumer<T> consumer) {
+    for (int i = 0; i < runs.size(); ++i) {
+      T result = getLevelRun(runs.get(i), levelPaths.apply(i));
+      runs.set(i, null);
+      consumer.accept(result, i);
+    }
+  }
+
+  /**
+   * Writes the buffered log, and the binary replay if any, of a level run as
+   * entries named entryName + ".log" and entryName + ".replay". Returns true if
+   * the client ran, so the level run has a status.
+   */
+  private static boolean writeLevelRun(ZipOutputStream logZipStream, String entryName,
+      LevelRun levelRun) {
+    if (levelRun.domain == null) {
+      return false;
+    }
+
+    try {
+      logZipStream.putNextEntry(new ZipEntry(entryName + ".log"));
+      levelRun.log.writeTo(logZipStream);
+    } catch (IOException e) {
+      Server.printError("Could not write log file entry for level.");
+      Server.printError(e.getMessage());
+      return false;
+    }
+    if (!levelRun.clientStarted) {
+      return false;
+    }
+    if (levelRun.replay != null) {
+      try {
+        logZipStream.putNextEntry(new ZipEntry(entryName + ".replay"));
+        levelRun.replay.writeTo(logZipStream);
+      } catch (IOException e) {
+        Server.printError("Could not write binary replay entry for level.");
+        Server.printError(e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs a client on a level with its own Domain and Timeout, and buffers its
+   * log.
+   */
+  private static LevelRun runClientOnLevel(ArgumentParser args, String clientCommand,
+      Path levelPath) {
+    LevelRun levelRun = new LevelRun(levelPath);
+
+    // Load domain.
+    Domain domain = loadDirectoryLevel(args, levelPath);
+    if (domain == null) {
+      return levelRun;
+    }
+    levelRun.domain = domain;
+
+    // Load and start client.
+    Client client;
+    Timeout timeout = new Timeout(args.getCpuTimeout());
+    try {
+      long timeoutNS = args.getTimeoutSeconds() * 1_000_000_000L;
+      client = new Client(domain, clientCommand, levelRun.log, false, timeout, timeoutNS,
+          args.getSampleIntervalMS(), args.getInProcess());
+    } catch (Exception e) {
+      Server.printError("Could not start client process.");
+      Server.printError(e.getMessage());
+      return levelRun;
+    }
+    levelRun.clientStarted = true;
+
+    // Start client protocol, and wait for client to shut down.
+    client.startProtocol();
+    client.waitShutdown();
+
+    if (args.getBinaryReplays()) {
+      levelRun.replay = new ByteArrayOutputStream();
+      try {
+        domain.writeReplay(levelRun.replay);
       } catch (IOException e) {
-        Server.printError("Could not write summary to log file.");
+        Server.printError("Could not write binary replay entry for level.");
         Server.printError(e.getMessage());
+        levelRun.replay = null;
+      }
+    }
+    return levelRun;
+  }
+
+  /**
+   * Waits for a level run. Prints the exception and returns null if the run
+   * failed unexpectedly.
+   */
+  private static <T> T getLevelRun(Future<T> levelRun, Path levelPath) {
+    while (true) {
+      try {
+        return levelRun.get();
+      } catch (InterruptedException ignored) {
+      } catch (ExecutionException e) {
+        synchronized (System.out) {
+          Server
+              .printError("Unexpected exception while running client on level file: " + levelPath);
+          e.getCause().printStackTrace(System.out);
+        }
+        return null;
       }
+    }
+  }
+
+  private static Thread newLevelRunnerThread(Runnable levelRunner) {
+    return new Thread(levelRunner, "LevelRunnerThread");
+  }
 
-      // Close log file.
+  /**
+   * Runs every client of the tournament on every level, up to
+   * args.getParallelLevels() runs at once. Each concurrent run may be pinned to
+   * its own cores through taskset. The runs are scheduled client by client, so
+   * their buffered logs are written as soon as the runs before them are done.
+   */
+  private static void runTournament(ArgumentParser args) {
+    Tournament tournament = args.getTournament();
+    int numClients = tournament.clientNames.size();
+    int numLevels = tournament.levelPaths.size();
+
+    // Each worker takes a free core slot for a run, and returns it afterwards.
+    int numWorkers = Math.min(args.getParallelLevels(), numClients * numLevels);
+    BlockingQueue<String> freeCoreSlots = null;
+    if (args.getPinnedCores() > 0) {
       try {
-        logZipStream.close();
+        freeCoreSlots = new ArrayBlockingQueue<>(numWorkers, false,
+            Arrays.asList(Tournament.getCoreSlots(numWorkers, args.getPinnedCores())));
       } catch (IOException e) {
-        Server.printError("Could not close log file.");
+        Server.printError("Could not pin clients to cores.");
         Server.printError(e.getMessage());
         return;
       }
+    }
+
+    // Open log file.
+    ZipOutputStream logZipStream;
+    try {
+      logZipStream =
+          new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(args.getLogFilePath(),
+              StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
     } catch (IOException e) {
-      Server.printError("Could not open levels directory.");
+      Server.printError("Could not create log file: " + args.getLogFilePath());
       Server.printError(e.getMessage());
       return;
     }
+
+    ExecutorService levelRunner =
+        Executors.newFixedThreadPool(numWorkers, Server::newLevelRunnerThread);
+    ArrayList<Future<LevelRun>> levelRuns = new ArrayList<>();
+    for (int client = 0; client < numClients; ++client) {
+      String clientName = tournament.clientNames.get(client);
+      String clientCommand = tournament.clientCommands.get(client);
+      for (Path levelPath : tournament.levelPaths) {
+        BlockingQueue<String> coreSlots = freeCoreSlots;
+        levelRuns.add(levelRunner.submit(() -> {
+          Server.printInfo(String.format("Running client %s on level file: %s", clientName,
+              levelPath.toString()));
+          if (coreSlots == null) {
+            return runClientOnLevel(args, clientCommand, levelPath);
+          }
+          String cores = coreSlots.take();
+          try {
+            return runClientOnLevel(args, "taskset -c " + cores + " " + clientCommand, levelPath);
+          } finally {
+            coreSlots.add(cores);
+          }
+        }));
+      }
+    }
+    levelRunner.shutdown();
+
+    // The results matrix has a row for each level, and the RESULT_COLUMNS for
+    // each client. The cells of failed runs are left empty.
+    int numColumns = RESULT_COLUMNS.length;
+    String[][] results = new String[numLevels][numColumns * numClients];
+    forEachInOrder(levelRuns, i -> tournament.levelPaths.get(i % numLevels), (levelRun, i) -> {
+      int client = i / numLevels;
+      int level = i % numLevels;
+      int column = numColumns * client;
+      Arrays.fill(results[level], column, column + numColumns, "");
+      if (levelRun == null || !writeLevelRun(logZipStream,
+          tournament.clientNames.get(client) + "/" + levelRun.entryName, levelRun)) {
+        return;
+      }
+
+      Domain domain = levelRun.domain;
+      results[level][column] = Boolean.toString(domain.isSolved());
+      results[level][column + 1] = Long.toString(domain.getNumActions());
+      results[level][column + 2] = String.format(Locale.ROOT, "%.3f",
+          domain.getStateTime(domain.getNumStates() - 1) / 1_000_000_000d);
+      if (domain.getClientCpuTime() != -1) {
+        results[level][column + 3] =
+            String.format(Locale.ROOT, "%.3f", domain.getClientCpuTime() / 1_000_000_000d);
+      }
+      if (domain.getClientPeakMemory() != -1) {
+        results[level][column + 4] =
+            String.format(Locale.ROOT, "%.1f", domain.getClientPeakMemory() / 1_000_000d);
+      }
+      if (domain.getClientPeakCpuUsage() != -1) {
+        results[level][column + 5] =
+            String.format(Locale.ROOT, "%.2f", domain.getClientPeakCpuUsage());
+      }
+    });
+
+    // Write results matrix to log file.
+    try {
+      logZipStream.putNextEntry(new ZipEntry("results.csv"));
+      BufferedWriter logWriter = new BufferedWriter(
+          new OutputStreamWriter(logZipStream, StandardCharsets.UTF_8.newEncoder()));
+      logWriter.write("level");
+      for (String clientName : tournament.clientNames) {
+        for (String resultColumn : RESULT_COLUMNS) {
+          logWriter.write(',');
+          logWriter.write(clientName);
+          logWriter.write(' ');
+          logWriter.write(resultColumn);
+        }
+      }
+      logWriter.newLine();
+      for (int level = 0; level < numLevels; ++level) {
+        String levelFileName = tournament.levelPaths.get(level).getFileName().toString();
+        logWriter.write(toCSVField(levelFileName.substring(0, levelFileName.length() - 4)));
+        for (String cell : results[level]) {
+          logWriter.write(',');
+          logWriter.write(cell);
+        }
+        logWriter.newLine();
+      }
+      logWriter.flush();
+    } catch (IOException e) {
+      Server.printError("Could not write results to log file.");
+      Server.printError(e.getMessage());
+    }
+
+    // Close log file.
+    try {
+      logZipStream.close();
+    } catch (IOException e) {
+      Server.printError("Could not close log file.");
+      Server.printError(e.getMessage());
+      return;
+    }
+    Server.printInfo(
+        String.format("Wrote tournament results to log file: %s", args.getLogFilePath()));
+  }
+
+  /**
+   * The columns of a client in the tournament results. The times are in seconds,
+   * the memory in MB and the CPU usage in cores.
+   */
+  private static final String[] RESULT_COLUMNS =
+      {"solved", "actions", "time", "cpu time", "peak memory", "peak cpu usage"};
+
+  private static String toCSVField(String value) {
+    if (value.indexOf(',') == -1 && value.indexOf('"') == -1) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
   }
 
   private static void runReplays(ArgumentParser args) {
-    // Load domains.
-    Path[] replayFilePaths = args.getReplayFilePaths();
-    Domain[] domains = new Domain[replayFilePaths.length];
-    for (int i = 0; i < replayFilePaths.length; i++) {
-      try {
-        Server.printInfo(String.format("Loading log file: %s", replayFilePaths[i]));
-        domains[i] = Domain.loadReplay(replayFilePaths[i], args.getConstraintsPath());
-      } catch (ParseException e) {
-        Server.printError("Could not load domain, failed to parse log file.");
-        Server.printError(e.getMessage());
+    // Log archives are opened as zip file systems, and their entries are replayed
+    // like log files.
+    ArrayList<Path> replayFilePaths = new ArrayList<>();
+    ArrayList<String> replayNames = new ArrayList<>();
+    ArrayList<Boolean> isArchiveEntry = new ArrayList<>();
+    ArrayList<FileSystem> archives = new ArrayList<>();
+    try {
+      for (Path replayFilePath : args.getReplayFilePaths()) {
+        if (!replayFilePath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+          replayFilePaths.add(replayFilePath);
+          replayNames.add(replayFilePath.toString());
+          isArchiveEntry.add(false);
+          continue;
+        }
+        FileSystem archive;
+        List<Path> entries;
+        try {
+          archive = FileSystems.newFileSystem(replayFilePath, (ClassLoader) null);
+          archives.add(archive);
+          entries = getArchiveReplays(archive, args.getReplayEntryPatterns());
+        } catch (IOException e) {
+          Server.printError("Could not open log archive: " + replayFilePath);
+          Server.printError(e.getMessage());
+          return;
+        }
+        Path archiveRoot = archive.getPath("/");
+        for (Path entry : entries) {
+          replayFilePaths.add(entry);
+          replayNames.add(replayFilePath + ":" + archiveRoot.relativize(entry));
+          isArchiveEntry.add(true);
+        }
+      }
+      if (replayFilePaths.isEmpty()) {
+        Server.printError("No log files to replay.");
         return;
-      } catch (IOException e) {
-        Server.printError("IOException while loading domain.");
-        Server.printError(e.getMessage());
+      }
+
+      // Load domains in parallel. With GUI output, only the log headers are loaded
+      // before the GUI starts, and the actions are loaded in the background while
+      // the GUI plays. Filtering by solved status needs the complete logs.
+      Executor actionLoader = args.hasGUIOutput() && args.getReplaySolvedFilter() == null
+          ? Server::startActionLoaderThread
+          : null;
+      int numLoaderThreads =
+          Math.min(replayFilePaths.size(), Runtime.getRuntime().availableProcessors());
+      ExecutorService replayLoader =
+          Executors.newFixedThreadPool(numLoaderThreads, Server::newReplayLoaderThread);
+      ArrayList<Future<Domain>> loadedDomains = new ArrayList<>();
+      for (int i = 0; i < replayFilePaths.size(); i++) {
+        Path replayFilePath = replayFilePaths.get(i);
+        String replayName = replayNames.get(i);
+        loadedDomains.add(replayLoader.submit(() -> {
+          Server.printInfo(String.format("Loading log file: %s", replayName));
+          return Domain.loadReplay(replayFilePath, args.getConstraintsPath(), actionLoader);
+        }));
+      }
+      replayLoader.shutdown();
+
+      // Broken entries of a log archive (e.g. of a client which crashed) are
+      // skipped, while the given log files must all load.
+      ArrayList<Domain> domains = new ArrayList<>();
+      ArrayList<String> domainNames = new ArrayList<>();
+      for (int i = 0; i < loadedDomains.size(); i++) {
+        Domain domain;
+        try {
+          domain = getLoadedDomain(loadedDomains.get(i), replayNames.get(i));
+        } catch (ExecutionException e) {
+          if (isArchiveEntry.get(i)) {
+            continue;
+          }
+          replayLoader.shutdownNow();
+          return;
+        }
+        if (args.getReplaySolvedFilter() != null
+            && domain.isSolved() != args.getReplaySolvedFilter()) {
+          Server.printDebug(String.format("Skipping log file: %s", replayNames.get(i)));
+          continue;
+        }
+        domains.add(domain);
+        domainNames.add(replayNames.get(i));
+      }
+      if (domains.isEmpty()) {
+        Server.printError("No log files to replay.");
         return;
       }
-    }
 
-    PlaybackManager playbackManager = null;
-    if (args.hasGUIOutput()) {
-      Server.printDebug("Loading GUI.");
-      PlaybackManager.initializeGUI();
-      for (var domain : domains) {
-        domain.initializeGraphics();
+      if (args.hasGUIOutput()) {
+        Server.printDebug("Loading GUI.");
+        PlaybackManager.initializeGUI();
+        for (var domain : domains) {
+          domain.initializeGraphics();
+        }
+        var gcs = getGraphicsConfigurations(domains.size(), args.getScreens());
+        PlaybackManager playbackManager = new PlaybackManager(domains.toArray(new Domain[0]), gcs);
+
+        Server.printDebug("Starting GUI.");
+        playbackManager.startGUI(args.getStartFullscreen(), args.getStartHiddenInterface(),
+            args.getMsPerAction(), args.getStartPlaying());
+        playbackManager.focusPlaybackFrame(0);
+
+        playbackManager.waitShutdown();
+      } else {
+        for (int i = 0; i < domains.size(); i++) {
+          Server.printInfo(String.format("Replayed log file: %s", domainNames.get(i)));
+          for (String statusLine : domains.get(i).getStatus()) {
+            Server.printInfo(statusLine);
+          }
+        }
       }
-      var gcs = getGraphicsConfigurations(domains.length, args.getScreens());
-      playbackManager = new PlaybackManager(domains, gcs);
+    } finally {
+      // The loaded replays do not read from the archives after loading.
+      for (FileSystem archive : archives) {
+        try {
+          archive.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
 
-      Server.printDebug("Starting GUI.");
-      playbackManager.startGUI(args.getStartFullscreen(), args.getStartHiddenInterface(),
-          args.getMsPerAction(), args.getStartPlaying());
-      playbackManager.focusPlaybackFrame(0);
+  /**
+   * Returns the log files and binary replays of a log archive whose paths
+   * relative to the archive root (e.g. "MAexample.log", or "alice/MAexample.log"
+   * in a tournament archive) match one of the given glob patterns (or all if
+   * patterns is null), sorted by path. The binary replay of a level is returned
+   * instead of its log.
+   */
+  private static List<Path> getArchiveReplays(FileSystem archive, String[] patterns)
+      throws IOException {
+    List<PathMatcher> matchers = new ArrayList<>();
+    if (patterns != null) {
+      for (String pattern : patterns) {
+        matchers.add(archive.getPathMatcher("glob:" + pattern));
+      }
+    }
+    Path root = archive.getPath("/");
+    List<Path> replays = new ArrayList<>();
+    try (var entries = Files.walk(root)) {
+      for (Path entry : (Iterable<Path>) entries::iterator) {
+        if (!Files.isRegularFile(entry)) {
+          continue;
+        }
+        String entryName = entry.getFileName().toString();
+        if (!entryName.endsWith(".replay") && !(entryName.endsWith(".log") && Files.notExists(
+            entry.resolveSibling(entryName.substring(0, entryName.length() - 4) + ".replay")))) {
+          continue;
+        }
+        if (matchers.isEmpty()
+            || matchers.stream().anyMatch(m -> m.matches(root.relativize(entry)))) {
+          replays.add(entry);
+        }
+      }
+    }
+    replays.sort(Comparator.comparing(entry -> root.relativize(entry).toString()));
+    return replays;
+  }
 
-      playbackManager.waitShutdown();
+  /**
+   * Waits for a domain loaded by the replay loader. Prints and rethrows the
+   * exception if it could not be loaded.
+   */
+  private static Domain getLoadedDomain(Future<Domain> loadedDomain, String replayName)
+      throws ExecutionException {
+    while (true) {
+      try {
+        return loadedDomain.get();
+      } catch (InterruptedException ignored) {
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof ParseException) {
+          Server.printError(
+              String.format("Could not load domain, failed to parse log file: %s", replayName));
+        } else if (e.getCause() instanceof IOException) {
+          Server.printError(String.format("IOException while loading domain: %s", replayName));
+        } else {
+          Server.printError(
+              String.format("Unexpected exception while loading domain: %s", replayName));
+        }
+        Server.printError(e.getCause().getMessage());
+        throw e;
+      }
     }
   }
 
+  private static Thread newReplayLoaderThread(Runnable replayLoader) {
+    Thread thread = new Thread(replayLoader, "ReplayLoaderThread");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static void startActionLoaderThread(Runnable actionLoader) {
+    Thread thread = new Thread(() -> {
+      Server.printDebug("Thread started.");
+      actionLoader.run();
+      Server.printDebug("Thread shut down.");
+    }, "ActionLoaderThread");
+    // Loading stops if the GUI is closed first.
+    thread.setDaemon(true);
+    thread.start();
+  }
+
   /**
    * Returns a GraphicsConfiguration array of size numScreens, attempting to map
    * the user-specified screen numbers (if provided) to the GraphicsDevices
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017-2022 The Technical University of Denmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package dk.dtu.compute.mavis.server;
+
+import dk.dtu.compute.mavis.domain.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The clients and levels of a tournament, read from a tournament file:
+ *
+ * <pre>
+ * #clients
+ * alice: java -cp alice searchclient.SearchClient
+ * bob: python3 bob/searchclient.py
+ * #levels
+ * levels/competition
+ * levels/extra/MAexample.lvl
+ * </pre>
+ *
+ * Each client line gives a name for the results and the command to start the
+ * client. Each level line gives a level file or a directory of level files.
+ * Empty lines are ignored.
+ */
+class Tournament {
+  private static final Pattern CLIENT_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]*");
+
+  final List<String> clientNames = new ArrayList<>();
+  final List<String> clientCommands = new ArrayList<>();
+  final List<Path> levelPaths = new ArrayList<>();
+
+  private Tournament() {}
+
+  static Tournament read(Path tournamentFile) throws IOException, ParseException {
+    Tournament tournament = new Tournament();
+    var levelFileNames = new HashSet<String>();
+    String section = null;
+    int lineNumber = 0;
+    try (BufferedReader reader = Files.newBufferedReader(tournamentFile, StandardCharsets.UTF_8)) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        ++lineNumber;
+        line = line.strip();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (line.equals("#clients") || line.equals("#levels")) {
+          section = line;
+          continue;
+        }
+
+        if (section == null) {
+          throw new ParseException("Expected #clients or #levels.", lineNumber);
+        } else if (section.equals("#clients")) {
+          int colon = line.indexOf(':');
+          if (colon == -1) {
+            throw new ParseException("Expected <client-name>: <client-cmd>.", lineNumber);
+          }
+          String clientName = line.substring(0, colon).strip();
+          String clientCommand = line.substring(colon + 1).strip();
+          if (!CLIENT_NAME.matcher(clientName).matches()) {
+            throw new ParseException("Client names may only contain letters, digits, '_', '-' "
+                + "and '.', and may not begin with '.'.", lineNumber);
+          }
+          if (tournament.clientNames.contains(clientName)) {
+            throw new ParseException("Duplicate client name: " + clientName, lineNumber);
+          }
+          if (clientCommand.isEmpty()) {
+            throw new ParseException("The client command can not be blank.", lineNumber);
+          }
+          tournament.clientNames.add(clientName);
+          tournament.clientCommands.add(clientCommand);
+        } else {
+          // Levels are run in the order of the level lines, and the levels of a
+          // directory in the order of their file names.
+          Path levelPath = Path.of(line);
+          var levelPaths = new ArrayList<Path>();
+          if (Files.isDirectory(levelPath)) {
+            try (var levelDirectory = Files.newDirectoryStream(levelPath, Server::isLevelFile)) {
+              levelDirectory.forEach(levelPaths::add);
+            }
+            levelPaths.sort(Comparator.comparing(path -> path.getFileName().toString()));
+          } else if (Server.isLevelFile(levelPath)) {
+            levelPaths.add(levelPath);
+          } else {
+            throw new ParseException("Not a level file or directory: " + line, lineNumber);
+          }
+          for (Path path : levelPaths) {
+            if (!levelFileNames.add(path.getFileName().toString())) {
+              throw new ParseException("Duplicate level file name: " + path.getFileName(),
+                  lineNumber);
+            }
+          }
+          tournament.levelPaths.addAll(levelPaths);
+        }
+      }
+    }
+
+    if (tournament.clientNames.isEmpty()) {
+      throw new ParseException("The tournament has no clients.");
+    }
+    if (tournament.levelPaths.isEmpty()) {
+      throw new ParseException("The tournament has no levels.");
+    }
+    return tournament;
+  }
+
+  /**
+   * Splits the cores the server may run on into numSlots disjoint core lists of
+   * coresPerSlot cores each, in the format of taskset, e.g. "2,3". The allowed
+   * cores are read from /proc/self/status, so this only works on Linux.
+   */
+  static String[] getCoreSlots(int numSlots, int coresPerSlot) throws IOException {
+    List<Integer> cores = getAllowedCores();
+    if (cores.size() < numSlots * coresPerSlot) {
+      throw new IOException(String.format(
+          "Pinning %d clients to %d cores each needs %d cores, "
+              + "but the server may only run on %d cores.",
+          numSlots, coresPerSlot, numSlots * coresPerSlot, cores.size()));
+    }
+    String[] coreSlots = new String[numSlots];
+    for (int slot = 0; slot < numSlots; ++slot) {
+      var slotCores = new ArrayList<String>();
+      for (int core = slot * coresPerSlot; core < (slot + 1) * coresPerSlot; ++core) {
+        slotCores.add(cores.get(core).toString());
+      }
+      coreSlots[slot] = String.join(",", slotCores);
+    }
+    return coreSlots;
+  }
+
+  /**
+   * The cores in the CPU affinity of the server, parsed from the
+   * Cpus_allowed_list line of /proc/self/status, e.g. "0-3,8".
+   */
+  static List<Integer> getAllowedCores() throws IOException {
+    Path status = Path.of("/proc/self/status");
+    for (String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+      if (!line.startsWith("Cpus_allowed_list:")) {
+        continue;
+      }
+      var cores = new ArrayList<Integer>();
+      try {
+        for (String range : line.substring(line.indexOf(':') + 1).strip().split(",")) {
+          int dash = range.indexOf('-');
+          int first = Integer.parseInt(dash == -1 ? range : range.substring(0, dash));
+          int last = dash == -1 ? first : Integer.parseInt(range.substring(dash + 1));
+          for (int core = first; core <= last; ++core) {
+            cores.add(core);
+          }
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Could not parse the allowed cores: " + line);
+      }
+      return cores;
+    }
+    throw new IOException("The allowed cores are not listed in /proc/self/status.");
+  }
+}
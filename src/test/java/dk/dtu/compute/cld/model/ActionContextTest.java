@@ -0,0 +1,53 @@
+package dk.dtu.compute.cld.model;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.stream.Stream;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.enums.ActionProperty;
+
+public class ActionContextTest {
+
+  private final static Action ACTION_A =
+      new Action(new Pair<>(1, 1), new Pair<>(1, 2), 3, "Move(E)", 0);
+  private final static Action ACTION_B =
+      new Action(new Pair<>(2, 2), new Pair<>(2, 2), 3, "NoOp", 1);
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForSlotMatchesKeyTest")
+  public void slotMatchesKeyTest(String key, int slot, ActionProperty property, Object expected) {
+    // arrange
+    var sut = new ActionContext(new SimpleEntry<>("a", ACTION_A), new SimpleEntry<>("b", ACTION_B));
+
+    // act
+    var actualByKey = sut.get(key);
+    var actualBySlot = sut.get(slot, property);
+
+    // assert
+    assertThat(actualByKey).isEqualTo(expected);
+    assertThat(actualBySlot).isEqualTo(expected);
+  }
+
+  private static Stream<Arguments> provideArgsForSlotMatchesKeyTest() {
+    return Stream.of(Arguments.of("a.orig", 0, ActionProperty.Origin, new Pair<>(1, 1)),
+        Arguments.of("a.destination", 0, ActionProperty.Destination, new Pair<>(1, 2)),
+        Arguments.of("a.edge", 0, ActionProperty.Edge,
+            new Pair<>(new Pair<>(1, 1), new Pair<>(1, 2))),
+        Arguments.of("b.time", 1, ActionProperty.Time, 3),
+        Arguments.of("b.name", 1, ActionProperty.Name, "NoOp"),
+        Arguments.of("b.agent", 1, ActionProperty.Agent, 1));
+  }
+
+  @Test
+  public void unknownKeyTest() {
+    // arrange
+    var sut = new ActionContext(new SimpleEntry<>("a", ACTION_A));
+
+    // act & assert
+    assertThatThrownBy(() -> sut.get("b.time")).isInstanceOf(IllegalArgumentException.class);
+  }
+}
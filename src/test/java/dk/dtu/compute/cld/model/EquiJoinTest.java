@@ -0,0 +1,57 @@
+package dk.dtu.compute.cld.model;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.errors.StatementParsingException;
+import dk.dtu.compute.cld.services.ConstraintParser;
+
+public class EquiJoinTest {
+
+  final static ConstraintParser PARSER = new ConstraintParser();
+
+  @ParameterizedTest
+  @MethodSource("provideEquiJoinConstraintDefinitions")
+  public void markConflictsMatchesPairwiseEvaluationTest(String constraintDefinition)
+      throws StatementParsingException {
+    // arrange
+    var constraint = PARSER.Parse(constraintDefinition).compile();
+    var sut = constraint.equiJoin;
+    var random = new Random(42);
+    for (var iteration = 0; iteration < 100; iteration++) {
+      var numActions = 1 + random.nextInt(20);
+      var context = new JointActionContext(numActions);
+      for (var i = 0; i < numActions; i++) {
+        context.setAction(i, Action.cell(random.nextInt(3), random.nextInt(3)),
+            Action.cell(random.nextInt(3), random.nextInt(3)), random.nextInt(2), "NoOp", i);
+      }
+      var expected = new boolean[numActions];
+      for (var i = 0; i < numActions; i++) {
+        for (var j = 0; j < i; j++) {
+          if (constraint.evaluate(context.bind(0, i).bind(1, j))) {
+            expected[i] = true;
+            expected[j] = true;
+          }
+        }
+      }
+      var actual = new boolean[numActions];
+
+      // act
+      sut.markConflicts(context, numActions, new KeyIndex(numActions), actual);
+
+      // assert
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
+  private static Stream<Arguments> provideEquiJoinConstraintDefinitions() {
+    return Stream.of(
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS b.dest OR a.dest IS b.origin"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF b.dest IS a.origin"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.edge OVERLAPS WITH b.edge"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.edge IS b.edge OR a.time IS b.time"));
+  }
+}
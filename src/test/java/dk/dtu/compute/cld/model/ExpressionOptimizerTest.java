@@ -0,0 +1,104 @@
+package dk.dtu.compute.cld.model;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Random;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+import dk.dtu.compute.cld.enums.OperandValueType;
+
+public class ExpressionOptimizerTest {
+
+  private final static Operator IS_NUM = new Operator("IS", OperandValueType.Number);
+  private final static Operator IS_NOT_NUM = new Operator("IS NOT", OperandValueType.Number);
+  private final static Operator IS_LESS = new Operator("IS LESS THAN", OperandValueType.Number);
+  private final static Operator IS_VTX = new Operator("IS", OperandValueType.Vertex);
+  private final static Operator OVERLAPS = new Operator("OVERLAPS WITH", OperandValueType.Edge);
+
+  private final static Operand A_TIME = new Operand("a.time");
+  private final static Operand A_AGENT = new Operand("a.agent");
+  private final static Operand B_AGENT = new Operand("b.agent");
+  private final static Operand A_DEST = new Operand("a.dest");
+  private final static Operand B_DEST = new Operand("b.dest");
+  private final static Operand A_EDGE = new Operand("a.edge");
+  private final static Operand B_EDGE = new Operand("b.edge");
+  private final static Operand LITERAL_1 = new Operand("1");
+  private final static Operand LITERAL_2 = new Operand("2");
+
+  private static ActionContext createContext(Random random) {
+    return new ActionContext(
+        new SimpleEntry<>("a",
+            new Action(new Pair<>(random.nextInt(2), random.nextInt(2)),
+                new Pair<>(random.nextInt(2), random.nextInt(2)), random.nextInt(3), null,
+                random.nextInt(2))),
+        new SimpleEntry<>("b", new Action(new Pair<>(random.nextInt(2), random.nextInt(2)),
+            new Pair<>(random.nextInt(2), random.nextInt(2)), 0, null, random.nextInt(2))));
+  }
+
+  @Test
+  public void optimizedPredicateMatchesDeclaredOrderTest() {
+    // arrange
+    // a.edge OVERLAPS WITH b.edge AND NOT 1 IS 2 OR a.dest IS b.dest
+    // AND a.agent IS b.agent OR NOT a.time IS LESS THAN 2
+    var sut =
+        new Expression(A_EDGE, OVERLAPS, B_EDGE, null,
+            new Expression(LITERAL_1, IS_NUM, LITERAL_2, new Connector("AND NOT"),
+                new Expression(A_DEST, IS_VTX, B_DEST, new Connector("OR"), new Expression(
+                    A_AGENT, IS_NUM, B_AGENT, new Connector("AND"),
+                    new Expression(A_TIME, IS_LESS, LITERAL_2, new Connector("OR NOT"), null)))));
+    var optimized = sut.toPredicate();
+    var declared = sut.toDeclaredOrderPredicate();
+    var random = new Random(42);
+
+    for (var i = 0; i < 3 * ExpressionOptimizer.REORDER_INTERVAL; i++) {
+      var context = createContext(random);
+
+      // act
+      var actual = optimized.test(context);
+
+      // assert
+      assertThat(actual).isEqualTo(declared.test(context));
+    }
+  }
+
+  @Test
+  public void constantFoldingTest() {
+    // arrange
+    var alwaysFalse = new Expression(A_TIME, IS_NUM, LITERAL_1, null,
+        new Expression(LITERAL_1, IS_NUM, LITERAL_2, new Connector("AND"), null));
+    var alwaysTrue = new Expression(A_TIME, IS_NUM, LITERAL_1, null,
+        new Expression(LITERAL_1, IS_NOT_NUM, LITERAL_2, new Connector("OR"), null));
+
+    // act
+    var actualFalse = alwaysFalse.toPredicate();
+    var actualTrue = alwaysTrue.toPredicate();
+
+    // assert
+    // Constants do not read the context.
+    assertThat(actualFalse.test(null)).isFalse();
+    assertThat(actualTrue.test(null)).isTrue();
+  }
+
+  @Test
+  public void adaptiveReorderingTest() {
+    // arrange
+    // The cheap agent test never short-circuits, while the overlap test
+    // always does.
+    var sut = new Expression(A_AGENT, IS_NOT_NUM, LITERAL_2, null,
+        new Expression(A_EDGE, OVERLAPS, B_EDGE, new Connector("AND NOT"), null));
+    var predicate = (ExpressionOptimizer.AdaptiveJunction<ValidationContext>) sut.toPredicate();
+    var context = new ActionContext(
+        new SimpleEntry<>("a", new Action(new Pair<>(0, 0), new Pair<>(0, 1), 0, null, 0)),
+        new SimpleEntry<>("b", new Action(new Pair<>(0, 1), new Pair<>(0, 0), 0, null, 1)));
+    var initialOrder = predicate.getOrder().clone();
+
+    // act
+    for (var i = 0; i < ExpressionOptimizer.REORDER_INTERVAL; i++) {
+      predicate.test(context);
+    }
+
+    // assert
+    assertThat(initialOrder).containsExactly(0, 1);
+    assertThat(predicate.getOrder()).containsExactly(1, 0);
+  }
+}
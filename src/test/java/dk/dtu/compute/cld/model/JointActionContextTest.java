@@ -0,0 +1,74 @@
+package dk.dtu.compute.cld.model;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.stream.Stream;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.enums.ActionProperty;
+import dk.dtu.compute.cld.errors.StatementParsingException;
+import dk.dtu.compute.cld.services.ConstraintParser;
+
+public class JointActionContextTest {
+
+  final static ConstraintParser PARSER = new ConstraintParser();
+
+  private final static Action[] ACTIONS = {new Action(1, 1, 1, 2), new Action(1, 2, 1, 3),
+      new Action(1, 2, 1, 1), new Action(2, 2, 2, 2), new Action(2, 1, 1, 1)};
+
+  @ParameterizedTest
+  @MethodSource("provideConstraintDefinitions")
+  public void packedEvaluationMatchesActionContextTest(String constraintDefinition)
+      throws StatementParsingException {
+    // arrange
+    var sut = PARSER.Parse(constraintDefinition).compile();
+    var context = new JointActionContext(ACTIONS.length);
+    for (var i = 0; i < ACTIONS.length; i++) {
+      context.setAction(i, pack(ACTIONS[i].origin), pack(ACTIONS[i].destination), ACTIONS[i].time,
+          ACTIONS[i].name, i);
+    }
+
+    for (var i = 0; i < ACTIONS.length; i++) {
+      for (var j = 0; j < ACTIONS.length; j++) {
+        // act
+        var expected = sut.evaluate(sut.newContext().set(0, ACTIONS[i]).set(1, ACTIONS[j]));
+        var actual = sut.evaluate(context.bind(0, i).bind(1, j));
+
+        // assert
+        assertThat(actual).as("actions %d and %d", i, j).isEqualTo(expected);
+      }
+    }
+  }
+
+  private static Stream<Arguments> provideConstraintDefinitions() {
+    return Stream.of(Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS b.origin"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS b.dest"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.edge OVERLAPS WITH b.edge"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.orig IS b.dest OR a.dest IS b.orig"),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS NOT b.dest AND a.time IS 0"));
+  }
+
+  @Test
+  public void packedPropertiesTest() {
+    // arrange
+    var sut = new JointActionContext(1);
+    sut.setAction(0, Action.cell(3, 4), Action.cell(3, 5), 7, "Move(E)", 0);
+
+    // act
+    sut.bind(0, 0);
+
+    // assert
+    assertThat(sut.get(0, ActionProperty.Origin)).isEqualTo(new Pair<>(3, 4));
+    assertThat(sut.get(0, ActionProperty.Edge))
+        .isEqualTo(new Pair<>(new Pair<>(3, 4), new Pair<>(3, 5)));
+    assertThat(sut.getInt(0, ActionProperty.Time)).isEqualTo(7);
+    assertThat(Action.edgeDestination(sut.getLong(0, ActionProperty.Edge)))
+        .isEqualTo(Action.cell(3, 5));
+  }
+
+  private static int pack(Pair<Integer, Integer> vertex) {
+    return Action.cell(vertex.getValue0(), vertex.getValue1());
+  }
+}
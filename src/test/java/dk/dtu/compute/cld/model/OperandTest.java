@@ -34,7 +34,12 @@ public class OperandTest {
         Arguments.of("b.name", "b.name", OperandType.ActionReference, OperandValueType.String),
         Arguments.of("b.time", "b.time", OperandType.ActionReference, OperandValueType.Number),
         Arguments.of("a.orig", "a.orig", OperandType.ActionReference, OperandValueType.Vertex),
-        Arguments.of("14", (Integer) 14, OperandType.Literal, OperandValueType.Number), Arguments
-            .of("action.edge", "action.edge", OperandType.ActionReference, OperandValueType.Edge));
+        Arguments.of("14", (Integer) 14, OperandType.Literal, OperandValueType.Number),
+        Arguments.of("action.edge", "action.edge", OperandType.ActionReference,
+            OperandValueType.Edge),
+        Arguments.of("DISTANCE(a.orig, b.dest)", "DISTANCE(a.orig, b.dest)", OperandType.Function,
+            OperandValueType.Number),
+        Arguments.of("ROOM(a.dest)", "ROOM(a.dest)", OperandType.Function,
+            OperandValueType.Number));
   }
 }
@@ -54,6 +54,38 @@ public class ConstraintBuilderTest {
     assertThat(actual).isEqualTo(expectedEvaluation);
   }
 
+  @ParameterizedTest
+  @MethodSource("provideValidSingleActionArgs")
+  public void compileWithSingleActionTest(String constraintDefinition, Action requesting,
+      boolean expectedEvaluation) throws StatementParsingException {
+    // arrange
+    var sut = PARSER.Parse(constraintDefinition).compile();
+    var context = sut.newContext().set(0, requesting);
+
+    // act
+    var actual = sut.evaluate(context);
+
+    // assert
+    assertThat(sut.isSingleContextConstraint()).isTrue();
+    assertThat(actual).isEqualTo(expectedEvaluation);
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideValidDoubleActionArgs")
+  public void compileWithDoubleActionTest(String constraintDefinition, Action requesting,
+      Action blocking, boolean expectedEvaluation) throws StatementParsingException {
+    // arrange
+    var sut = PARSER.Parse(constraintDefinition).compile();
+    var context = sut.newContext().set(0, requesting).set(1, blocking);
+
+    // act
+    var actual = sut.evaluate(context);
+
+    // assert
+    assertThat(sut.isSingleContextConstraint()).isFalse();
+    assertThat(actual).isEqualTo(expectedEvaluation);
+  }
+
 
   private static Stream<Arguments> provideValidConstraintDefinitions() {
     return Stream.of(
@@ -68,7 +68,8 @@ public class ConstraintParserTest {
     return Stream.of(Arguments.of("a.name IS 'NoOp' AND a.time IS LESS THAN 10", 2),
         Arguments.of("action.dest IS other.origin", 1), Arguments.of("a.dest IS b.dest", 1),
         Arguments.of("a.name IS NOT 'NoOp' AND NOT a.time IS MORE THAN 5 AND a.time IS MORE THAN 1",
-            3));
+            3),
+        Arguments.of("DISTANCE(a.orig, b.orig) IS LESS THAN 3 OR ROOM(a.dest) IS ROOM(b.dest)", 2));
   }
 
   private static Stream<Arguments> provideStringsForInitialParsing() {
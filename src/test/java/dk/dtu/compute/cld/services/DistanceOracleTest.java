@@ -0,0 +1,75 @@
+package dk.dtu.compute.cld.services;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.BitSet;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.model.Action;
+
+public class DistanceOracleTest {
+
+  private final static String[] LEVEL =
+      {"+++++++++", "+  +    +", "+  +    +", "+       +", "+++++ +++", "+     + +", "+++++++++"};
+
+  private static DistanceOracle createOracle() {
+    var numRows = LEVEL.length;
+    var numCols = LEVEL[0].length();
+    var walls = new BitSet();
+    for (var row = 0; row < numRows; row++) {
+      for (var col = 0; col < numCols; col++) {
+        walls.set(row * numCols + col, LEVEL[row].charAt(col) == '+');
+      }
+    }
+    return new DistanceOracle(numRows, numCols, walls);
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForDistanceTest")
+  public void distanceTest(int fromRow, int fromCol, int toRow, int toCol, int expected) {
+    // arrange
+    var sut = createOracle();
+
+    // act
+    var actual = sut.distance(Action.cell(fromRow, fromCol), Action.cell(toRow, toCol));
+    var actualReversed = sut.distance(Action.cell(toRow, toCol), Action.cell(fromRow, fromCol));
+
+    // assert
+    assertThat(actual).isEqualTo(expected);
+    assertThat(actualReversed).isEqualTo(expected);
+  }
+
+  private static Stream<Arguments> provideArgsForDistanceTest() {
+    return Stream.of(Arguments.of(1, 1, 1, 1, 0), Arguments.of(1, 1, 1, 2, 1),
+        Arguments.of(1, 1, 1, 4, 7), Arguments.of(1, 1, 5, 1, 12),
+        Arguments.of(1, 1, 5, 7, DistanceOracle.UNREACHABLE),
+        Arguments.of(0, 0, 1, 1, DistanceOracle.UNREACHABLE),
+        Arguments.of(1, 1, 100, 1, DistanceOracle.UNREACHABLE));
+  }
+
+  @Test
+  public void areaTest() {
+    // arrange
+    var sut = createOracle();
+
+    // act & assert
+    assertThat(sut.area(Action.cell(1, 1))).isEqualTo(sut.area(Action.cell(5, 1)));
+    assertThat(sut.area(Action.cell(1, 1))).isNotEqualTo(sut.area(Action.cell(5, 7)));
+    assertThat(sut.area(Action.cell(0, 0))).isEqualTo(DistanceOracle.NO_LABEL);
+  }
+
+  @Test
+  public void roomTest() {
+    // arrange
+    var sut = createOracle();
+
+    // act & assert
+    assertThat(sut.room(Action.cell(1, 1))).isEqualTo(sut.room(Action.cell(3, 2)));
+    assertThat(sut.room(Action.cell(1, 1))).isNotEqualTo(sut.room(Action.cell(1, 4)));
+    assertThat(sut.room(Action.cell(3, 3))).isNotEqualTo(sut.room(Action.cell(3, 2)));
+    assertThat(sut.room(Action.cell(4, 5))).isEqualTo(sut.room(Action.cell(5, 1)));
+    assertThat(sut.room(Action.cell(4, 5))).isNotEqualTo(sut.room(Action.cell(3, 5)));
+  }
+}
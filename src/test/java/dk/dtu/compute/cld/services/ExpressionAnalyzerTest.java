@@ -0,0 +1,42 @@
+package dk.dtu.compute.cld.services;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.errors.StatementParsingException;
+
+public class ExpressionAnalyzerTest {
+
+  final static ConstraintParser PARSER = new ConstraintParser();
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForFindEquiJoinTest")
+  public void findEquiJoinTest(String constraintDefinition, boolean expectedEquiJoin)
+      throws StatementParsingException {
+    // arrange
+    var sut = PARSER.Parse(constraintDefinition);
+
+    // act
+    var actual = sut.compile().equiJoin;
+
+    // assert
+    assertThat(actual != null).isEqualTo(expectedEquiJoin);
+  }
+
+  private static Stream<Arguments> provideArgsForFindEquiJoinTest() {
+    return Stream.of(
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS b.dest OR a.dest IS b.origin",
+            true),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF b.dest IS a.origin", true),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.edge OVERLAPS WITH b.edge", true),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.edge IS b.edge OR a.time IS b.agent",
+            true),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS b.dest AND a.time IS 0", false),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS NOT b.dest", false),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.dest IS a.origin", false),
+        Arguments.of("ACTION a IS BLOCKED BY ACTION b IF a.name IS b.name", false),
+        Arguments.of("ACTION a IS BLOCKED IF a.dest IS a.origin", false));
+  }
+}
@@ -0,0 +1,73 @@
+package dk.dtu.compute.cld.services;
+
+import static org.assertj.core.api.Assertions.*;
+import java.util.stream.Stream;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.cld.enums.OperandValueType;
+import dk.dtu.compute.cld.errors.PredicateExecutionFailedException;
+import dk.dtu.compute.cld.model.Operator;
+
+public class OperatorCompilerTest {
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForCompiledMatchesReflectiveTest")
+  public void compiledMatchesReflectiveTest(String operator, OperandValueType type, Object arg1,
+      Object arg2, boolean expected) {
+    // arrange
+    var compiled = new Operator(operator, type, true);
+    var reflective = new Operator(operator, type, false);
+
+    // act
+    var actualCompiled = compiled.predicate.test(arg1, arg2);
+    var actualReflective = reflective.predicate.test(arg1, arg2);
+
+    // assert
+    assertThat(actualCompiled).isEqualTo(expected);
+    assertThat(actualReflective).isEqualTo(expected);
+  }
+
+  private static Stream<Arguments> provideArgsForCompiledMatchesReflectiveTest() {
+    var edge1 = new Pair<>(new Pair<>(1, 1), new Pair<>(1, 2));
+    var edge2 = new Pair<>(new Pair<>(1, 2), new Pair<>(1, 3));
+    var edge3 = new Pair<>(new Pair<>(2, 2), new Pair<>(2, 3));
+    return Stream.of(Arguments.of("IS", OperandValueType.Number, 8, 8, true),
+        Arguments.of("IS", OperandValueType.Number, 1000, Integer.valueOf(1000), true),
+        Arguments.of("IS NOT", OperandValueType.Number, 1000, Integer.valueOf(1000), false),
+        Arguments.of("IS LESS THAN", OperandValueType.Number, 5, 6, true),
+        Arguments.of("IS NOT MORE THAN", OperandValueType.Number, 10, 1, false),
+        Arguments.of("IS", OperandValueType.String, "NoOp", "Move(E)", false),
+        Arguments.of("IS NOT", OperandValueType.String, "NoOp", "NoOp", false),
+        Arguments.of("IS", OperandValueType.Vertex, new Pair<>(300, 1), new Pair<>(300, 1), true),
+        Arguments.of("IS", OperandValueType.Edge, edge1, edge2, false),
+        Arguments.of("OVERLAPS WITH", OperandValueType.Edge, edge1, edge2, true),
+        Arguments.of("NOT OVERLAPS WITH", OperandValueType.Edge, edge1, edge3, true));
+  }
+
+  @Test
+  public void compiledFailsLikeReflectiveTest() {
+    // arrange
+    var compiled = new Operator("OVERLAPS WITH", OperandValueType.Vertex, true);
+    var reflective = new Operator("OVERLAPS WITH", OperandValueType.Vertex, false);
+    var vertex = new Pair<>(1, 1);
+
+    // act & assert
+    assertThatThrownBy(() -> compiled.predicate.test(vertex, vertex))
+        .isInstanceOf(PredicateExecutionFailedException.class);
+    assertThatThrownBy(() -> reflective.predicate.test(vertex, vertex))
+        .isInstanceOf(PredicateExecutionFailedException.class);
+  }
+
+  @Test
+  public void unsupportedOperandTypeIsNotCompiledTest() {
+    // act
+    var actual = OperatorCompiler.compile(dk.dtu.compute.cld.enums.OperatorType.LESS,
+        OperandValueType.String, false);
+
+    // assert
+    assertThat(actual).isNull();
+  }
+}
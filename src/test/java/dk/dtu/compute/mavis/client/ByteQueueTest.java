@@ -0,0 +1,56 @@
+package dk.dtu.compute.mavis.client;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class ByteQueueTest {
+
+  @Test
+  public void transferMoreThanCapacityTest() throws Exception {
+    // arrange
+    var sut = new ByteQueue(16);
+    var bytes = new byte[100_000];
+    for (int i = 0; i < bytes.length; ++i) {
+      bytes[i] = (byte) (i * 31);
+    }
+    var writer = new Thread(() -> {
+      try (var out = sut.getOutputStream()) {
+        out.write(bytes);
+      } catch (IOException ignored) {
+      }
+    });
+
+    // act
+    writer.start();
+    var actual = sut.getInputStream().readAllBytes();
+    writer.join();
+
+    // assert
+    assertThat(actual).isEqualTo(bytes);
+  }
+
+  @Test
+  public void writeAfterReaderClosedFailsTest() throws IOException {
+    // arrange
+    var sut = new ByteQueue(16);
+    sut.getInputStream().close();
+
+    // act & assert
+    assertThatThrownBy(() -> sut.getOutputStream().write(1)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void readRemainingBytesAfterCloseTest() throws IOException {
+    // arrange
+    var sut = new ByteQueue(16);
+    sut.getOutputStream().write(new byte[] {1, 2, 3});
+
+    // act
+    sut.close();
+
+    // assert
+    assertThat(sut.getInputStream().readAllBytes()).containsExactly(1, 2, 3);
+    assertThat(sut.getInputStream().read()).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,98 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class ActionLogWriterTest {
+
+  private static final int CAPACITY = 4;
+  private static final int NUM_RECORDS = 1000;
+  private static final Action[][] JOINT_ACTIONS =
+      {{Action.MoveN, Action.NoOp}, {Action.PushEE, Action.PullWS}, {Action.NoOp, Action.MoveW}};
+
+  @Test
+  public void slowStreamGetsAllRecordsInOrderTest() {
+    // arrange
+    var out = new ByteArrayOutputStream();
+    var slowStream = new OutputStream() {
+      private int numWrites = 0;
+
+      @Override
+      public void write(int b) {
+        this.pause();
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        this.pause();
+        out.write(b, off, len);
+      }
+
+      private void pause() {
+        if (++this.numWrites % 500 == 0) {
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException ignored) {
+          }
+        }
+      }
+    };
+    var sut = new ActionLogWriter(slowStream, 2, CAPACITY);
+    var expected = new StringBuilder();
+    for (var record = 0; record < NUM_RECORDS; ++record) {
+      var jointAction = JOINT_ACTIONS[record % JOINT_ACTIONS.length];
+      expected.append(record * 1000L).append(':').append(jointAction[0].name).append('|')
+          .append(jointAction[1].name).append(System.lineSeparator());
+    }
+
+    // act
+    sut.start();
+    var appended = true;
+    for (var record = 0; record < NUM_RECORDS; ++record) {
+      appended &= sut.append(record * 1000L, JOINT_ACTIONS[record % JOINT_ACTIONS.length]);
+    }
+    var closed = sut.close();
+
+    // assert
+    assertThat(appended).isTrue();
+    assertThat(closed).isTrue();
+    assertThat(out.toString(StandardCharsets.US_ASCII)).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void appendFailsAfterWriteFailsTest() {
+    // arrange
+    var failingStream = new OutputStream() {
+      private int numBytes = 0;
+
+      @Override
+      public void write(int b) throws IOException {
+        if (++this.numBytes > 100) {
+          throw new IOException("Disk full.");
+        }
+      }
+    };
+    var sut = new ActionLogWriter(failingStream, 2, CAPACITY);
+
+    // act
+    sut.start();
+    var firstFailure = -1;
+    for (var record = 0; record < NUM_RECORDS && firstFailure == -1; ++record) {
+      if (!sut.append(record, JOINT_ACTIONS[0])) {
+        firstFailure = record;
+      }
+    }
+    var appendedAfterFailure = sut.append(NUM_RECORDS, JOINT_ACTIONS[0]);
+    var closed = sut.close();
+
+    // assert
+    assertThat(firstFailure).isNotEqualTo(-1);
+    assertThat(appendedAfterFailure).isFalse();
+    assertThat(closed).isFalse();
+  }
+}
@@ -0,0 +1,89 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.dtu.compute.mavis.domain.ParseException;
+
+public class BinaryReplayTest {
+
+  private static final String LEVEL = "#domain\nhospital\n#levelname\ntest\n#colors\n"
+      + "blue: 0, A\nred: 1, B\n#initial\n+++++++\n+0A   +\n+  1B +\n+     +\n+++++++\n"
+      + "#goal\n+++++++\n+   A +\n+ B   +\n+     +\n+++++++\n#end\n";
+  private static final String HEADER = "#clientname\ntest\n#replay\n";
+  private static final int NUM_OPCODES = 29;
+  private static final int SNAPSHOT_INTERVAL = 8;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void statesMatchStateSequenceTest() throws IOException, ParseException {
+    // arrange
+    var levelFile = this.tempDir.resolve("test.lvl");
+    Files.writeString(levelFile, LEVEL, StandardCharsets.US_ASCII);
+    var levelInfo = new LevelReader(levelFile, false).getLevel();
+    var expected = new StateSequence(levelInfo);
+    var validator = new HospitalValidator(levelInfo);
+    var writer = new BinaryReplayWriter(levelInfo, SNAPSHOT_INTERVAL);
+    var random = new Random(1);
+    var jointAction = new Action[levelInfo.numAgents];
+    var applicable = new boolean[levelInfo.numAgents];
+    for (var step = 1; step <= 100; ++step) {
+      for (var agent = 0; agent < jointAction.length; ++agent) {
+        jointAction[agent] = Action.fromOpcode(random.nextInt(NUM_OPCODES));
+      }
+      var time = step * 1000L + random.nextInt(1000);
+      validator.isApplicable(jointAction, expected.getLatestState(), applicable);
+      expected.apply(jointAction, applicable, time);
+      writer.append(jointAction, applicable, time, expected.getLatestState());
+    }
+    var replayFile = this.writeReplay(writer);
+
+    // act
+    var actual = new LevelReader(replayFile, true).getLevel().initialSequence;
+
+    // assert
+    assertThat(actual.getNumStates()).isEqualTo(expected.getNumStates());
+    for (var state = actual.getNumStates() - 1; state >= 0; --state) {
+      assertThat(actual.getState(state)).as("state %d", state).usingRecursiveComparison()
+          .isEqualTo(expected.getState(state));
+      assertThat(actual.getStateTime(state)).as("state %d", state)
+          .isEqualTo(expected.getStateTime(state));
+    }
+  }
+
+  @Test
+  public void truncatedReplayIsRejectedTest() throws IOException, ParseException {
+    // arrange
+    var levelFile = this.tempDir.resolve("test.lvl");
+    Files.writeString(levelFile, LEVEL, StandardCharsets.US_ASCII);
+    var levelInfo = new LevelReader(levelFile, false).getLevel();
+    var writer = new BinaryReplayWriter(levelInfo, SNAPSHOT_INTERVAL);
+    var jointAction = new Action[] {Action.MoveS, Action.MoveS};
+    var applicable = new boolean[] {true, true};
+    writer.append(jointAction, applicable, 1000L, levelInfo.initialState);
+    var replayFile = this.writeReplay(writer);
+    var bytes = Files.readAllBytes(replayFile);
+    Files.write(replayFile, Arrays.copyOf(bytes, bytes.length - 16));
+
+    // act & assert
+    assertThatThrownBy(() -> new LevelReader(replayFile, true).getLevel())
+        .isInstanceOf(ParseException.class);
+  }
+
+  private Path writeReplay(BinaryReplayWriter writer) throws IOException {
+    var replayFile = this.tempDir.resolve("test.replay");
+    try (var out = Files.newOutputStream(replayFile)) {
+      out.write((LEVEL + HEADER).getBytes(StandardCharsets.US_ASCII));
+      writer.write(out);
+    }
+    return replayFile;
+  }
+}
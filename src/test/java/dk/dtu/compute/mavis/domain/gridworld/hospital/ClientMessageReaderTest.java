@@ -0,0 +1,99 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import dk.dtu.compute.mavis.domain.gridworld.hospital.ClientMessageReader.MessageType;
+
+public class ClientMessageReaderTest {
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForReadMessageTest")
+  public void readMessageTest(String message, int numAgents, MessageType expectedType)
+      throws IOException {
+    // arrange
+    var sut = new ClientMessageReader(
+        new ByteArrayInputStream((message + "\n").getBytes(StandardCharsets.ISO_8859_1)),
+        numAgents);
+    var jointAction = new Action[numAgents];
+
+    // act
+    var actualType = sut.readMessage(jointAction);
+
+    // assert
+    assertThat(actualType).isEqualTo(expectedType);
+  }
+
+  private static Stream<Arguments> provideArgsForReadMessageTest() {
+    return Stream.of(Arguments.of("NoOp|Move(N)", 2, MessageType.JointAction),
+        Arguments.of("Pull(W,W)", 1, MessageType.JointAction),
+        Arguments.of("#Hello|world", 2, MessageType.Comment),
+        Arguments.of("NoOp|", 1, MessageType.JointAction),
+        Arguments.of("NoOp|", 2, MessageType.InvalidNumberOfAgents),
+        Arguments.of("|NoOp", 2, MessageType.InvalidJointAction),
+        Arguments.of("||", 1, MessageType.InvalidNumberOfAgents),
+        Arguments.of("", 1, MessageType.InvalidJointAction),
+        Arguments.of("NoOp|Push(N,S)", 2, MessageType.InvalidJointAction),
+        Arguments.of("NoOp|Move(n)", 2, MessageType.InvalidJointAction),
+        Arguments.of("NoOp|NoOp|NoOp", 2, MessageType.InvalidNumberOfAgents),
+        Arguments.of("NoOp|Move(\u00C6)", 2, MessageType.InvalidEncoding));
+  }
+
+  @Test
+  public void readMessageDecodesActionsTest() throws IOException {
+    // arrange
+    var sut = new ClientMessageReader(new ByteArrayInputStream(
+        "NoOp|Move(E)|Push(S,W)|Pull(E,N)\n".getBytes(StandardCharsets.US_ASCII)), 4);
+    var jointAction = new Action[4];
+
+    // act
+    sut.readMessage(jointAction);
+
+    // assert
+    assertThat(jointAction).containsExactly(Action.NoOp, Action.MoveE, Action.PushSW,
+        Action.PullEN);
+  }
+
+  @Test
+  public void readLineTerminatorsTest() throws IOException {
+    // arrange
+    var sut = new ClientMessageReader(
+        new ByteArrayInputStream("a\r\nb\rc\n\nd".getBytes(StandardCharsets.US_ASCII)), 1);
+
+    // act & assert
+    assertThat(sut.readLine()).isEqualTo("a");
+    assertThat(sut.readLine()).isEqualTo("b");
+    assertThat(sut.readLine()).isEqualTo("c");
+    assertThat(sut.readLine()).isEqualTo("");
+    assertThat(sut.readLine()).isEqualTo("d");
+    assertThat(sut.readLine()).isNull();
+  }
+
+  @Test
+  public void readBinaryMessageTest() throws IOException {
+    // arrange
+    var message = new ByteArrayOutputStream();
+    message.write("TestClient #binary\r\n#Hello\n".getBytes(StandardCharsets.US_ASCII));
+    message.write(new byte[] {1, 13, 40, 0, 10});
+    var sut = new ClientMessageReader(new ByteArrayInputStream(message.toByteArray()), 2);
+    var jointAction = new Action[2];
+
+    // act & assert
+    assertThat(sut.readLine()).isEqualTo("TestClient #binary");
+    assertThat(sut.readBinaryMessage(jointAction)).isEqualTo(MessageType.Comment);
+    assertThat(sut.getComment()).isEqualTo("Hello");
+    assertThat(sut.readBinaryMessage(jointAction)).isEqualTo(MessageType.JointAction);
+    assertThat(jointAction).containsExactly(Action.MoveN, Action.PushEE);
+    assertThat(sut.readBinaryMessage(jointAction)).isEqualTo(MessageType.InvalidJointAction);
+    assertThat(sut.getMessage()).isEqualTo("40|0");
+    assertThat(sut.readBinaryMessage(jointAction)).isEqualTo(MessageType.InvalidJointAction);
+    assertThat(sut.readBinaryMessage(jointAction)).isEqualTo(MessageType.EndOfStream);
+  }
+}
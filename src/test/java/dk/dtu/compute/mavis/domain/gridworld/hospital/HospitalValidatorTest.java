@@ -0,0 +1,119 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.dtu.compute.mavis.domain.ParseException;
+
+public class HospitalValidatorTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void movesIntoSameCellConflictTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1", "+++++\n+0 1+\n+++++\n");
+    var sut = new HospitalValidator(levelInfo);
+
+    // act
+    var actual =
+        sut.isApplicable(new Action[] {Action.MoveE, Action.MoveW}, levelInfo.initialState);
+
+    // assert
+    assertThat(actual).containsExactly(false, false);
+  }
+
+  @Test
+  public void moveIntoVacatedCellIsInapplicableTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1", "+++++\n+01 +\n+++++\n");
+    var sut = new HospitalValidator(levelInfo);
+
+    // act
+    var actual =
+        sut.isApplicable(new Action[] {Action.MoveE, Action.MoveE}, levelInfo.initialState);
+
+    // assert
+    assertThat(actual).containsExactly(false, true);
+  }
+
+  @Test
+  public void moveIntoCellOfPushedBoxConflictsTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1, A", "+++++\n+0A +\n+  1+\n+++++\n");
+    var sut = new HospitalValidator(levelInfo);
+
+    // act
+    var actual =
+        sut.isApplicable(new Action[] {Action.PushEE, Action.MoveN}, levelInfo.initialState);
+
+    // assert
+    assertThat(actual).containsExactly(false, false);
+  }
+
+  @Test
+  public void boxClaimedTwiceConflictsTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1, A", "++++++\n+0A1 +\n+    +\n++++++\n");
+    var sut = new HospitalValidator(levelInfo);
+    var alone = new boolean[] {
+        sut.isApplicable(new Action[] {Action.PushES, Action.NoOp}, levelInfo.initialState)[0],
+        sut.isApplicable(new Action[] {Action.NoOp, Action.PullEE}, levelInfo.initialState)[1]};
+
+    // act
+    var actual =
+        sut.isApplicable(new Action[] {Action.PushES, Action.PullEE}, levelInfo.initialState);
+
+    // assert
+    assertThat(alone).containsExactly(true, true);
+    assertThat(actual).containsExactly(false, false);
+  }
+
+  @Test
+  public void noOpIsExemptFromConflictsTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1, 2", "+++++\n+0 1+\n+ 2 +\n+++++\n");
+    var sut = new HospitalValidator(levelInfo);
+
+    // act
+    var actual = sut.isApplicable(new Action[] {Action.MoveE, Action.MoveW, Action.NoOp},
+        levelInfo.initialState);
+    var alone = sut.isApplicable(new Action[] {Action.NoOp, Action.NoOp, Action.MoveN},
+        levelInfo.initialState);
+
+    // assert
+    assertThat(actual).containsExactly(false, false, true);
+    assertThat(alone).containsExactly(true, true, true);
+  }
+
+  @Test
+  public void claimsDoNotCarryOverBetweenCallsTest() throws IOException, ParseException {
+    // arrange
+    var levelInfo = this.readLevel("blue: 0, 1", "+++++\n+0 1+\n+++++\n");
+    var sut = new HospitalValidator(levelInfo);
+    sut.isApplicable(new Action[] {Action.MoveE, Action.MoveW}, levelInfo.initialState);
+
+    // act
+    var actual = sut.isApplicable(new Action[] {Action.MoveE, Action.NoOp}, levelInfo.initialState);
+
+    // assert
+    assertThat(actual).containsExactly(true, true);
+  }
+
+  /**
+   * Reads a level with the given colors and initial state, and a goal state with
+   * only the walls of the initial state.
+   */
+  private LevelInfo readLevel(String colors, String initial) throws IOException, ParseException {
+    var levelFile = this.tempDir.resolve("test.lvl");
+    var goal = initial.replaceAll("[^+\\n]", " ");
+    Files.writeString(levelFile, "#domain\nhospital\n#levelname\ntest\n#colors\n" + colors
+        + "\n#initial\n" + initial + "#goal\n" + goal + "#end\n", StandardCharsets.US_ASCII);
+    return new LevelReader(levelFile, false).getLevel();
+  }
+}
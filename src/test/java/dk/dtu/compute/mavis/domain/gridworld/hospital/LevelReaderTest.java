@@ -0,0 +1,166 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.dtu.compute.mavis.domain.ParseException;
+
+public class LevelReaderTest {
+
+  private static final String LEVEL = "#domain\nhospital\n#levelname\ntest\n#colors\n"
+      + "blue: 0, A\n#initial\n+++++\n+0A +\n+++++\n#goal\n+++++\n+  A+\n+++++\n#end\n";
+  private static final String ACTIONS = "#clientname\ntest\n#actions\n0:Push(E,E)\n#end\n"
+      + "#solved\ntrue\n#numactions\n1\n#time\n0\n";
+  private static final int NUM_LOADED_ACTIONS = 2000;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void readCpuTimeSectionTest() throws IOException, ParseException {
+    // arrange
+    var logFile = this.tempDir.resolve("test.log");
+    Files.writeString(logFile, LEVEL + ACTIONS + "#cputime\n1500000\n#end\n",
+        StandardCharsets.US_ASCII);
+
+    // act
+    var levelInfo = new LevelReader(logFile, true).getLevel();
+
+    // assert
+    assertThat(levelInfo.clientCpuTime).isEqualTo(1500000);
+  }
+
+  @Test
+  public void readTelemetrySectionTest() throws IOException, ParseException {
+    // arrange
+    var logFile = this.tempDir.resolve("test.log");
+    Files.writeString(logFile, LEVEL + ACTIONS + "#cputime\n1500000\n#telemetry\n"
+        + "0:0:1048576:2\n100000000:50000000:2097152:3\n#end\n", StandardCharsets.US_ASCII);
+
+    // act
+    var levelInfo = new LevelReader(logFile, true).getLevel();
+
+    // assert
+    assertThat(levelInfo.clientTelemetry).hasSize(2);
+    assertThat(levelInfo.clientTelemetry.get(1).memoryBytes).isEqualTo(2097152);
+    assertThat(levelInfo.clientTelemetry.get(1).numThreads).isEqualTo(3);
+  }
+
+  @Test
+  public void cpuTimeSectionIsOptionalTest() throws IOException, ParseException {
+    // arrange
+    var logFile = this.tempDir.resolve("test.log");
+    Files.writeString(logFile, LEVEL + ACTIONS + "#end\n", StandardCharsets.US_ASCII);
+
+    // act
+    var levelInfo = new LevelReader(logFile, true).getLevel();
+
+    // assert
+    assertThat(levelInfo.clientCpuTime).isEqualTo(-1);
+    assertThat(levelInfo.initialSequence.getNumStates()).isEqualTo(2);
+  }
+
+  @Test
+  public void inapplicableActionIsNotAppliedTest() throws IOException, ParseException {
+    // arrange
+    var logFile = this.tempDir.resolve("test.log");
+    Files.writeString(logFile, LEVEL + "#clientname\ntest\n#actions\n0:Move(W)\n1:Push(E,E)\n"
+        + "#end\n#solved\ntrue\n#numactions\n2\n#time\n1\n#end\n", StandardCharsets.US_ASCII);
+
+    // act
+    var levelInfo = new LevelReader(logFile, true).getLevel();
+
+    // assert
+    var states = levelInfo.initialSequence;
+    assertThat(states.getNumStates()).isEqualTo(3);
+    assertThat(states.getState(1).agentCols).containsExactly(1);
+    assertThat(states.getState(2).agentCols).containsExactly(2);
+    assertThat(states.getState(2).boxCols).containsExactly(3);
+    assertThat(levelInfo.agentAt((short) 1, (short) 2)).isEqualTo((byte) 0);
+  }
+
+  @Test
+  public void loadActionsOnSameThreadTest() throws IOException, ParseException {
+    // arrange
+    var logFile = this.writeLongLog();
+    var expected = new LevelReader(logFile, true).getLevel().initialSequence;
+
+    // act
+    var actual = new LevelReader(logFile, true).getLevel(Runnable::run).initialSequence;
+
+    // assert
+    assertSameStates(actual, expected);
+  }
+
+  @Test
+  public void loadActionsInBackgroundTest()
+      throws IOException, ParseException, InterruptedException {
+    // arrange
+    var logFile = this.writeLongLog();
+    var expected = new LevelReader(logFile, true).getLevel().initialSequence;
+    var executor = Executors.newSingleThreadExecutor();
+
+    // act
+    var actual = new LevelReader(logFile, true).getLevel(executor).initialSequence;
+    executor.shutdown();
+    var loaded = executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    // assert
+    assertThat(loaded).isTrue();
+    assertSameStates(actual, expected);
+  }
+
+  @Test
+  public void truncatedLogStopsLoadingTest()
+      throws IOException, ParseException, InterruptedException {
+    // arrange
+    var logFile = this.writeLongLog();
+    var content = Files.readString(logFile, StandardCharsets.US_ASCII);
+    Files.writeString(logFile, content.substring(0, content.length() / 2),
+        StandardCharsets.US_ASCII);
+    var executor = Executors.newSingleThreadExecutor();
+
+    // act
+    var actual = new LevelReader(logFile, true).getLevel(executor).initialSequence;
+    executor.shutdown();
+    var stopped = executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    // assert
+    assertThat(stopped).isTrue();
+    assertThat(actual.getNumStates()).isBetween(2, NUM_LOADED_ACTIONS);
+  }
+
+  /**
+   * Writes a log whose agent pushes its box back and forth. Every 100 actions, a
+   * move into a wall makes the following pull inapplicable too.
+   */
+  private Path writeLongLog() throws IOException {
+    var log = new StringBuilder(LEVEL).append("#clientname\ntest\n#actions\n");
+    for (var action = 0; action < NUM_LOADED_ACTIONS; ++action) {
+      var name = action % 100 == 98 ? "Move(N)" : action % 2 == 0 ? "Push(E,E)" : "Pull(W,W)";
+      log.append(action).append(':').append(name).append('\n');
+    }
+    log.append("#end\n#solved\nfalse\n#numactions\n").append(NUM_LOADED_ACTIONS).append("\n#time\n")
+        .append(NUM_LOADED_ACTIONS - 1).append("\n#end\n");
+    var logFile = this.tempDir.resolve("long.log");
+    Files.writeString(logFile, log, StandardCharsets.US_ASCII);
+    return logFile;
+  }
+
+  private static void assertSameStates(StateSequence actual, StateSequence expected) {
+    assertThat(actual.getNumStates()).isEqualTo(NUM_LOADED_ACTIONS + 1);
+    assertThat(actual.getNumStates()).isEqualTo(expected.getNumStates());
+    for (var state = 0; state < expected.getNumStates(); ++state) {
+      assertThat(actual.getState(state)).as("state %d", state).usingRecursiveComparison()
+          .isEqualTo(expected.getState(state));
+      assertThat(actual.getStateTime(state)).as("state %d", state)
+          .isEqualTo(expected.getStateTime(state));
+    }
+  }
+}
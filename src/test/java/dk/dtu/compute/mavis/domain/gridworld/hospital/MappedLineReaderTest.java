@@ -0,0 +1,109 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class MappedLineReaderTest {
+
+  @TempDir
+  Path tempDir;
+
+  @ParameterizedTest
+  @MethodSource("provideArgsForReadLineTest")
+  public void readLineMatchesBufferedReaderTest(String content) throws IOException {
+    // arrange
+    var file = this.tempDir.resolve("lines.txt");
+    Files.writeString(file, content, StandardCharsets.US_ASCII);
+    var expected = new ArrayList<String>();
+    try (var reader = new BufferedReader(new StringReader(content))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        expected.add(line);
+      }
+    }
+
+    // act
+    var actual = new ArrayList<String>();
+    try (var sut = new MappedLineReader(file)) {
+      for (String line = sut.readLine(); line != null; line = sut.readLine()) {
+        actual.add(line);
+      }
+    }
+
+    // assert
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  private static Stream<Arguments> provideArgsForReadLineTest() {
+    return Stream.of(Arguments.of(""), Arguments.of("\n"), Arguments.of("a"),
+        Arguments.of("a\nb\n"), Arguments.of("a\r\nb\r\n"), Arguments.of("a\rb\r"),
+        Arguments.of("a\r\rb\n\nc"), Arguments.of("\r\n\r\n"), Arguments.of("#end\r\n"));
+  }
+
+  @Test
+  public void nextLineCopiesLineBytesTest() throws IOException {
+    // arrange
+    var file = this.tempDir.resolve("log.txt");
+    Files.writeString(file, "0:NoOp|Move(N)\r\n25:Push(S,W)|NoOp\r\n", StandardCharsets.US_ASCII);
+
+    try (var sut = new MappedLineReader(file)) {
+      // act
+      sut.nextLine();
+      sut.nextLine();
+
+      // assert
+      var line = new String(sut.getLineBuffer(), 0, sut.getLineLength(), StandardCharsets.US_ASCII);
+      assertThat(line).isEqualTo("25:Push(S,W)|NoOp");
+      assertThat(sut.getLineNumber()).isEqualTo(2);
+      assertThat(sut.nextLine()).isFalse();
+    }
+  }
+
+  @Test
+  public void readLineFromZipEntryTest() throws IOException {
+    // arrange
+    var archive = this.tempDir.resolve("logs.zip");
+    try (var zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+      zip.putNextEntry(new ZipEntry("level.log"));
+      zip.write("#domain\r\nhospital\r\n#replay\r\nbinary".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    try (var fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+        var sut = new MappedLineReader(fileSystem.getPath("level.log"))) {
+      // act
+      var lines = new String[] {sut.readLine(), sut.readLine(), sut.readLine()};
+      var remaining = sut.mapRemaining();
+
+      // assert
+      assertThat(lines).containsExactly("#domain", "hospital", "#replay");
+      assertThat(StandardCharsets.US_ASCII.decode(remaining).toString()).isEqualTo("binary");
+    }
+  }
+
+  @Test
+  public void readLineRejectsNonAsciiTest() throws IOException {
+    // arrange
+    var file = this.tempDir.resolve("level.txt");
+    Files.write(file, new byte[] {'#', 'e', 'n', 'd', (byte) 0xC6, '\n'});
+
+    try (var sut = new MappedLineReader(file)) {
+      // act & assert
+      assertThatThrownBy(sut::readLine).isInstanceOf(MalformedInputException.class);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package dk.dtu.compute.mavis.domain.gridworld.hospital;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.dtu.compute.mavis.domain.ParseException;
+
+public class StateSequenceTest {
+
+  private static final String LEVEL = "#domain\nhospital\n#levelname\ntest\n#colors\n"
+      + "blue: 0, 2, A, C\nred: 1, B\n#initial\n+++++++\n+0A  C+\n+  1B +\n+2    +\n+++++++\n"
+      + "#goal\n+++++++\n+   A +\n+ B   +\n+    C+\n+++++++\n#end\n";
+  private static final int NUM_OPCODES = 29;
+  private static final int NUM_STEPS = 2 * StateSequence.KEYFRAME_INTERVAL + 500;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void reconstructedStatesMatchFullCopiesTest() throws IOException, ParseException {
+    // arrange
+    var levelFile = this.tempDir.resolve("test.lvl");
+    Files.writeString(levelFile, LEVEL, StandardCharsets.US_ASCII);
+    var levelInfo = new LevelReader(levelFile, false).getLevel();
+    var sut = new StateSequence(levelInfo);
+    var validator = new HospitalValidator(levelInfo);
+    var expected = new ArrayList<State>();
+    expected.add(new State(sut.getLatestState()));
+    var random = new Random(1);
+    var jointAction = new Action[levelInfo.numAgents];
+    var applicable = new boolean[levelInfo.numAgents];
+    var numApplicable = 0;
+    var numInapplicable = 0;
+    for (var step = 1; step <= NUM_STEPS; ++step) {
+      for (var agent = 0; agent < jointAction.length; ++agent) {
+        jointAction[agent] = Action.fromOpcode(random.nextInt(NUM_OPCODES));
+      }
+      validator.isApplicable(jointAction, sut.getLatestState(), applicable);
+      for (var agentApplicable : applicable) {
+        if (agentApplicable) {
+          ++numApplicable;
+        } else {
+          ++numInapplicable;
+        }
+      }
+      sut.apply(jointAction, applicable, step * 1000L);
+      expected.add(new State(sut.getLatestState()));
+    }
+
+    // Around the keyframes, in an order which reconstructs both from keyframes
+    // and from cached previous states.
+    var boundaries = new ArrayList<Integer>();
+    for (var keyframe = 0; keyframe * StateSequence.KEYFRAME_INTERVAL <= NUM_STEPS; ++keyframe) {
+      for (var offset = -2; offset <= 2; ++offset) {
+        var state = keyframe * StateSequence.KEYFRAME_INTERVAL + offset;
+        if (state >= 0 && state <= NUM_STEPS) {
+          boundaries.add(state);
+        }
+      }
+    }
+
+    // act & assert
+    assertThat(numApplicable).isPositive();
+    assertThat(numInapplicable).isPositive();
+    assertThat(sut.getNumStates()).isEqualTo(NUM_STEPS + 1);
+    for (var state : boundaries) {
+      assertState(sut, expected, state);
+    }
+    // Every state forwards, which evicts the boundary states from the cache.
+    for (var state = 0; state <= NUM_STEPS; ++state) {
+      assertState(sut, expected, state);
+    }
+    // The boundary states again after eviction, backwards.
+    for (var i = boundaries.size() - 1; i >= 0; --i) {
+      assertState(sut, expected, boundaries.get(i));
+    }
+    // Random states, mostly reconstructed from keyframes.
+    for (var i = 0; i < 500; ++i) {
+      assertState(sut, expected, random.nextInt(NUM_STEPS + 1));
+    }
+  }
+
+  private static void assertState(StateSequence sut, ArrayList<State> expected, int state) {
+    var actual = sut.getState(state);
+    assertThat(actual.agentRows).as("state %d", state).isEqualTo(expected.get(state).agentRows);
+    assertThat(actual.agentCols).as("state %d", state).isEqualTo(expected.get(state).agentCols);
+    assertThat(actual.boxRows).as("state %d", state).isEqualTo(expected.get(state).boxRows);
+    assertThat(actual.boxCols).as("state %d", state).isEqualTo(expected.get(state).boxCols);
+    assertThat(sut.getStateTime(state)).as("state %d", state).isEqualTo(state * 1000L);
+  }
+}
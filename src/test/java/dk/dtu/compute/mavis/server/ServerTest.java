@@ -0,0 +1,81 @@
+package dk.dtu.compute.mavis.server;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+public class ServerTest {
+
+  @Test
+  public void entriesAreWrittenInOrderOfRunsTest() throws IOException {
+    // arrange
+    var entryNames = List.of("MAa", "MAb", "SAa", "SAb", "SAc");
+    var levelPaths = new ArrayList<Path>();
+    for (var entryName : entryNames) {
+      levelPaths.add(Path.of(entryName + ".lvl"));
+    }
+    // Each run waits for the run after it, so the runs complete in reverse order.
+    var completed = new CountDownLatch[entryNames.size()];
+    for (var i = 0; i < completed.length; ++i) {
+      completed[i] = new CountDownLatch(1);
+    }
+    var completionOrder = Collections.synchronizedList(new ArrayList<String>());
+    var levelRunner = Executors.newFixedThreadPool(entryNames.size());
+    var runs = new ArrayList<Future<String>>();
+    for (var i = 0; i < entryNames.size(); ++i) {
+      var run = i;
+      runs.add(levelRunner.submit(() -> {
+        if (run + 1 < completed.length) {
+          completed[run + 1].await();
+        }
+        completionOrder.add(entryNames.get(run));
+        completed[run].countDown();
+        if (entryNames.get(run).equals("SAb")) {
+          throw new IllegalStateException("The client crashed.");
+        }
+        return entryNames.get(run);
+      }));
+    }
+    levelRunner.shutdown();
+    var zipBytes = new ByteArrayOutputStream();
+
+    // act
+    try (var zipStream = new ZipOutputStream(zipBytes)) {
+      Server.forEachInOrder(runs, levelPaths::get, (entryName, i) -> {
+        if (entryName == null) {
+          return;
+        }
+        try {
+          zipStream.putNextEntry(new ZipEntry(entryName + ".log"));
+          zipStream.write(i);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+
+    // assert
+    var actual = new ArrayList<String>();
+    try (var zipStream = new ZipInputStream(new ByteArrayInputStream(zipBytes.toByteArray()))) {
+      for (var entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+        actual.add(entry.getName());
+      }
+    }
+    assertThat(completionOrder).containsExactly("SAc", "SAb", "SAa", "MAb", "MAa");
+    assertThat(actual).containsExactly("MAa.log", "MAb.log", "SAa.log", "SAc.log");
+    assertThat(runs).containsOnlyNulls();
+  }
+}
@@ -0,0 +1,55 @@
+package dk.dtu.compute.mavis.server;
+
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.dtu.compute.mavis.domain.ParseException;
+
+public class TournamentTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void readClientsAndLevelsTest() throws IOException, ParseException {
+    // arrange
+    var levelDirectory = Files.createDirectory(this.tempDir.resolve("levels"));
+    Files.writeString(levelDirectory.resolve("SAb.lvl"), "");
+    Files.writeString(levelDirectory.resolve("SAa.lvl"), "");
+    Files.writeString(levelDirectory.resolve("notes.txt"), "");
+    var extraLevel = Files.writeString(this.tempDir.resolve("MAc.lvl"), "");
+    var tournamentFile = this.tempDir.resolve("tournament.txt");
+    Files.writeString(
+        tournamentFile, "#clients\nalice: java -cp alice Client\n\n"
+            + "bob:python3 bob/client.py\n#levels\n" + levelDirectory + "\n" + extraLevel + "\n",
+        StandardCharsets.UTF_8);
+
+    // act
+    var sut = Tournament.read(tournamentFile);
+
+    // assert
+    assertThat(sut.clientNames).containsExactly("alice", "bob");
+    assertThat(sut.clientCommands).containsExactly("java -cp alice Client",
+        "python3 bob/client.py");
+    assertThat(sut.levelPaths).containsExactly(levelDirectory.resolve("SAa.lvl"),
+        levelDirectory.resolve("SAb.lvl"), extraLevel);
+  }
+
+  @Test
+  public void duplicateClientNameIsRejectedTest() throws IOException {
+    // arrange
+    var level = Files.writeString(this.tempDir.resolve("SAa.lvl"), "");
+    var tournamentFile = this.tempDir.resolve("tournament.txt");
+    Files.writeString(tournamentFile,
+        "#clients\nalice: java Client\nalice: java Other\n#levels\n" + level + "\n",
+        StandardCharsets.UTF_8);
+
+    // act & assert
+    assertThatThrownBy(() -> Tournament.read(tournamentFile)).isInstanceOf(ParseException.class)
+        .hasMessageContaining("line 3");
+  }
+}